@@ -54,11 +54,18 @@ public abstract class ServiceConfiguration {
 	 */
 	public static final String PACKAGE_NAME_LIFECYCLELISTENER = "org.sopeco.service.configuration";
 	
-	// the applications session ID, if needed
+	// prefix of the session IDs for the account database configurations
 	public static final String SESSION_ID 		= "sessionid";
 	
 	// default user timeout
 	public static final long USER_TIMEOUT 		= 600000;
+	
+	// number of users cached for the token authentication and the time in ms a cached user is used
+	public static final int USER_CACHE_SIZE 	= 1000;
+	public static final long USER_CACHE_TTL 	= 60000;
+	
+	// minimum time in ms between two batched writes of the users last request times
+	public static final long USER_TOUCH_FLUSH_INTERVAL = 10000;
 
 	// timeout to try to connect to a socket
 	public static final int SOCKET_TIMEOUT 		= 10000;
@@ -68,6 +75,52 @@ public abstract class ServiceConfiguration {
 	public static final int SCHEDULING_TIMEOUT_INTERVAL = 5; // waits for the experiment scheduler to finish
 	public static final TimeUnit SCHEDULING_TIME_UNIT 	= TimeUnit.SECONDS; // in seconds
 	
+	// delay after which the dispatch of a scheduled experiment is retried, when it failed (in ms)
+	public static final long SCHEDULING_RETRY_DELAY = 30000;
+	
+	// time in ms after which an unused ExecutionQueue is evicted
+	public static final long EXECUTION_QUEUE_IDLE_TIMEOUT = 600000;
+	
+	// default number of experiments executed at the same time on one controller
+	public static final int EXECUTION_DEFAULT_CONCURRENCY = 1;
+	
+	// maximum number of experiments a user can execute at the same time on one controller
+	public static final int EXECUTION_MAX_CONCURRENCY = 4;
+	
+	// number of experiments executed at the same time on all controllers
+	public static final int EXECUTION_THREAD_POOL_SIZE = 10;
+	
+	// number of experiments waiting for a free execution thread, before further ones are rejected
+	public static final int EXECUTION_MAX_WAITING = 100;
+	
+	// time to wait for running experiments on shutdown (in SCHEDULING_TIME_UNIT)
+	public static final int EXECUTION_SHUTDOWN_TIMEOUT = 30;
+	
+	// number of opened account database connections and the time in ms after which an unused one is closed
+	public static final int PERSISTENCE_POOL_SIZE 			= 50;
+	public static final long PERSISTENCE_POOL_IDLE_TIMEOUT 	= 600000;
+	
+	// number of ScenarioDefinitions cached for all accounts
+	public static final int SCENARIO_CACHE_SIZE = 200;
+	
+	// number of DataSetAggregated kept by the ExperimentSeriesRunDecorator
+	public static final int DATASET_CACHE_SIZE = 100;
+	
+	// number of runs of a series, whose DataSetAggregated are fetched with one call by the ExperimentSeriesRunDecorator
+	public static final int DATASET_PREFETCH_SIZE = 10;
+	
+	// number of buffered MECLog entries, after which they are written to the database
+	public static final int MECLOG_FLUSH_SIZE = 100;
+	
+	// number of execution durations kept in the duration list of a ScheduledExperiment
+	public static final int DURATION_HISTORY_SIZE = 10;
+	
+	// weight of the latest duration in the moving average of the DurationStatistics
+	public static final double DURATION_AVERAGE_WEIGHT = 0.3;
+	
+	// percentile of the durations, which is expected for executions running longer than average
+	public static final double DURATION_OVERRUN_PERCENTILE = 0.9;
+	
 	// default MeasurementSpecification settings
 	public static final String MEASUREMENTENVIRONMENT_ROOTNAME 			= "root";
 	public static final String MEASUREMENTENVIRONMENT_DELIMITER 		= "/";
@@ -128,6 +181,13 @@ public abstract class ServiceConfiguration {
 	public static final String SVCP_SCENARIO_SPECNAME	 	= "specname";
 	public static final String SVCP_SCENARIO_TOKEN 			= SVCP_TOKEN;
 	public static final String SVCP_SCENARIO_URL 			= "url";
+	public static final String SVCP_SCENARIO_OFFSET 		= "offset";
+	public static final String SVCP_SCENARIO_LIMIT 			= "limit";
+	public static final String SVCP_SCENARIO_CURSOR 		= "cursor";
+	public static final String SVCP_SCENARIO_FROM 			= "from";
+	public static final String SVCP_SCENARIO_TO 			= "to";
+	public static final String SVCP_SCENARIO_SUMMARY 		= "summary";
+	public static final String SVCH_SCENARIO_NEXTCURSOR 	= "X-Next-Cursor";
 	
 	public static final String SVC_MEASUREMENTSPEC 				 = "measurementspecification";
 	public static final String SVC_MEASUREMENTSPEC_LIST 		 = "list";
@@ -167,6 +227,7 @@ public abstract class ServiceConfiguration {
 	public static final String SVC_MED_PARAM_ADD 			= "add";
 	public static final String SVC_MED_PARAM_REMOVE 		= "remove";
 	public static final String SVC_MED_PARAM_UPDATE 		= "update";
+	public static final String SVC_MED_BATCH 				= "batch";
 	public static final String SVC_MED_SCENARIONAME 		= "scenarioname";
 	public static final String SVCP_MED_TOKEN 				= SVCP_TOKEN;
 	public static final String SVCP_MED_MEC_URL 			= "url";
@@ -175,6 +236,7 @@ public abstract class ServiceConfiguration {
 	public static final String SVCP_MED_PARAM_NAME 			= "paramname";
 	public static final String SVCP_MED_PARAM_NAME_NEW 		= "newparamname";
 	public static final String SVCP_MED_PARAM_TYP 			= "paramtype";
+	public static final String SVCP_MED_ATOMIC 				= "atomic";
 
 	public static final String SVC_EXECUTE 					= "execution";
 	public static final String SVC_EXECUTE_ESD 				= "esd";
@@ -185,18 +247,31 @@ public abstract class ServiceConfiguration {
 	public static final String SVC_EXECUTE_ABORT 			= "abort";
 	public static final String SVC_EXECUTE_DETAILS 			= "details";
 	public static final String SVC_EXECUTE_MECLOG 			= "meclog";
+	public static final String SVC_EXECUTE_ENTRIES 			= "entries";
 	public static final String SVC_EXECUTE_EXECUTE 			= "execute";
 	public static final String SVC_EXECUTE_STATUS 			= "status";
+	public static final String SVC_EXECUTE_STREAM 			= "stream";
+	public static final String SVC_EXECUTE_CONCURRENCY 		= "concurrency";
 	public static final String SVCP_EXECUTE_TOKEN 			= SVCP_TOKEN;
 	public static final String SVCP_EXECUTE_ID 				= "id";
 	public static final String SVCP_EXECUTE_EXPERIMENTSERIES = "experimentseriesname";
 	public static final String SVCP_EXECUTE_KEY 			= "key";
+	public static final String SVCP_EXECUTE_SINCE 			= "since";
+	public static final String SVCP_EXECUTE_FROM 			= "from";
+	public static final String SVCP_EXECUTE_TO 				= "to";
+	public static final String SVCP_EXECUTE_OFFSET 			= "offset";
+	public static final String SVCP_EXECUTE_LIMIT 			= "limit";
+	public static final String SVCP_EXECUTE_ERRORSONLY 		= "errorsonly";
 	public static final String SVCP_EXECUTE_SCENARIONAME 	= "scenarioname";
+	public static final String SVCP_EXECUTE_URL 			= "url";
+	public static final String SVCP_EXECUTE_SLOTS 			= "slots";
 
 	public static final String SVC_RESULT					= "result";
 	public static final String SVC_RESULT_DATASETAGGREGATED = "datasetaggregated";
+	public static final String SVC_RESULT_BATCH 			= "batch";
 	public static final String SVCP_RESULT_ACCOUNTID 		= "accountid";
 	public static final String SVCP_RESULT_DATASETID 		= "datasetid";
+	public static final String MEDIATYPE_DATASET_COLUMNAR 	= "application/x-sopeco-dataset";
 
 	public static final String SVC_ESD 							= "experimentseriesdefinition";
 	public static final String SVC_ESD_SCENARIONAME 			= "scenarioname";
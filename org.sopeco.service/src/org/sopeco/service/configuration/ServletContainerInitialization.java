@@ -28,9 +28,14 @@ package org.sopeco.service.configuration;
 
 import javax.ws.rs.core.Application;
 
+import org.glassfish.jersey.media.sse.SseFeature;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.servlet.ServletContainer;
+import org.sopeco.service.rest.json.Compressed;
+import org.sopeco.service.rest.json.CompressionFilter;
 import org.sopeco.service.rest.json.CustomObjectMapper;
+import org.sopeco.service.rest.json.DataSetAggregatedBinaryProvider;
 
 import com.fasterxml.jackson.jaxrs.json.JacksonJaxbJsonProvider;
 
@@ -39,7 +44,9 @@ import com.fasterxml.jackson.jaxrs.json.JacksonJaxbJsonProvider;
  * and is called once the {@link ServletContainer} is started up. The class is needed to register the custom
  * {@link JacksonJaxbJsonProvider} to the RESTful service, to get the {@link CustomObjectMapper}. It's also
  * needed to register the {@link ServletContainerLifecycleListener} to listen for changes
- * in the servlet context.
+ * in the servlet context. Responses of {@link Compressed} resources are compressed with gzip, if the
+ * client accepts it. The {@link DataSetAggregatedBinaryProvider} adds the binary result format and
+ * the {@link SseFeature} the experiment status stream.
  * <br />
  * <br />
  * For more information, please visit
@@ -58,6 +65,12 @@ public class ServletContainerInitialization extends ResourceConfig {
 		JacksonJaxbJsonProvider provider = new JacksonJaxbJsonProvider();
         provider.setMapper(new CustomObjectMapper());
 		register(provider);
+		register(DataSetAggregatedBinaryProvider.class);
+		register(SseFeature.class);
+		
+		// only the responses of @Compressed resources get the gzip content encoding
+		register(GZipEncoder.class);
+		register(CompressionFilter.class);
 		
 		packages(ServiceConfiguration.PACKAGE_NAME_LIFECYCLELISTENER);
     }
@@ -36,6 +36,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sopeco.engine.measurementenvironment.socket.SocketAcception;
 import org.sopeco.service.execute.ExecutionScheduler;
+import org.sopeco.service.execute.ExperimentExecutor;
+import org.sopeco.service.execute.ExperimentStatusBroadcaster;
+import org.sopeco.service.execute.MECLogWriter;
+import org.sopeco.service.persistence.AccountPersistenceProvider;
 import org.sopeco.service.persistence.ServicePersistenceProvider;
 
 /**
@@ -79,7 +83,7 @@ public final class ServletContainerLifecycleListener implements ContainerLifecyc
 
 	/**
 	 * Stops the {@link ExecutionScheduler}, which was started in the {@link #onStartup(Container)} call
-	 * for this {@link Container}.
+	 * for this {@link Container}, and the {@link ExperimentExecutor}.
 	 */
 	@Override
 	public void onShutdown(Container container) {
@@ -90,6 +94,17 @@ public final class ServletContainerLifecycleListener implements ContainerLifecyc
 		while (!ExecutionScheduler.getInstance().stopScheduler()) {
 			LOGGER.info("Shutdown of experiment scheduler failed. Try again.");
 		}
+		
+		// cancel waiting experiments and wait for the running ones
+		if (!ExperimentExecutor.shutdown()) {
+			LOGGER.warn("Running experiments have been interrupted.");
+		}
+		
+		MECLogWriter.getInstance().flushAll();
+		
+		ExperimentStatusBroadcaster.getInstance().closeAll();
+		
+		AccountPersistenceProvider.closeAllProviders();
 
 		ServicePersistenceProvider.close();
 	}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.execute;
+
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Set;
+
+/**
+ * A schedule expression with weekdays, hours and minutes, which has already been parsed
+ * by {@link ScheduleExpression#compile(String, String, String)}. The values are held
+ * in {@link BitSet}s, so the next execution time is calculated directly, instead of
+ * testing minute by minute.<br />
+ * <br />
+ * Instances are immutable and can be shared between threads.
+ * 
+ * @author Peter Merkert
+ */
+public final class CompiledScheduleExpression {
+
+	private static final long MINUTE = 60 * 1000;
+	
+	/**
+	 * The number of days, which are searched for the next execution time. One week and
+	 * the remaining part of the start day.
+	 */
+	private static final int SEARCHED_DAYS = 8;
+	
+	/**
+	 * The weekdays, indexed with the {@link Calendar#DAY_OF_WEEK} values.
+	 */
+	private final BitSet days;
+	
+	/**
+	 * The hours 0-23.
+	 */
+	private final BitSet hours;
+	
+	/**
+	 * The minutes 0-59.
+	 */
+	private final BitSet minutes;
+	
+	/**
+	 * Creates a compiled expression out of the already expanded values.
+	 * 
+	 * @param days		the weekdays as {@link Calendar#DAY_OF_WEEK} values
+	 * @param hours		the hours
+	 * @param minutes	the minutes
+	 */
+	CompiledScheduleExpression(Set<Integer> days, Set<Integer> hours, Set<Integer> minutes) {
+		this.days 		= toBitSet(days);
+		this.hours 		= toBitSet(hours);
+		this.minutes 	= toBitSet(minutes);
+	}
+	
+	/**
+	 * Returns whether the expression matches the minute of the given time.
+	 * 
+	 * @param timestamp	the time to check
+	 * @return			true, if the expression matches
+	 */
+	public boolean matches(long timestamp) {
+		Calendar c = Calendar.getInstance();
+		c.setTimeInMillis(timestamp);
+		
+		return days.get(c.get(Calendar.DAY_OF_WEEK))
+				&& hours.get(c.get(Calendar.HOUR_OF_DAY))
+				&& minutes.get(c.get(Calendar.MINUTE));
+	}
+	
+	/**
+	 * Returns the first time at or after the given time, whose minute matches this
+	 * expression. The seconds and milliseconds of the given time are kept.
+	 * 
+	 * @param from	the time to start the search
+	 * @return		the next matching time, -1 if the expression never matches
+	 */
+	public long next(long from) {
+		Calendar c = Calendar.getInstance();
+		c.setTimeInMillis(from);
+		
+		int hour 	= c.get(Calendar.HOUR_OF_DAY);
+		int minute 	= c.get(Calendar.MINUTE);
+		
+		for (int i = 0; i < SEARCHED_DAYS; i++) {
+			
+			if (days.get(c.get(Calendar.DAY_OF_WEEK))) {
+				
+				for (int h = hours.nextSetBit(hour); h >= 0; h = hours.nextSetBit(h + 1)) {
+					
+					int m = minutes.nextSetBit(h == hour ? minute : 0);
+					
+					if (m >= 0) {
+						c.set(Calendar.HOUR_OF_DAY, h);
+						c.set(Calendar.MINUTE, m);
+						return c.getTimeInMillis();
+					}
+					
+				}
+				
+			}
+			
+			// continue with the first minute of the next day
+			c.add(Calendar.DAY_OF_MONTH, 1);
+			c.set(Calendar.HOUR_OF_DAY, 0);
+			c.set(Calendar.MINUTE, 0);
+			hour 	= 0;
+			minute 	= 0;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Returns the next valid execution time, starting at the given time. If the
+	 * start time has already passed, the search starts now.
+	 * 
+	 * @param startTime	the time to start the search
+	 * @return			the next execution time, -1 if the expression never matches
+	 */
+	public long nextValidDate(long startTime) {
+		return next(Math.max(startTime, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Returns the next valid execution time, starting at the beginning of the next minute.
+	 * 
+	 * @return the next execution time, -1 if the expression never matches
+	 */
+	public long nextValidDate() {
+		long time = System.currentTimeMillis();
+		time = time - time % MINUTE + MINUTE;
+		return nextValidDate(time);
+	}
+	
+	/**
+	 * Converts the given values into a {@link BitSet}.
+	 * 
+	 * @param values	the values
+	 * @return			a bitset with all the values set
+	 */
+	private static BitSet toBitSet(Set<Integer> values) {
+		BitSet set = new BitSet();
+		
+		for (int value : values) {
+			if (value >= 0) {
+				set.set(value);
+			}
+		}
+		
+		return set;
+	}
+	
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.execute;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.sopeco.service.configuration.ServiceConfiguration;
+
+/**
+ * The <code>DurationStatistics</code> summarize the execution durations of a
+ * {@link org.sopeco.service.persistence.entities.ScheduledExperiment} with a constant size, independent
+ * of the number of executions. The recent durations are weighted by an exponentially weighted moving
+ * average and the distribution is kept in a histogram with logarithmic buckets, which gives the
+ * percentiles with a precision of about 20 percent.
+ * 
+ * @author Marius Oehler
+ */
+public class DurationStatistics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * The number of buckets per doubling of the duration.
+	 */
+	private static final int BUCKETS_PER_DOUBLING = 4;
+	
+	/**
+	 * The number of buckets. The last bucket contains all durations longer than about 270 days.
+	 */
+	private static final int BUCKET_COUNT = 100;
+	
+	private static final double MILLIS_PER_SECOND = 1000D;
+	
+	private long count;
+	
+	/**
+	 * The exponentially weighted moving average in milliseconds.
+	 */
+	private double average;
+	
+	private long minimum;
+	
+	private long maximum;
+	
+	/**
+	 * The number of durations per bucket. The bucket 0 contains the durations below one second,
+	 * the bucket i contains the durations from 2^((i-1)/4) to 2^(i/4) seconds.
+	 */
+	private int[] histogram = new int[BUCKET_COUNT];
+	
+	public DurationStatistics() {
+	}
+	
+	/**
+	 * Creates the statistics for the given durations, e.g. for the duration list of an
+	 * experiment, which has been stored before the statistics existed.
+	 * 
+	 * @param durations	the durations in milliseconds in the order of the executions
+	 * @return			the statistics
+	 */
+	public static DurationStatistics of(List<Long> durations) {
+		DurationStatistics statistics = new DurationStatistics();
+		
+		if (durations != null) {
+			for (Long duration : durations) {
+				statistics.add(duration);
+			}
+		}
+		
+		return statistics;
+	}
+	
+	/**
+	 * Adds the duration of an execution.
+	 * 
+	 * @param duration the duration in milliseconds, negative durations are ignored
+	 */
+	public void add(long duration) {
+		if (duration < 0) {
+			return;
+		}
+		
+		if (count == 0) {
+			average = duration;
+			minimum = duration;
+			maximum = duration;
+		} else {
+			average += ServiceConfiguration.DURATION_AVERAGE_WEIGHT * (duration - average);
+			minimum = Math.min(minimum, duration);
+			maximum = Math.max(maximum, duration);
+		}
+		
+		count++;
+		histogram[bucketOf(duration)]++;
+	}
+	
+	/**
+	 * @return the number of added durations
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the exponentially weighted moving average of the durations in milliseconds
+	 */
+	public long getAverage() {
+		return Math.round(average);
+	}
+	
+	/**
+	 * @return the shortest duration in milliseconds
+	 */
+	public long getMinimum() {
+		return minimum;
+	}
+	
+	/**
+	 * @return the longest duration in milliseconds
+	 */
+	public long getMaximum() {
+		return maximum;
+	}
+	
+	/**
+	 * Returns the estimated percentile of the durations. The estimation is the geometric mean
+	 * of the bounds of the bucket, which contains the percentile.
+	 * 
+	 * @param percentile	the percentile between 0 and 1, e.g. 0.9 for the 90th percentile
+	 * @return				the duration in milliseconds, -1 if no duration has been added
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0) {
+			return -1;
+		}
+		
+		long rank = Math.max(1, (long) Math.ceil(percentile * count));
+		long cumulated = 0;
+		int bucket = 0;
+		
+		while (bucket < BUCKET_COUNT - 1) {
+			cumulated += histogram[bucket];
+			
+			if (cumulated >= rank) {
+				break;
+			}
+			
+			bucket++;
+		}
+		
+		long estimation;
+		
+		if (bucket == 0) {
+			estimation = (long) (MILLIS_PER_SECOND / 2);
+		} else {
+			estimation = Math.round(MILLIS_PER_SECOND * Math.pow(2, (bucket - 0.5) / BUCKETS_PER_DOUBLING));
+		}
+		
+		return Math.min(Math.max(estimation, minimum), maximum);
+	}
+	
+	/**
+	 * Returns the histogram bucket of the given duration.
+	 * 
+	 * @param duration	the duration in milliseconds
+	 * @return			the bucket
+	 */
+	private static int bucketOf(long duration) {
+		double seconds = duration / MILLIS_PER_SECOND;
+		
+		if (seconds < 1) {
+			return 0;
+		}
+		
+		int bucket = 1 + (int) Math.floor(BUCKETS_PER_DOUBLING * Math.log(seconds) / Math.log(2));
+		return Math.min(bucket, BUCKET_COUNT - 1);
+	}
+	
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.execute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.sopeco.service.persistence.entities.ScheduledExperiment;
+
+/**
+ * The <code>ExecutionDueQueue</code> is an in-memory index of all {@link ScheduledExperiment}s
+ * ordered by their next execution time. Only the ID and the execution time of an
+ * experiment is held, the experiment itself stays in the database.<br />
+ * <br />
+ * All operations are synchronized and run in O(log n).
+ * 
+ * @author Peter Merkert
+ */
+final class ExecutionDueQueue {
+
+	/**
+	 * The entries ordered by their execution time.
+	 */
+	private final TreeSet<Entry> queue = new TreeSet<Entry>();
+	
+	/**
+	 * The entries by their experiment ID, to find an entry to update or remove it.
+	 */
+	private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+	
+	/**
+	 * Adds the experiment with the given ID or updates its execution time, if it is
+	 * already in the queue.
+	 * 
+	 * @param id					the ID of the {@link ScheduledExperiment}
+	 * @param nextExecutionTime		the next execution time of the experiment
+	 */
+	synchronized void update(long id, long nextExecutionTime) {
+		remove(id);
+		
+		Entry entry = new Entry(id, nextExecutionTime);
+		entries.put(id, entry);
+		queue.add(entry);
+	}
+	
+	/**
+	 * Removes the experiment with the given ID out of the queue.
+	 * 
+	 * @param id the ID of the {@link ScheduledExperiment}
+	 */
+	synchronized void remove(long id) {
+		Entry entry = entries.remove(id);
+		
+		if (entry != null) {
+			queue.remove(entry);
+		}
+	}
+	
+	/**
+	 * Returns the execution time of the experiment, which is due next.
+	 * 
+	 * @return the next execution time, <code>Long.MAX_VALUE</code> if the queue is empty
+	 */
+	synchronized long peekTime() {
+		if (queue.isEmpty()) {
+			return Long.MAX_VALUE;
+		}
+		
+		return queue.first().time;
+	}
+	
+	/**
+	 * Removes all experiments with an execution time up to the given time out of
+	 * the queue and returns their IDs.
+	 * 
+	 * @param now	the current time
+	 * @return		the IDs of all due experiments, ordered by execution time
+	 */
+	synchronized List<Long> pollDue(long now) {
+		List<Long> due = new ArrayList<Long>();
+		
+		while (!queue.isEmpty() && queue.first().time <= now) {
+			Entry entry = queue.pollFirst();
+			entries.remove(entry.id);
+			due.add(entry.id);
+		}
+		
+		return due;
+	}
+	
+	/**
+	 * Removes all entries of this queue.
+	 */
+	synchronized void clear() {
+		queue.clear();
+		entries.clear();
+	}
+	
+	/**
+	 * Returns the number of experiments in this queue.
+	 * 
+	 * @return the number of experiments
+	 */
+	synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * An entry of the queue. Entries are ordered by their time and then by their ID.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		
+		private final long id;
+		
+		private final long time;
+		
+		private Entry(long id, long time) {
+			this.id 	= id;
+			this.time 	= time;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			if (time != other.time) {
+				return time < other.time ? -1 : 1;
+			}
+			
+			if (id != other.id) {
+				return id < other.id ? -1 : 1;
+			}
+			
+			return 0;
+		}
+		
+	}
+	
+}
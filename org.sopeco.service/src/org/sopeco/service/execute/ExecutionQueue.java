@@ -29,12 +29,11 @@ package org.sopeco.service.execute;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,13 +46,17 @@ import org.sopeco.engine.status.ProgressInfo;
 import org.sopeco.engine.status.StatusBroker;
 import org.sopeco.engine.status.StatusMessage;
 import org.sopeco.runner.SoPeCoRunner;
+import org.sopeco.service.configuration.ServiceConfiguration;
 import org.sopeco.service.persistence.ServicePersistenceProvider;
 import org.sopeco.service.persistence.entities.ExecutedExperimentDetails;
-import org.sopeco.service.persistence.entities.MECLog;
 import org.sopeco.service.persistence.entities.ScheduledExperiment;
 import org.sopeco.service.rest.exchange.ExperimentStatus;
 
 /**
+ * The <code>ExecutionQueue</code> executes the experiments of one controller URL. Up to
+ * <code>concurrency</code> experiments are executed at the same time, each in its own
+ * {@link ExecutionSlot}. The default is {@link ServiceConfiguration#EXECUTION_DEFAULT_CONCURRENCY}.
+ * 
  * @author Marius Oehler
  * @author Peter Merkert
  */
@@ -62,24 +65,33 @@ public class ExecutionQueue implements IStatusListener {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionQueue.class);
 	
 	/**
-	 * Handles all the thread of SoPeCo Runner executions.
+	 * The slot, whose {@link SoPeCoRunner} is executed by the current thread. Status
+	 * messages are fired in the thread of the runner, so they can be assigned to
+	 * the correct slot.
 	 */
-	private ExecutorService threadPool;
-
+	private static final ThreadLocal<ExecutionSlot> CURRENT_SLOT = new ThreadLocal<ExecutionSlot>();
+	
 	/** 
 	 * Queue of waiting experiments.
 	 */
 	private List<QueuedExperiment> experimentQueue;
-
+	
 	/**
-	 * The experiment which is performed at the moment.
+	 * The first waiting experiment for each experiment key. Guarded by the lock of
+	 * the <code>experimentQueue</code>.
 	 */
-	private QueuedExperiment runningExperiment;
+	private Map<Long, QueuedExperiment> waitingByKey;
 
 	/**
-	 * If this object is not <code>null</code>, then an experiment is running.
+	 * The slots with the experiments which are performed at the moment. Guarded
+	 * by the lock of the <code>experimentQueue</code>.
+	 */
+	private List<ExecutionSlot> slots;
+	
+	/**
+	 * The maximum number of experiments executed at the same time.
 	 */
-	private Future<?> executeStatus;
+	private volatile int concurrency;
 
 	/**
 	 * The URL for this execution queue. All experiment run on the controller connected to this URL.
@@ -87,48 +99,135 @@ public class ExecutionQueue implements IStatusListener {
 	private String controllerURL;
 
 	/**
-	 * Stores the current hashcode of the running experiment (actually the {@link ScheduledExperiment} hashcode).
-	 * This hashcode enables to have a unique identifier for the {@link Configuration}.
-	 * 
-	 *  This hashcode is always refreshed with the current hashcode of the running {@link QueuedExperiment} and
-	 *  it's {@link ScheduledExperiment} hashcode.
+	 * Whether this queue has been registered at the {@link StatusBroker}.
 	 */
-	private String experimentHashCode;
-
+	private boolean registered = false;
+	
 	/**
-	 * Constructor creates a new empty {@link QueuedExperiment} list.
-	 * Stores the given controller URL. <br />
-	 * Adds itself to the {@link StatusManager} to receive updates about
-	 * the running experiments.<br />
-	 * Initializes the threadpool via initThreadPool().
+	 * Whether this queue has been evicted by the {@link ExecutionQueueManager}. A retired
+	 * queue does not accept new experiments anymore.
+	 */
+	private volatile boolean retired = false;
+	
+	/**
+	 * The last time an experiment was added to or finished in this queue.
+	 */
+	private volatile long lastActivity;
+	
+	/**
+	 * Constructor creates a new empty {@link QueuedExperiment} list and
+	 * stores the given controller URL. <br />
+	 * The queue is not registered to the {@link StatusManager} yet, this is
+	 * done via <code>register()</code> by the {@link ExecutionQueueManager}.
 	 * 
 	 * @param controllerURL the URL to the controller this queue correpsonds to
 	 */
 	public ExecutionQueue(String controllerURL) {
 		this.experimentQueue 	= new ArrayList<QueuedExperiment>();
+		this.waitingByKey		= new HashMap<Long, QueuedExperiment>();
+		this.slots				= new ArrayList<ExecutionSlot>();
 		this.controllerURL 		= controllerURL;
-
+		this.concurrency		= ServiceConfiguration.EXECUTION_DEFAULT_CONCURRENCY;
+		this.lastActivity		= System.currentTimeMillis();
+	}
+	
+	/**
+	 * Adds this queue to the {@link StatusManager} to receive updates about
+	 * the running experiments.<br />
+	 * Calling this method several times has no further effect.
+	 */
+	synchronized void register() {
+		if (registered || retired) {
+			return;
+		}
+		
 		// register to the StatusManager and recevie updates from SoPeCo about this controller
 		StatusBroker.getManager(controllerURL).addStatusListener(this);
-		initThreadPool();
+		registered = true;
+	}
+	
+	/**
+	 * Retires this queue, if it has neither a running nor a waiting experiment and
+	 * has not been used for the given timeout. A retired queue removes itself from the
+	 * {@link StatusManager}.
+	 * 
+	 * @param now		the current time in ms
+	 * @param timeout	the idle time in ms after which the queue is retired
+	 * @return			true, if the queue has been retired
+	 */
+	boolean retireIfIdle(long now, long timeout) {
+		
+		synchronized (experimentQueue) {
+			
+			if (retired) {
+				return true;
+			}
+			
+			if (isExecuting() || isLoaded() || !experimentQueue.isEmpty() || now - lastActivity < timeout) {
+				return false;
+			}
+			
+			retired = true;
+		}
+		
+		synchronized (this) {
+			
+			if (registered) {
+				StatusBroker.getManager(controllerURL).removeStatusListener(this);
+				registered = false;
+			}
+			
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Sets the maximum number of experiments, which are executed at the same time on
+	 * the controller of this queue. Waiting experiments are started, if the limit
+	 * is increased.
+	 * 
+	 * @param concurrency the number of concurrent executions, clamped to [1,
+	 * 					  {@link ServiceConfiguration#EXECUTION_MAX_CONCURRENCY}]
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.min(ServiceConfiguration.EXECUTION_MAX_CONCURRENCY, Math.max(1, concurrency));
+		checkToExecuteNext();
+	}
+	
+	/**
+	 * Returns the maximum number of experiments, which are executed at the same time.
+	 * 
+	 * @return the number of concurrent executions
+	 */
+	public int getConcurrency() {
+		return concurrency;
 	}
 	
 	/**
-	 * Returns whether the active experiment is executed by a thread.
+	 * Returns the controller URL this queue corresponds to.
+	 * 
+	 * @return the controller URL
+	 */
+	public String getControllerURL() {
+		return controllerURL;
+	}
+	
+	/**
+	 * Returns whether an experiment of this queue is executed by a thread.
 	 * 
 	 * @return true, if this queue has currently an experiment running
 	 */
 	public boolean isExecuting() {
 		
-		if (executeStatus != null) {
+		synchronized (experimentQueue) {
 			
-			synchronized (executeStatus) {
+			for (ExecutionSlot slot : slots) {
 				
-				if (executeStatus.isDone() || executeStatus.isCancelled()) {
-					return false;
+				if (!slot.isDone()) {
+					return true;
 				}
 				
-				return true;
 			}
 			
 		}
@@ -145,36 +244,65 @@ public class ExecutionQueue implements IStatusListener {
 	 * @return				the {@link ExperimentStatus} of the {@link QueuedExperiment}
 	 */
 	public ExperimentStatus getExperimentStatus(long experimentKey) {
+		return getExperimentStatus(experimentKey, 0);
+	}
+	
+	/**
+	 * Returns the status of the experiment with the given key. The event log of the status
+	 * only contains the {@link MECLogEntry}s with a sequence number greater than <code>since</code>.
+	 * 
+	 * @param experimentKey the unique key to the experiment, which is returned when adding
+	 * 						it to the {@link ExecutionScheduler}.
+	 * @param since			the sequence number of the last known log entry, 0 for the whole log
+	 * @return				the {@link ExperimentStatus} of the {@link QueuedExperiment}
+	 */
+	public ExperimentStatus getExperimentStatus(long experimentKey, long since) {
 		
-		QueuedExperiment experiment = null;
+		QueuedExperiment experiment = getExperiment(experimentKey);
 		
-		LOGGER.info("In this queue (URL = " + this.controllerURL + "), the current running experiment hashcode is: " + experimentHashCode + ".");
+		if (experiment != null) {
+			return createExperimentStatusPackage(experiment, since);
+		}
 		
-		if (experimentHashCode.equals(String.valueOf(experimentKey))) {
-			
-			// the current running experiment is requested
-			experiment = runningExperiment;
+		return null;
+		
+	}
+	
+	/**
+	 * Returns the ID of the account, which owns the waiting or running experiment with the
+	 * given key.
+	 * 
+	 * @param experimentKey the unique key to the experiment
+	 * @return				the account ID, null if the experiment is not in this queue
+	 */
+	public Long getAccountIdOfExperiment(long experimentKey) {
+		
+		QueuedExperiment experiment = getExperiment(experimentKey);
+		
+		if (experiment != null) {
+			return experiment.getScheduledExperiment().getAccountId();
+		}
+		
+		return null;
+	}
+	
+	private QueuedExperiment getExperiment(long experimentKey) {
+		
+		synchronized (experimentQueue) {
 			
-		} else {
+			ExecutionSlot slot = getSlot(String.valueOf(experimentKey));
 			
-			// check if another experiment in the queue was requested
-			for (QueuedExperiment exp : experimentQueue) {
+			if (slot != null) {
 				
-				if (String.valueOf(exp.getScheduledExperiment().getExperimentKey()).equals(experimentKey)) {
-					experiment = exp; // found the searched experiment
-					break;
-				}
+				// a running experiment is requested
+				return slot.getExperiment();
 				
 			}
 			
+			// a waiting experiment is requested
+			return waitingByKey.get(experimentKey);
+			
 		}
-		
-		if (experiment != null) {
-			return createExperimentStatusPackage(experiment);
-		}
-		
-		return null;
-		
 	}
 	
 	
@@ -185,28 +313,66 @@ public class ExecutionQueue implements IStatusListener {
 	 * @param experiment the {@link QueuedExperiment} to add to the queue.
 	 */
 	public void addExperiment(QueuedExperiment experiment) {
-		LOGGER.info("Adding experiment id:" + experiment.getScheduledExperiment().getId() + " to queue.");
-		experiment.setTimeQueued(System.currentTimeMillis());
-		experimentQueue.add(experiment);
+		
+		boolean accepted;
+		
+		register();
+		
+		synchronized (experimentQueue) {
+			
+			accepted = !retired;
+			
+			if (accepted) {
+				LOGGER.info("Adding experiment id:" + experiment.getScheduledExperiment().getId() + " to queue.");
+				experiment.setTimeQueued(System.currentTimeMillis());
+				experimentQueue.add(experiment);
+				lastActivity = System.currentTimeMillis();
+				
+				long experimentKey = experiment.getExperimentKey();
+				
+				if (!waitingByKey.containsKey(experimentKey)) {
+					waitingByKey.put(experimentKey, experiment);
+				}
+				
+				ExecutionQueueManager.indexExperiment(experimentKey, this);
+			}
+			
+		}
+		
+		if (!accepted) {
+			// this queue has been evicted in the meantime, hand the experiment to a fresh one
+			ExecutionQueueManager.renew(this).addExperiment(experiment);
+			return;
+		}
 		
 		checkToExecuteNext();
 	}
 
 	/**
-	 * Abots the current experiment in execution.
+	 * Abots the experiment with the given key, if it is in execution.
+	 * 
+	 * @param experimentKey the key of the experiment to abort
 	 */
 	public void abortExperiment(long experimentKey) {
 		
-		if (isExecuting()) {
-			Configuration.getSessionSingleton(String.valueOf(experimentKey))
+		ExecutionSlot slot;
+		
+		synchronized (experimentQueue) {
+			slot = getSlot(String.valueOf(experimentKey));
+		}
+		
+		if (slot != null && !slot.isDone()) {
+			Configuration.getSessionSingleton(slot.getExperimentKey())
 						 .setProperty(IConfiguration.EXPERIMENT_RUN_ABORT, new Boolean(true));
 		}
 
 	}
 
 	/**
-	 * Checks if the controller is ready and a experiment is waiting in the
-	 * queue. If so, the next experiment is started.
+	 * Checks if the controller has a free slot and a experiment is waiting in the
+	 * queue. If so, the next experiments are started until all slots are used.<br />
+	 * An experiment is not started, while an experiment with the same key is still
+	 * running, because they would share the same {@link Configuration}.
 	 */
 	private void checkToExecuteNext() {
 		
@@ -214,61 +380,83 @@ public class ExecutionQueue implements IStatusListener {
 			
 			LOGGER.debug("Checking the current execution of the ExecutionQueue corresponding to Controller URL '{}'", controllerURL);
 			
-			if (isExecuting()) {
-				
-				LOGGER.info("Experiment is currently already running.");
+			if (experimentQueue.isEmpty()) {
 				
-			} else if (isLoaded()) {
+				LOGGER.debug("Queue is empty. There is no experiment waiting for execution.");
+				return;
 				
-				LOGGER.info("Experiment is already loaded, but it is not running yet.");
-				
-			} else if (experimentQueue.isEmpty()) {
-				
-				LOGGER.info("Queue is empty. There is no experiment in execution.");
-				
-			} else {
-				
-				// now the queue is not empty and it the next experimetn can be executed
-				runningExperiment = experimentQueue.get(0);
-				experimentQueue.remove(0);
+			}
+			
+			for (int i = 0; i < experimentQueue.size() && slots.size() < concurrency;) {
 				
-				execute(runningExperiment);
+				QueuedExperiment next = experimentQueue.get(i);
 				
+				if (getSlot(String.valueOf(next.getExperimentKey())) != null) {
+					
+					LOGGER.debug("Experiment with the same key is already running.");
+					i++;
+					
+				} else if (execute(next)) {
+					
+					// now the queue is not empty and a slot is free, so the next experiment has been executed
+					experimentQueue.remove(i);
+					removeWaiting(next);
+					
+				} else {
+					
+					// the experiment executor is busy, the experiment stays in the queue for the next check
+					break;
+					
+				}
+			}
+			
+			if (!experimentQueue.isEmpty()) {
+				LOGGER.info("All {} slots are in use. {} experiment(s) waiting.", concurrency, experimentQueue.size());
 			}
 		}
 	}
 
 	/**
-	 * Adds the given {@link StatusMessage} to the currently running experiment.
-	 * If this queue has no active experiment, then the message is discarded.
+	 * Adds the given {@link StatusMessage} to the experiment it belongs to.
+	 * If the message cannot be related to a running experiment, then the message is discarded.
 	 * 
 	 * @param statusMessage the message which should be added to the experiment
 	 */
 	public void addStatusMessageToExperiment(StatusMessage statusMessage) {
-		if (runningExperiment == null) {
-			return;
-		}
-		
-		runningExperiment.getStatusMessageList().add(statusMessage);
-		if (statusMessage.getStatusInfo() != null && statusMessage.getStatusInfo() instanceof ProgressInfo) {
-			runningExperiment.setLastProgressInfo((ProgressInfo) statusMessage.getStatusInfo());
-		}
-		
-		storeMECLog(runningExperiment);
-
+		addStatusMessageToExperiment(resolveSlot(), statusMessage);
 	}
 
 	/**
 	 * Checks for failed adding of {@link EventType.MEASUREMENT_FINISHED}. Fires this
-	 * event manually with a {@link StatusMessage}.
+	 * event manually with a {@link StatusMessage} for every slot, whose runner has
+	 * terminated.<br />
+	 * Afterwards experiments, which have been rejected by the {@link ExperimentExecutor},
+	 * are submitted again.
 	 */
 	public void check() {
-		if (!isExecuting() && runningExperiment != null) {
+		
+		List<ExecutionSlot> terminated = new ArrayList<ExecutionSlot>();
+		
+		synchronized (experimentQueue) {
+			
+			for (ExecutionSlot slot : slots) {
+				
+				if (slot.isDone()) {
+					terminated.add(slot);
+				}
+				
+			}
+			
+		}
+		
+		for (ExecutionSlot slot : terminated) {
 			LOGGER.debug("Thread finished but experiment was not completed. Adding MEASUREMENT_FINISHED event.");
 			StatusMessage sm = new StatusMessage();
 			sm.setEventType(EventType.MEASUREMENT_FINISHED);
-			onNewStatus(sm);
+			onNewStatus(slot, sm);
 		}
+		
+		checkToExecuteNext();
 	}
 
 	/**
@@ -279,40 +467,89 @@ public class ExecutionQueue implements IStatusListener {
 	 */
 	@Override
 	public void onNewStatus(StatusMessage statusMessage) {
+		onNewStatus(resolveSlot(), statusMessage);
+	}
+	
+	/**
+	 * Processes the status message for the given slot.<br />
+	 * <br />
+	 * A {@link EventType.MEASUREMENT_FINISHED}, which cannot be related to a slot, is not
+	 * discarded: all slots, whose runner has terminated, are finished right away via
+	 * <code>check()</code>. The slot of a runner, which is still working, is finished by
+	 * the next check after its runner has terminated.
+	 * 
+	 * @param slot			the slot the message belongs to, <code>null</code> if unknown
+	 * @param statusMessage	the status message to proceed
+	 */
+	private void onNewStatus(ExecutionSlot slot, StatusMessage statusMessage) {
 		LOGGER.info("New Status on '" + this.controllerURL + "': " + statusMessage.getEventType());
 		
-		addStatusMessageToExperiment(statusMessage);
+		if (slot == null && statusMessage.getEventType() == EventType.MEASUREMENT_FINISHED) {
+			LOGGER.warn("MEASUREMENT_FINISHED on '{}' cannot be related to one of the running experiments. "
+						+ "Finishing all terminated experiments.", controllerURL);
+			check();
+			return;
+		}
+		
+		MECLogEntry entry = addStatusMessageToExperiment(slot, statusMessage);
+		
+		if (entry != null) {
+			publishStatus(slot.getExperiment(), entry);
+		}
 
 		if (statusMessage.getEventType() == EventType.EXECUTION_FAILED) {
 			LOGGER.warn("Experiment could not be executed succesfully. Status: Execution failed");
 		}
 
-		if (statusMessage.getEventType() == EventType.MEASUREMENT_FINISHED) {
-			processFinishedExperiment();
+		if (statusMessage.getEventType() == EventType.MEASUREMENT_FINISHED && slot != null) {
+			processFinishedExperiment(slot);
 		}
 	}
 
 	/**
-	 * Ends the execution of the current experiment and stores information about
+	 * Ends the execution of the experiment in the given slot and stores information about
 	 * it in the database.<br />
 	 * Afterwards it's tried to execute the next experiment.
+	 * 
+	 * @param slot the slot whose experiment has finished
 	 */
-	private synchronized void processFinishedExperiment() {
-		LOGGER.info("Experiment id:" + runningExperiment.getScheduledExperiment().getId()
-				    + " finished on: " + runningExperiment.getScheduledExperiment().getControllerUrl());
+	private void processFinishedExperiment(ExecutionSlot slot) {
+		
+		synchronized (experimentQueue) {
+			
+			// the slot might have been processed already by check()
+			if (!slots.remove(slot)) {
+				return;
+			}
+			
+		}
+		
+		QueuedExperiment experiment = slot.getExperiment();
+		
+		LOGGER.info("Experiment id:" + experiment.getScheduledExperiment().getId()
+				    + " finished on: " + experiment.getScheduledExperiment().getControllerUrl());
 
-		runningExperiment.setTimeEnded(System.currentTimeMillis());
+		experiment.setTimeEnded(System.currentTimeMillis());
 		
-		storeDurationInExperiment();
+		storeDurationInExperiment(experiment);
 
-		storeExecutedExperimentDetails(runningExperiment);
-		storeMECLog(runningExperiment);
+		storeExecutedExperimentDetails(experiment);
+		MECLogWriter.getInstance().finish(experiment.getExperimentKey());
 		
-		Configuration.removeConfiguration(experimentHashCode);
+		Configuration.removeConfiguration(slot.getExperimentKey());
+		
+		synchronized (experimentQueue) {
+			
+			// the status is found in the ExecutedExperimentDetails from now on
+			long experimentKey = experiment.getExperimentKey();
+			
+			if (!waitingByKey.containsKey(experimentKey) && getSlot(slot.getExperimentKey()) == null) {
+				ExecutionQueueManager.unindexExperiment(experimentKey, this);
+			}
+			
+		}
 
-		executeStatus 		= null;
-		runningExperiment 	= null;
-		experimentHashCode 	= "";
+		lastActivity = System.currentTimeMillis();
 		
 		// now the next experiment can be executed
 		checkToExecuteNext();
@@ -320,7 +557,7 @@ public class ExecutionQueue implements IStatusListener {
 
 
 
-
+	
 	
 	
 	
@@ -336,63 +573,121 @@ public class ExecutionQueue implements IStatusListener {
 	 * necessary information about the current controller state.
 	 * 
 	 * @param experiment 	the experiment, whose details are requested
+	 * @param since			the sequence number of the last known log entry, 0 for the whole log
 	 * @return 				a status package with all informatio about the currently running experiment
 	 */
-	private ExperimentStatus createExperimentStatusPackage(QueuedExperiment experiment) {
+	private ExperimentStatus createExperimentStatusPackage(QueuedExperiment experiment, long since) {
 		
 		if (experiment == null) {
 			return null;
 		}
 		
+		synchronized (experiment) {
+			return createExperimentStatus(experiment, since);
+		}
+	}
+	
+	/**
+	 * Creates the {@link ExperimentStatus} object. Only called while holding the lock
+	 * of the given experiment.
+	 * 
+	 * @param experiment 	the experiment, whose details are requested
+	 * @param since			the sequence number of the last known log entry, 0 for the whole log
+	 * @return 				a status package with all informatio about the experiment
+	 */
+	private ExperimentStatus createExperimentStatus(QueuedExperiment experiment, long since) {
+		
 		ExperimentStatus cce = new ExperimentStatus();
 
-		cce.setAccountId(runningExperiment.getScheduledExperiment().getAccountId());
-		cce.setScenarioName(runningExperiment.getScheduledExperiment().getScenarioDefinition().getScenarioName());
-		cce.setTimeStart(runningExperiment.getTimeStarted());
-		cce.setLabel(runningExperiment.getScheduledExperiment().getLabel());
-		cce.setEventLogList(runningExperiment.getEventLogLiteList());
+		cce.setAccountId(experiment.getScheduledExperiment().getAccountId());
+		cce.setScenarioName(experiment.getScheduledExperiment().getScenarioDefinition().getScenarioName());
+		cce.setTimeStart(experiment.getTimeStarted());
+		cce.setLabel(experiment.getScheduledExperiment().getLabel());
+		
+		// one snapshot, so the delta and the sequence number match
+		List<MECLogEntry> log = experiment.getEventLogLiteList();
+		int from = (int) Math.min(Math.max(since, 0), log.size());
+		cce.setEventLogList(log.subList(from, log.size()));
+		cce.setLastSequence(log.size());
 
-		if (runningExperiment.getStatusMessageList().get(runningExperiment.getStatusMessageList().size() - 1)
-				.getEventType() == EventType.MEASUREMENT_FINISHED) {
+		List<StatusMessage> statusMessages = experiment.getStatusMessageList();
+		
+		// a waiting experiment has no status message yet
+		if (!statusMessages.isEmpty()
+				&& statusMessages.get(statusMessages.size() - 1).getEventType() == EventType.MEASUREMENT_FINISHED) {
 			cce.setFinished(true);
 		} else {
 			cce.setFinished(false);
 		}
 
-		if (runningExperiment.getLastProgressInfo() != null) {
-			ProgressInfo info = runningExperiment.getLastProgressInfo();
+		// the fraction of the repetitions already executed
+		double done = 0;
+		
+		if (experiment.getLastProgressInfo() != null) {
+			ProgressInfo info = experiment.getLastProgressInfo();
 			final float maxPercentage = 100F;
 			float progress = maxPercentage / info.getNumberOfRepetition() * info.getRepetition();
 			cce.setProgress(progress);
+			
+			if (info.getNumberOfRepetition() > 0) {
+				done = Math.min((double) info.getRepetition() / info.getNumberOfRepetition(), 1);
+			}
 		} else {
 			// then the experiment has not started yet
 			cce.setProgress(0.0f);
 		}
 
-		if (runningExperiment.getScheduledExperiment().getDurations().size() > 2) {
-			long sum = 0;
-			for (long l : runningExperiment.getScheduledExperiment().getDurations()) {
-				sum += l;
-			}
-			long estiamtedDuration = sum / runningExperiment.getScheduledExperiment().getDurations().size();
-			cce.setTimeRemaining(estiamtedDuration);
+		if (cce.isFinished()) {
+			cce.setTimeRemaining(0);
+		} else {
+			cce.setTimeRemaining(estimateTimeRemaining(experiment, done));
 		}
 
 		return cce;
 	}
 	
 	/**
-	 * Creates an threadpool, which is responsible for the SoPeCo Runners. This is a singleton method
-	 * for the threadpool and currently a cached thread pool is created, which has a varying numbers
-	 * of thread in it.
+	 * Estimates the remaining execution time of the given experiment. The estimation based on the
+	 * {@link DurationStatistics} of the former executions is combined with the one based on the
+	 * speed of the current execution. The more repetitions are done, the more weight has the
+	 * current speed.
 	 * 
-	 * @return the new created {@link ExecutorService}
+	 * @param experiment	the experiment
+	 * @param done			the fraction of the already executed repetitions
+	 * @return				the remaining time in milliseconds, -1 if it cannot be estimated
 	 */
-	private ExecutorService initThreadPool() {
-		if (threadPool == null) {
-			threadPool = Executors.newCachedThreadPool();
+	private long estimateTimeRemaining(QueuedExperiment experiment, double done) {
+		DurationStatistics statistics = experiment.getScheduledExperiment().getDurationStatistics();
+		boolean hasHistory = statistics.getCount() > 0;
+		
+		if (experiment.getTimeStarted() <= 0) {
+			// a waiting experiment takes as long as usual
+			return hasHistory ? statistics.getAverage() : -1;
+		}
+		
+		long elapsed = System.currentTimeMillis() - experiment.getTimeStarted();
+		long currentRemaining = -1;
+		
+		if (done > 0) {
+			currentRemaining = Math.round(elapsed * (1 - done) / done);
+		}
+		
+		if (!hasHistory) {
+			return currentRemaining;
+		}
+		
+		long historyRemaining = statistics.getAverage() - elapsed;
+		
+		if (historyRemaining <= 0) {
+			// the execution is slower than usual, so compare it with the slow executions
+			historyRemaining = Math.max(statistics.getPercentile(ServiceConfiguration.DURATION_OVERRUN_PERCENTILE) - elapsed, 0);
+		}
+		
+		if (currentRemaining < 0) {
+			return historyRemaining;
 		}
-		return threadPool;
+		
+		return Math.round((1 - done) * historyRemaining + done * currentRemaining);
 	}
 	
 	/**
@@ -404,19 +699,138 @@ public class ExecutionQueue implements IStatusListener {
 	 * @return true, if an experiment is loaded
 	 */
 	private boolean isLoaded() {
-		if (runningExperiment != null) {
-			return true;
+		synchronized (experimentQueue) {
+			return !slots.isEmpty();
+		}
+	}
+	
+	/**
+	 * Returns the slot, which executes the experiment with the given key. Only called
+	 * while holding the lock of the <code>experimentQueue</code>.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @return				the slot, <code>null</code> if the experiment is not running
+	 */
+	private ExecutionSlot getSlot(String experimentKey) {
+		for (ExecutionSlot slot : slots) {
+			
+			if (slot.getExperimentKey().equals(experimentKey)) {
+				return slot;
+			}
+			
 		}
 		
-		return false;
+		return null;
 	}
 	
 	/**
-	 * Start the next execution. Only called by <code>checkToExecuteNext()</code>!
+	 * Removes the given experiment, which has left the queue, from the waiting experiments by key.
+	 * Another waiting experiment with the same key takes its place. Only called while holding the
+	 * lock of the <code>experimentQueue</code>.
 	 * 
-	 * @param experiment the experiment to execute next
+	 * @param experiment the experiment, which has been removed from the queue
 	 */
-	private void execute(QueuedExperiment experiment) {
+	private void removeWaiting(QueuedExperiment experiment) {
+		long experimentKey = experiment.getExperimentKey();
+		
+		if (waitingByKey.get(experimentKey) != experiment) {
+			return;
+		}
+		
+		waitingByKey.remove(experimentKey);
+		
+		for (QueuedExperiment exp : experimentQueue) {
+			
+			if (exp.getExperimentKey() == experimentKey) {
+				waitingByKey.put(experimentKey, exp);
+				break;
+			}
+			
+		}
+	}
+	
+	/**
+	 * Returns the slot a status message, which is fired at the moment, belongs to. This is
+	 * the slot executed by the current thread. If the message is fired by another thread and
+	 * only one slot is in use, the message belongs to this slot.<br />
+	 * <br />
+	 * A status message of a thread other than the runner thread (e.g. fired by the controller
+	 * via RMI) cannot be related while more than one slot is active. It is logged as warning
+	 * and does not appear in the status or the MECLog.
+	 * 
+	 * @return the slot, <code>null</code> if it cannot be determined
+	 */
+	private ExecutionSlot resolveSlot() {
+		ExecutionSlot current = CURRENT_SLOT.get();
+		
+		synchronized (experimentQueue) {
+			
+			if (current != null && slots.contains(current)) {
+				return current;
+			}
+			
+			if (slots.size() == 1) {
+				return slots.get(0);
+			}
+			
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Adds the given {@link StatusMessage} to the experiment of the given slot.
+	 * 
+	 * @param slot			the slot, <code>null</code> discards the message
+	 * @param statusMessage	the message which should be added to the experiment
+	 * @return				the {@link MECLogEntry} of the message, <code>null</code> if discarded
+	 */
+	private MECLogEntry addStatusMessageToExperiment(ExecutionSlot slot, StatusMessage statusMessage) {
+		if (slot == null) {
+			LOGGER.warn("Status message {} on '{}' cannot be related to a running experiment and is discarded.",
+						statusMessage.getEventType(), controllerURL);
+			return null;
+		}
+		
+		QueuedExperiment experiment = slot.getExperiment();
+		
+		MECLogEntry entry = experiment.addStatusMessage(statusMessage);
+		
+		MECLogWriter.getInstance().append(experiment.getExperimentKey(), entry);
+		
+		return entry;
+	}
+	
+	/**
+	 * Pushes the status of the experiment with the given new {@link MECLogEntry} to the
+	 * watchers of the experiment. The status is only created, if the experiment is watched.
+	 * 
+	 * @param experiment	the experiment
+	 * @param entry			the new entry of the event log
+	 */
+	private void publishStatus(QueuedExperiment experiment, MECLogEntry entry) {
+		long experimentKey = experiment.getExperimentKey();
+		
+		if (!ExperimentStatusBroadcaster.getInstance().isWatched(experimentKey)) {
+			return;
+		}
+		
+		ExperimentStatus status = createExperimentStatusPackage(experiment, entry.getSequence());
+		status.setEventLogList(Collections.singletonList(entry));
+		status.setLastSequence(entry.getSequence());
+		
+		ExperimentStatusBroadcaster.getInstance().publish(experimentKey, status);
+	}
+	
+	/**
+	 * Start the execution of the given experiment in a new {@link ExecutionSlot}. The
+	 * {@link SoPeCoRunner} is submitted to the {@link ExperimentExecutor}. Only
+	 * called by <code>checkToExecuteNext()</code>!
+	 * 
+	 * @param experiment	the experiment to execute next
+	 * @return				false, if the <code>ExperimentExecutor</code> rejected the experiment
+	 */
+	private boolean execute(QueuedExperiment experiment) {
 		LOGGER.info("Start experiment id:" + experiment.getScheduledExperiment().getId()
 					+ " on: " + experiment.getScheduledExperiment().getControllerUrl());
 
@@ -437,26 +851,59 @@ public class ExecutionQueue implements IStatusListener {
 			LOGGER.error("Invalid controller URL '{}'.", experiment.getScheduledExperiment().getControllerUrl());
 		}
 		
-		experimentHashCode = String.valueOf(experiment.getScheduledExperiment().getExperimentKey());
+		final ExecutionSlot slot = new ExecutionSlot(experiment);
 		
-		SoPeCoRunner runner = new SoPeCoRunner(experimentHashCode,
-											   executionProperties,
-											   experiment.getScheduledExperiment().getSelectedExperiments());
+		final SoPeCoRunner runner = new SoPeCoRunner(slot.getExperimentKey(),
+											   		 executionProperties,
+											   		 experiment.getScheduledExperiment().getSelectedExperiments());
+		
+		// the log is started before the status messages can be related to the slot
+		MECLogWriter.getInstance().start(experiment.getExperimentKey());
+		
+		slots.add(slot);
 		
-		executeStatus = threadPool.submit(runner);
-
 		experiment.setTimeStarted(System.currentTimeMillis());
 		
+		try {
+			
+			slot.setFuture(ExperimentExecutor.getInstance().submit(experiment.getScheduledExperiment().getAccountId(),
+																	new Runnable() {
+				
+				@Override
+				public void run() {
+					CURRENT_SLOT.set(slot);
+					try {
+						runner.run();
+					} finally {
+						CURRENT_SLOT.remove();
+					}
+				}
+				
+			}));
+			
+		} catch (RejectedExecutionException e) {
+			
+			LOGGER.info("Experiment id:" + experiment.getScheduledExperiment().getId() + " rejected: " + e.getMessage());
+			slots.remove(slot);
+			MECLogWriter.getInstance().finish(experiment.getExperimentKey());
+			return false;
+			
+		}
+		
+		return true;
+		
 	}
 	
 	/**
-	 * Stores the duration of this execution in the list, which is stored in the
-	 * ScheduledExperiment.
+	 * Stores the duration of this execution in the {@link DurationStatistics} and in the
+	 * list of the latest durations, which are stored in the ScheduledExperiment.
+	 * 
+	 * @param experiment the finished experiment
 	 */
-	private void storeDurationInExperiment() {
+	private void storeDurationInExperiment(QueuedExperiment experiment) {
 		
 		ScheduledExperiment exp = ServicePersistenceProvider.getInstance()
-															.loadScheduledExperiment(runningExperiment.getScheduledExperiment().getId());
+															.loadScheduledExperiment(experiment.getScheduledExperiment().getId());
 		
 		if (exp != null) {
 			
@@ -464,9 +911,18 @@ public class ExecutionQueue implements IStatusListener {
 				exp.setDurations(new ArrayList<Long>());
 			}
 			
-			long duration = runningExperiment.getTimeEnded() - runningExperiment.getTimeStarted();
+			long duration = experiment.getTimeEnded() - experiment.getTimeStarted();
+			
+			// the statistics of former experiments are created out of the list before adding
+			DurationStatistics statistics = exp.getDurationStatistics();
+			statistics.add(duration);
+			exp.setDurationStatistics(statistics);
 			exp.getDurations().add(duration);
 			
+			while (exp.getDurations().size() > ServiceConfiguration.DURATION_HISTORY_SIZE) {
+				exp.getDurations().remove(0);
+			}
+			
 			ServicePersistenceProvider.getInstance().storeScheduledExperiment(exp);
 		}
 		
@@ -494,33 +950,11 @@ public class ExecutionQueue implements IStatusListener {
 		eed.setTimeStarted(experiment.getTimeStarted());
 		eed.setName(experiment.getScheduledExperiment().getLabel());
 		eed.setControllerURL(experiment.getScheduledExperiment().getControllerUrl());
-		eed.setExperimentKey(experiment.getScheduledExperiment().getExperimentKey());
+		eed.setExperimentKey(experiment.getExperimentKey());
 		eed.setAccountId(experiment.getScheduledExperiment().getAccountId());
 		eed.setScenarioName(experiment.getScheduledExperiment().getScenarioDefinition().getScenarioName());
 
 		ServicePersistenceProvider.getInstance().storeExecutedExperimentDetails(eed);
 	}
 	
-	/**
-	 * Stores the {@link MECLog} for the the given {@link QueuedExperiment}. When A MECLog with the
-	 * experiment hashcode has already existed, then it's updated.
-	 * 
-	 * @param experiment the experiment to store the {@link MECLog} to
-	 */
-	private void storeMECLog(QueuedExperiment experiment) {
-		
-		long hashcode = experiment.getScheduledExperiment().getExperimentKey();
-		
-		MECLog log = ServicePersistenceProvider.getInstance().loadMECLog(hashcode);
-		
-		if (log == null) {
-			log = new MECLog();
-			log.setId(hashcode);
-		}
-		
-		log.setEntries(experiment.getEventLogLiteList());
-
-		ServicePersistenceProvider.getInstance().storeMECLog(log);
-	}
-	
 }
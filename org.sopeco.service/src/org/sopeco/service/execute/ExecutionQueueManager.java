@@ -27,43 +27,115 @@
 package org.sopeco.service.execute;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sopeco.service.configuration.ServiceConfiguration;
 
 /**
  * The <code>ExecutionQueueManager</code> handles all the {@link ExecutionQueue}s
  * of the SoPeCo Service Layer. <br />
- * Everything is accessed in a static way.
- * 
+ * Everything is accessed in a static way.<br />
+ * <br />
+ * The registry is backed by a {@link ConcurrentMap}, so concurrent requests for the
+ * same controller URL never create two queues. Queues which have been idle for
+ * {@link ServiceConfiguration#EXECUTION_QUEUE_IDLE_TIMEOUT} are evicted via
+ * {@link #evictIdleQueues()}.<br />
+ * <br />
+ * In addition the queues are indexed by the keys of their waiting and running experiments, so
+ * the queue of an experiment is found without searching all queues.
  * 
  * @author Marius Oehler
  * @author Peter Merkert
  */
 public final class ExecutionQueueManager {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionQueueManager.class);
+	
 	/**
 	 * The class is more a utility class and everything is accessed in a static way.
 	 */
 	private ExecutionQueueManager() {
 	};
 
-	private static Map<String, ExecutionQueue> queueMap = new HashMap<String, ExecutionQueue>();
+	private static ConcurrentMap<String, ExecutionQueue> queueMap = new ConcurrentHashMap<String, ExecutionQueue>();
+	
+	/**
+	 * The configured concurrency limits by controller URL. Controllers without an entry
+	 * use {@link ServiceConfiguration#EXECUTION_DEFAULT_CONCURRENCY}.
+	 */
+	private static ConcurrentMap<String, Integer> concurrencyMap = new ConcurrentHashMap<String, Integer>();
+	
+	/**
+	 * The queues by the keys of the experiments, which are waiting or running in them.
+	 */
+	private static ConcurrentMap<Long, ExecutionQueue> experimentIndex = new ConcurrentHashMap<Long, ExecutionQueue>();
 
 	/**
 	 * Returns the {@link ExecutionQueue} corresponding to the given URL.
-	 * If the queue does not exist yet, it will be created.
+	 * If the queue does not exist yet, it will be created.<br />
+	 * <br />
+	 * Only the queue which wins the race for the URL is registered at the
+	 * <code>StatusBroker</code>, a queue which lost the race is discarded unused.
 	 * 
 	 * @param url the URL to the controller
 	 * @return the {@link ExecutionQueue} to the given URL
 	 */
 	public static ExecutionQueue get(String url) {
-		if (!queueMap.containsKey(url)) {
-			queueMap.put(url, new ExecutionQueue(url));
+		ExecutionQueue queue = queueMap.get(url);
+		
+		if (queue == null) {
+			
+			ExecutionQueue newQueue = new ExecutionQueue(url);
+			newQueue.setConcurrency(getConcurrency(url));
+			queue = queueMap.putIfAbsent(url, newQueue);
+			
+			if (queue == null) {
+				newQueue.register();
+				queue = newQueue;
+			}
+			
 		}
-		return queueMap.get(url);
+		
+		return queue;
 	}
 
+	/**
+	 * Sets the number of experiments, which are executed at the same time on the
+	 * controller with the given URL. The limit is kept, even if the queue of the
+	 * controller is evicted.
+	 * 
+	 * @param url			the URL to the controller
+	 * @param concurrency	the number of concurrent executions, clamped to [1,
+	 * 						{@link ServiceConfiguration#EXECUTION_MAX_CONCURRENCY}]
+	 */
+	public static void setConcurrency(String url, int concurrency) {
+		int clamped = Math.min(ServiceConfiguration.EXECUTION_MAX_CONCURRENCY, Math.max(1, concurrency));
+		concurrencyMap.put(url, clamped);
+		get(url).setConcurrency(clamped);
+	}
+	
+	/**
+	 * Returns the number of experiments, which are executed at the same time on the
+	 * controller with the given URL.
+	 * 
+	 * @param url	the URL to the controller
+	 * @return		the number of concurrent executions
+	 */
+	public static int getConcurrency(String url) {
+		Integer concurrency = concurrencyMap.get(url);
+		
+		if (concurrency == null) {
+			return ServiceConfiguration.EXECUTION_DEFAULT_CONCURRENCY;
+		}
+		
+		return concurrency;
+	}
+	
 	/**
 	 * Returns a list with all ExecutionQueues.
 	 * 
@@ -88,4 +160,80 @@ public final class ExecutionQueueManager {
 		return controllerList;
 	}
 
+	/**
+	 * Removes all {@link ExecutionQueue}s, which have neither a running nor a waiting
+	 * experiment and which have not been used for
+	 * {@link ServiceConfiguration#EXECUTION_QUEUE_IDLE_TIMEOUT} milliseconds.<br />
+	 * A removed queue releases its <code>StatusBroker</code> listener. Queues have no threads
+	 * of their own, the experiments of all queues run on the shared {@link ExperimentExecutor}.
+	 * 
+	 * @return the number of evicted queues
+	 */
+	public static int evictIdleQueues() {
+		
+		long now = System.currentTimeMillis();
+		int evicted = 0;
+		
+		for (Map.Entry<String, ExecutionQueue> entry : queueMap.entrySet()) {
+			
+			ExecutionQueue queue = entry.getValue();
+			
+			if (queue.retireIfIdle(now, ServiceConfiguration.EXECUTION_QUEUE_IDLE_TIMEOUT)) {
+				
+				queueMap.remove(entry.getKey(), queue);
+				evicted++;
+				
+				LOGGER.debug("Evicted idle ExecutionQueue for controller URL '{}'.", entry.getKey());
+			}
+			
+		}
+		
+		return evicted;
+	}
+	
+	/**
+	 * Returns the {@link ExecutionQueue}, in which the experiment with the given key is
+	 * waiting or running.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @return				the queue, <code>null</code> if the experiment is neither waiting nor running
+	 */
+	public static ExecutionQueue getQueueOfExperiment(long experimentKey) {
+		return experimentIndex.get(experimentKey);
+	}
+	
+	/**
+	 * Registers the given queue for the experiment with the given key. Is called by the queue,
+	 * when the experiment is added.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param queue			the queue the experiment has been added to
+	 */
+	static void indexExperiment(long experimentKey, ExecutionQueue queue) {
+		experimentIndex.put(experimentKey, queue);
+	}
+	
+	/**
+	 * Removes the registration of the given queue for the experiment with the given key. Is
+	 * called by the queue, when no experiment with the key is waiting or running anymore.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param queue			the queue the experiment has finished in
+	 */
+	static void unindexExperiment(long experimentKey, ExecutionQueue queue) {
+		experimentIndex.remove(experimentKey, queue);
+	}
+	
+	/**
+	 * Replaces the given retired {@link ExecutionQueue} with a fresh one. Is called by
+	 * a queue, which received an experiment after it has been evicted.
+	 * 
+	 * @param retired the queue which has been evicted
+	 * @return the current queue for the controller URL of the retired queue
+	 */
+	static ExecutionQueue renew(ExecutionQueue retired) {
+		queueMap.remove(retired.getControllerURL(), retired);
+		return get(retired.getControllerURL());
+	}
+	
 }
@@ -30,10 +30,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.persistence.AccountPersistenceProvider;
 import org.sopeco.service.persistence.ServicePersistenceProvider;
 import org.sopeco.service.persistence.entities.ExecutedExperimentDetails;
 import org.sopeco.service.persistence.entities.MECLog;
@@ -46,6 +49,11 @@ import org.sopeco.service.rest.exchange.ExperimentStatus;
  * This is a thread and is called periodically via a {@link ScheduledExecutorService} time
  * scheduler. Then all the execution queues are checked for experiments which can be
  * executed.<br />
+ * <br />
+ * The {@link ScheduledExperiment}s are not polled from the database. They are held in an
+ * {@link ExecutionDueQueue} ordered by their next execution time, which is loaded once
+ * when the scheduler starts and is kept up to date via {@link #updateSchedule(ScheduledExperiment)}
+ * and {@link #removeSchedule(long)}. The scheduler sleeps until the next experiment is due.<br />
  * 
  * @author Peter Merkert
  */
@@ -71,6 +79,34 @@ public final class ExecutionScheduler implements Runnable {
 	 */
 	private static boolean isStarted = false;
 	
+	/**
+	 * All scheduled experiments ordered by their next execution time.
+	 */
+	private final ExecutionDueQueue dueQueue = new ExecutionDueQueue();
+	
+	/**
+	 * The pending dispatch of the next due experiment(s), <code>null</code> if
+	 * no dispatch is pending.
+	 */
+	private ScheduledFuture<?> nextDispatch;
+	
+	/**
+	 * The time the pending dispatch is scheduled for.
+	 */
+	private long nextDispatchTime = Long.MAX_VALUE;
+	
+	/**
+	 * Dispatches all experiments of the {@link ExecutionDueQueue}, which are due.
+	 */
+	private final Runnable dispatcher = new Runnable() {
+		
+		@Override
+		public void run() {
+			dispatchDueExperiments();
+		}
+		
+	};
+	
 	private ExecutionScheduler() {
 	}
 	
@@ -79,7 +115,7 @@ public final class ExecutionScheduler implements Runnable {
 	 * 
 	 * @return the singleton for the <code>ExperimentScheduler</code>
 	 */
-	public static ExecutionScheduler getInstance() {
+	public static synchronized ExecutionScheduler getInstance() {
 		if (experimentScheduler == null) {
 			experimentScheduler = new ExecutionScheduler();
 		}
@@ -101,6 +137,8 @@ public final class ExecutionScheduler implements Runnable {
 										ServiceConfiguration.SCHEDULING_TIME_UNIT);
 		
 			isStarted = true;
+			
+			loadDueQueue();
 		}
 		
 	}
@@ -114,6 +152,11 @@ public final class ExecutionScheduler implements Runnable {
 	public boolean stopScheduler() {
 		
 		if (isStarted) {
+			
+			synchronized (this) {
+				cancelDispatch();
+			}
+			
 			scheduler.shutdown();
 			
 			try {
@@ -129,6 +172,8 @@ public final class ExecutionScheduler implements Runnable {
 			scheduler = null;
 			isStarted = false;
 			
+			dueQueue.clear();
+			
 			return true;
 		}
 		
@@ -136,57 +181,209 @@ public final class ExecutionScheduler implements Runnable {
 	}
 	
 	/**
-	 * This method does a <b>ONE TIME</b> check for experiments which can be executed.
+	 * This method does a <b>ONE TIME</b> check of all {@link ExecutionQueue}s, whether an
+	 * experiment has finished without notifying its queue. Idle queues are evicted and the
+	 * buffered logs of the running experiments are written.
 	 * <br />
 	 * If you want to have this method executed in an interval, please call <code>startScheduler()</code>.
+	 * The scheduled experiments are dispatched independent of this check, when they are due.
 	 */
 	@Override
 	public void run() {
 		
-		// fetch the schedulede experiment list and execute ready ones
-		LOGGER.debug("Checking for scheduled experiments");
+		LOGGER.debug("Checking the execution queues");
 		try {
-			List<ScheduledExperiment> experimentList = ServicePersistenceProvider.getInstance().loadAllScheduledExperiments();
 
 			for (ExecutionQueue queue : ExecutionQueueManager.getAllQueues()) {
 				queue.check();
 			}
+			
+			ExecutionQueueManager.evictIdleQueues();
+			
+			MECLogWriter.getInstance().flushAll();
+			
+			ExperimentStatusBroadcaster.getInstance().checkWatched();
+			
+			ServicePersistenceProvider.getInstance().flushUserTouches();
+			
+			AccountPersistenceProvider.evictIdleProviders();
 
-			for (ScheduledExperiment experiment : experimentList) {
-				if (experiment.getNextExecutionTime() < System.currentTimeMillis() && experiment.isActive()) {
+		} catch (Exception e) {
+			LOGGER.error(e.getLocalizedMessage());
+		}
+		
+	}
+	
+	/**
+	 * Adds the given {@link ScheduledExperiment} to the scheduling or updates its
+	 * execution time. Must be called, whenever a scheduled experiment is stored with
+	 * a changed execution time or state.
+	 * 
+	 * @param experiment the stored experiment
+	 */
+	public void updateSchedule(ScheduledExperiment experiment) {
+		dueQueue.update(experiment.getId(), experiment.getNextExecutionTime());
+		rescheduleDispatch();
+	}
+	
+	/**
+	 * Removes the {@link ScheduledExperiment} with the given ID from the scheduling. Must be
+	 * called, whenever a scheduled experiment is removed from the database.
+	 * 
+	 * @param id the ID of the removed experiment
+	 */
+	public void removeSchedule(long id) {
+		dueQueue.remove(id);
+	}
+	
+	/**
+	 * Loads the execution times of all {@link ScheduledExperiment}s into the
+	 * {@link ExecutionDueQueue}. Is only called once, when the scheduler starts.
+	 */
+	private void loadDueQueue() {
+		
+		try {
+			
+			for (Object[] row : ServicePersistenceProvider.getInstance().loadAllScheduledExperimentTimes()) {
+				dueQueue.update(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+			}
+			
+			LOGGER.info("Loaded {} scheduled experiments.", dueQueue.size());
+			
+		} catch (Exception e) {
+			LOGGER.error("Cannot load the scheduled experiments: " + e.getLocalizedMessage());
+		}
+		
+		rescheduleDispatch();
+	}
+	
+	/**
+	 * Schedules the dispatch for the experiment, which is due next. A pending dispatch is
+	 * replaced, if it is scheduled for another time.
+	 */
+	private synchronized void rescheduleDispatch() {
+		
+		if (!isStarted) {
+			return;
+		}
+		
+		long next = dueQueue.peekTime();
+		
+		if (nextDispatch != null && next == nextDispatchTime) {
+			return;
+		}
+		
+		cancelDispatch();
+		
+		if (next == Long.MAX_VALUE) {
+			return;
+		}
+		
+		long delay = Math.max(0, next - System.currentTimeMillis());
+		
+		nextDispatch 		= scheduler.schedule(dispatcher, delay, TimeUnit.MILLISECONDS);
+		nextDispatchTime 	= next;
+	}
+	
+	/**
+	 * Cancels the pending dispatch. Only called while holding the lock of this scheduler.
+	 */
+	private void cancelDispatch() {
+		
+		if (nextDispatch != null) {
+			nextDispatch.cancel(false);
+		}
+		
+		nextDispatch 		= null;
+		nextDispatchTime 	= Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Enqueues all active experiments, which are due. For inactive repeating experiments
+	 * the next execution time is calculated. Inactive experiments, which are not repeating,
+	 * are scheduled again when they are enabled. Afterwards the next dispatch is scheduled.<br />
+	 * <br />
+	 * If the dispatch of an experiment fails before it has been enqueued, it is retried after
+	 * {@link ServiceConfiguration#SCHEDULING_RETRY_DELAY}.
+	 */
+	private void dispatchDueExperiments() {
+		
+		synchronized (this) {
+			nextDispatch 		= null;
+			nextDispatchTime 	= Long.MAX_VALUE;
+		}
+		
+		long now = System.currentTimeMillis();
+		
+		for (long id : dueQueue.pollDue(now)) {
+			
+			ScheduledExperiment experiment = null;
+			boolean enqueued = false;
+			
+			try {
+				
+				experiment = ServicePersistenceProvider.getInstance().loadScheduledExperiment(id);
+				
+				if (experiment == null) {
+					continue;
+				}
+				
+				if (experiment.getNextExecutionTime() > now) {
+					// the execution time has been changed in the meantime
+					dueQueue.update(id, experiment.getNextExecutionTime());
+				} else if (experiment.isActive()) {
 					// Experiment will be executed
 					enqueueExperiment(experiment);
-				} else if (experiment.getNextExecutionTime() < System.currentTimeMillis() && experiment.isRepeating()) {
+					enqueued = true;
+					completeDispatch(experiment);
+				} else if (experiment.isRepeating()) {
 					// Calculates the next execution time.
 					updateNextExecutionTime(experiment);
+				} else {
+					LOGGER.debug("Scheduled experiment with id {} is inactive and not repeating. It is scheduled again when enabled.", id);
 				}
+				
+			} catch (Exception e) {
+				LOGGER.error("Cannot dispatch scheduled experiment with id " + id + ": " + e.getLocalizedMessage());
+				retryDispatch(id, experiment, enqueued, now);
 			}
-		} catch (Exception e) {
-			LOGGER.error(e.getLocalizedMessage());
+			
 		}
 		
+		rescheduleDispatch();
 	}
 	
 	/**
-	 * Inserts an experiment into the execution queue. If the experiment has been added to
-	 * the execution queue <b>it will be deleted as {@link ScheduledExperiment} out of the database</b>!<br />
-	 * However, the experiment status can be queried via the return key of this method.
+	 * Inserts an experiment into the execution queue. The status of the experiment can be
+	 * queried via its experiment key afterwards.
 	 * 
 	 * @param experiment 	the experiment to enqueue to the experiment queue
-	 * @return 				the hashcode to access the added experiment afterwards
 	 */
-	private String enqueueExperiment(ScheduledExperiment experiment) {
+	private void enqueueExperiment(ScheduledExperiment experiment) {
 		
 		LOGGER.info("Insert experiment '" + experiment.getLabel()
 					+ "' (id: " + experiment.getId()
 					+ " - account: " + experiment.getAccountId()
 					+ ") in queue.");
 
-		ExecutionQueueManager.get(experiment.getControllerUrl()).addExperiment(experiment.createQueuedExperiment());
-
+		QueuedExperiment queuedExperiment = experiment.createQueuedExperiment();
+		ExecutionQueueManager.get(experiment.getControllerUrl()).addExperiment(queuedExperiment);
+		
+		LOGGER.info("Experiment enqueued with key '{}'", queuedExperiment.getExperimentKey());
+	}
+	
+	/**
+	 * Updates the {@link ScheduledExperiment} after it has been enqueued. The execution times
+	 * of a repeating experiment are updated, otherwise <b>it is deleted as {@link ScheduledExperiment}
+	 * out of the database</b>!
+	 * 
+	 * @param experiment the enqueued experiment
+	 */
+	private void completeDispatch(ScheduledExperiment experiment) {
+		
 		if (experiment.isRepeating()) {
 			
-			LOGGER.info("Update execution times for the experiment with hashcode '{}'", experiment.getExperimentKey());
+			LOGGER.info("Update execution times for the experiment with id '{}'", experiment.getId());
 			experiment.setLastExecutionTime(System.currentTimeMillis());
 			updateNextExecutionTime(experiment);
 			
@@ -196,8 +393,30 @@ public final class ExecutionScheduler implements Runnable {
 			ServicePersistenceProvider.getInstance().removeScheduledExperiment(experiment);
 			
 		}
-
-		return String.valueOf(experiment.getExperimentKey());
+		
+	}
+	
+	/**
+	 * Schedules the experiment with the given ID again, after its dispatch has failed. An experiment,
+	 * which has not been enqueued yet, is retried after {@link ServiceConfiguration#SCHEDULING_RETRY_DELAY}.
+	 * An enqueued repeating experiment is scheduled for its next repetition, although it could not be
+	 * stored. An enqueued experiment, which is not repeating, is not scheduled again to avoid a second
+	 * execution.
+	 * 
+	 * @param id			the ID of the scheduled experiment
+	 * @param experiment	the loaded experiment, <code>null</code> if loading failed
+	 * @param enqueued		true, if the experiment has been enqueued before the failure
+	 * @param now			the time of the dispatch
+	 */
+	private void retryDispatch(long id, ScheduledExperiment experiment, boolean enqueued, long now) {
+		
+		if (!enqueued) {
+			dueQueue.update(id, now + ServiceConfiguration.SCHEDULING_RETRY_DELAY);
+		} else if (experiment.isRepeating() && experiment.getNextExecutionTime() > now) {
+			dueQueue.update(id, experiment.getNextExecutionTime());
+		} else if (!experiment.isRepeating()) {
+			LOGGER.warn("The executed experiment with id {} could not be removed from the scheduled experiments.", id);
+		}
 		
 	}
 	
@@ -209,13 +428,28 @@ public final class ExecutionScheduler implements Runnable {
 	 * 						the key does not match
 	 */
 	public ExperimentStatus getExperimentStatus(long experimentKey) {
+		return getExperimentStatus(experimentKey, 0);
+	}
+	
+	/**
+	 * Fetches the status of the experiment with the given key. The event log of the status
+	 * only contains the {@link MECLogEntry}s with a sequence number greater than <code>since</code>.
+	 * 
+	 * @param experimentKey	the key to identify the experiment
+	 * @param since			the sequence number of the last known log entry, 0 for the whole log
+	 * @return				{@link ExperimentStatus} of the experiment with the given key, null if
+	 * 						the key does not match
+	 */
+	public ExperimentStatus getExperimentStatus(long experimentKey, long since) {
 		
 		LOGGER.info("Trying to fetch experiment with key: " + experimentKey);
 		
-		// this can be a bottleneck, when a lot of experiments are enqueued
-		for (ExecutionQueue queue : ExecutionQueueManager.getAllQueues()) {
+		// the queue of a waiting or running experiment is indexed by the key
+		ExecutionQueue queue = ExecutionQueueManager.getQueueOfExperiment(experimentKey);
+		
+		if (queue != null) {
 			
-			ExperimentStatus status = queue.getExperimentStatus(experimentKey);
+			ExperimentStatus status = queue.getExperimentStatus(experimentKey, since);
 
 			if (status != null) {
 				return status;
@@ -223,12 +457,11 @@ public final class ExecutionScheduler implements Runnable {
 		
 		}
 		
-		// now check the ScheduledExperiment database for the experiment
-		// the experiment can be in the list of ScheduledExperiments waiting in active state to be scheduled
-		for (ScheduledExperiment se : ServicePersistenceProvider.getInstance().loadAllScheduledExperiments()) {	
-			if (se.getExperimentKey() == experimentKey) {
-				return createExperimentStatus(se);
-			}	
+		// now check the ScheduledExperiments waiting to be enqueued, they are indexed by the key
+		ScheduledExperiment se = ServicePersistenceProvider.getInstance().loadScheduledExperimentByKey(experimentKey);
+		
+		if (se != null) {
+			return createExperimentStatus(se);
 		}
 		
 		// now check the ExecutedExperimentDetails
@@ -236,13 +469,49 @@ public final class ExecutionScheduler implements Runnable {
 		ExecutedExperimentDetails eed = ServicePersistenceProvider.getInstance().loadExecutedExperimentDetails(experimentKey);
 		
 		if (eed != null) {
-			return createExperimentStatus(experimentKey, eed);
+			return createExperimentStatus(experimentKey, eed, since);
 		}
 		
 		// the experiment with given key cannot be found anywhere in the database
 		return null ;
 	}
 	
+	/**
+	 * Returns the ID of the account, which owns the experiment with the given key. The
+	 * experiment may be waiting, running, scheduled or already executed.
+	 * 
+	 * @param experimentKey	the key to identify the experiment
+	 * @return				the account ID, null if the key does not match
+	 */
+	public Long getAccountIdOfExperiment(long experimentKey) {
+		
+		ExecutionQueue queue = ExecutionQueueManager.getQueueOfExperiment(experimentKey);
+		
+		if (queue != null) {
+			
+			Long accountId = queue.getAccountIdOfExperiment(experimentKey);
+			
+			if (accountId != null) {
+				return accountId;
+			}
+			
+		}
+		
+		ScheduledExperiment se = ServicePersistenceProvider.getInstance().loadScheduledExperimentByKey(experimentKey);
+		
+		if (se != null) {
+			return se.getAccountId();
+		}
+		
+		ExecutedExperimentDetails eed = ServicePersistenceProvider.getInstance().loadExecutedExperimentDetails(experimentKey);
+		
+		if (eed != null) {
+			return eed.getAccountId();
+		}
+		
+		return null;
+	}
+	
 	/**
 	 * Sets the status of the experiment with the given key to abort. The information
 	 * is passed via a configuration property. Therfor the aborting may take a little time
@@ -252,16 +521,10 @@ public final class ExecutionScheduler implements Runnable {
 	 */
 	public void setExperimentAborting(long experimentKey) {
 		
-		for (ExecutionQueue queue : ExecutionQueueManager.getAllQueues()) {
-			
-			ExperimentStatus status = queue.getExperimentStatus(experimentKey);
-
-			if (status != null) {
-				
-				queue.abortExperiment(experimentKey);
-				
-			}
-			
+		ExecutionQueue queue = ExecutionQueueManager.getQueueOfExperiment(experimentKey);
+		
+		if (queue != null) {
+			queue.abortExperiment(experimentKey);
 		}
 	}
 	
@@ -272,11 +535,17 @@ public final class ExecutionScheduler implements Runnable {
 	 * @param experiment the experiment to check the next execution time
 	 */
 	private void updateNextExecutionTime(ScheduledExperiment experiment) {
-		long nextRepetition = ScheduleExpression.nextValidDate(experiment.getRepeatDays(),
-															   experiment.getRepeatHours(),
-															   experiment.getRepeatMinutes());
+		CompiledScheduleExpression schedule = experiment.getCompiledSchedule();
+		long nextRepetition = schedule == null ? -1 : schedule.nextValidDate();
 		experiment.setNextExecutionTime(nextRepetition);
 		ServicePersistenceProvider.getInstance().storeScheduledExperiment(experiment);
+		
+		if (nextRepetition < 0) {
+			LOGGER.warn("The repeat settings of the experiment with id '{}' are invalid. It is not scheduled again.", experiment.getId());
+			dueQueue.remove(experiment.getId());
+		} else {
+			dueQueue.update(experiment.getId(), nextRepetition);
+		}
 	}
 
 	/**
@@ -305,9 +574,10 @@ public final class ExecutionScheduler implements Runnable {
 	 * 
 	 * @param experimentKey	the experiment key
 	 * @param eed			the {@link ExecutedExperimentDetails}
+	 * @param since			the sequence number of the last known log entry, 0 for the whole log
 	 * @return				the {@link ExperimentStatus}
 	 */
-	private ExperimentStatus createExperimentStatus(long experimentKey, ExecutedExperimentDetails eed) {
+	private ExperimentStatus createExperimentStatus(long experimentKey, ExecutedExperimentDetails eed, long since) {
 		
 		LOGGER.debug("Experiment key: " + experimentKey);
 		
@@ -324,7 +594,7 @@ public final class ExecutionScheduler implements Runnable {
 		// the event log list
 		List<MECLogEntry> mecloglist = new ArrayList<MECLogEntry>();
 		
-		MECLog meclog = ServicePersistenceProvider.getInstance().loadMECLog(experimentKey);
+		MECLog meclog = ServicePersistenceProvider.getInstance().loadMECLog(experimentKey, since);
 
 		LOGGER.debug("searching MECLOG");
 		
@@ -334,6 +604,7 @@ public final class ExecutionScheduler implements Runnable {
 		}
 		
 		status.setEventLogList(mecloglist);
+		status.setLastSequence(mecloglist.isEmpty() ? Math.max(since, 0) : mecloglist.get(mecloglist.size() - 1).getSequence());
 		return status;
 	}
 	
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.execute;
+
+import java.util.concurrent.Future;
+
+import org.sopeco.runner.SoPeCoRunner;
+
+/**
+ * An <code>ExecutionSlot</code> is one of the concurrent executions of an {@link ExecutionQueue}.
+ * It holds the {@link QueuedExperiment}, which is executed in the slot, and the {@link Future}
+ * of the corresponding {@link SoPeCoRunner}.
+ * 
+ * @author Peter Merkert
+ */
+final class ExecutionSlot {
+
+	/**
+	 * The experiment executed in this slot.
+	 */
+	private final QueuedExperiment experiment;
+	
+	/**
+	 * The experiment key as string, which identifies the <code>Configuration</code> of
+	 * the execution.
+	 */
+	private final String experimentKey;
+	
+	/**
+	 * The future of the {@link SoPeCoRunner}, <code>null</code> until the runner is submitted.
+	 */
+	private volatile Future<?> future;
+	
+	/**
+	 * Creates a new slot for the given experiment.
+	 * 
+	 * @param experiment the experiment to execute in this slot
+	 */
+	ExecutionSlot(QueuedExperiment experiment) {
+		this.experiment 	= experiment;
+		this.experimentKey 	= String.valueOf(experiment.getExperimentKey());
+	}
+	
+	QueuedExperiment getExperiment() {
+		return experiment;
+	}
+	
+	String getExperimentKey() {
+		return experimentKey;
+	}
+	
+	void setFuture(Future<?> future) {
+		this.future = future;
+	}
+	
+	/**
+	 * Returns whether the {@link SoPeCoRunner} of this slot has terminated. A slot, whose
+	 * runner has not been submitted yet, is not done.
+	 * 
+	 * @return true, if the runner has terminated
+	 */
+	boolean isDone() {
+		Future<?> f = future;
+		return f != null && (f.isDone() || f.isCancelled());
+	}
+	
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.execute;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sopeco.runner.SoPeCoRunner;
+import org.sopeco.service.configuration.ServiceConfiguration;
+
+/**
+ * The <code>ExperimentExecutor</code> is the single execution engine for all {@link SoPeCoRunner}s
+ * of the service. All {@link ExecutionQueue}s submit their runners here.<br />
+ * <br />
+ * At most {@link ServiceConfiguration#EXECUTION_THREAD_POOL_SIZE} runners are executed at the
+ * same time. Further runners wait, grouped by their account. Whenever a thread becomes free,
+ * the accounts take turns, so one account with many experiments cannot starve the others.
+ * If {@link ServiceConfiguration#EXECUTION_MAX_WAITING} runners are already waiting, new
+ * runners are rejected and must be submitted again later.
+ * 
+ * @author Peter Merkert
+ */
+public final class ExperimentExecutor {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExperimentExecutor.class);
+	
+	/**
+	 * The singleton instance.
+	 */
+	private static ExperimentExecutor singleton;
+	
+	/**
+	 * The threads executing the runners. Never more than <code>poolSize</code> tasks are
+	 * handed to the pool at the same time.
+	 */
+	private final ExecutorService threadPool;
+	
+	private final int poolSize;
+	
+	private final int maxWaiting;
+	
+	/**
+	 * The waiting tasks by account ID. The order of the keys is the order in which the
+	 * accounts get their next turn.
+	 */
+	private final Map<Long, Deque<FutureTask<?>>> waiting = new LinkedHashMap<Long, Deque<FutureTask<?>>>();
+	
+	/**
+	 * The number of all waiting tasks.
+	 */
+	private int waitingCount = 0;
+	
+	/**
+	 * The number of tasks handed to the thread pool.
+	 */
+	private int running = 0;
+	
+	private boolean isShutdown = false;
+	
+	/**
+	 * Creates a new executor.
+	 * 
+	 * @param poolSize		the number of runners executed at the same time
+	 * @param maxWaiting	the number of runners which can wait for execution
+	 */
+	private ExperimentExecutor(int poolSize, int maxWaiting) {
+		this.poolSize 	= poolSize;
+		this.maxWaiting = maxWaiting;
+		this.threadPool = Executors.newFixedThreadPool(poolSize);
+	}
+	
+	/**
+	 * Singleton get method. After {@link #shutdown()} the shut down executor is returned,
+	 * which rejects all submitted runners.
+	 * 
+	 * @return the singleton for the <code>ExperimentExecutor</code>
+	 */
+	public static synchronized ExperimentExecutor getInstance() {
+		if (singleton == null) {
+			singleton = new ExperimentExecutor(ServiceConfiguration.EXECUTION_THREAD_POOL_SIZE,
+											   ServiceConfiguration.EXECUTION_MAX_WAITING);
+		}
+		
+		return singleton;
+	}
+	
+	/**
+	 * Shuts the executor down. Waiting runners are cancelled, running runners get
+	 * {@link ServiceConfiguration#EXECUTION_SHUTDOWN_TIMEOUT} to finish, before they are
+	 * interrupted. The executor is kept as singleton, so runners submitted afterwards are
+	 * rejected and no new threads are started.
+	 * 
+	 * @return true, if all runners have terminated
+	 */
+	public static boolean shutdown() {
+		return getInstance().terminate(ServiceConfiguration.EXECUTION_SHUTDOWN_TIMEOUT,
+									   ServiceConfiguration.SCHEDULING_TIME_UNIT);
+	}
+	
+	/**
+	 * Submits the given task for the given account.
+	 * 
+	 * @param accountId	the account the task belongs to
+	 * @param task		the task, normally executing a {@link SoPeCoRunner}
+	 * @return			the {@link Future} of the task
+	 * @throws RejectedExecutionException if too many tasks are waiting or the executor is shut down
+	 */
+	public synchronized Future<?> submit(long accountId, Runnable task) {
+		
+		if (isShutdown) {
+			throw new RejectedExecutionException("The experiment executor has been shut down.");
+		}
+		
+		if (running >= poolSize && waitingCount >= maxWaiting) {
+			throw new RejectedExecutionException("Already " + waitingCount + " experiments are waiting for execution.");
+		}
+		
+		FutureTask<Object> future = new FutureTask<Object>(task, null);
+		
+		Deque<FutureTask<?>> accountTasks = waiting.get(accountId);
+		
+		if (accountTasks == null) {
+			accountTasks = new ArrayDeque<FutureTask<?>>();
+			waiting.put(accountId, accountTasks);
+		}
+		
+		accountTasks.add(future);
+		waitingCount++;
+		
+		dispatch();
+		
+		return future;
+	}
+	
+	/**
+	 * Returns the number of runners waiting for a free thread.
+	 * 
+	 * @return the number of waiting runners
+	 */
+	public synchronized int getWaitingCount() {
+		return waitingCount;
+	}
+	
+	/**
+	 * Hands waiting tasks to the thread pool, as long as threads are free. The accounts
+	 * are served round robin. Only called while holding the lock of this executor.
+	 */
+	private void dispatch() {
+		
+		while (running < poolSize && waitingCount > 0) {
+			
+			Iterator<Map.Entry<Long, Deque<FutureTask<?>>>> it = waiting.entrySet().iterator();
+			Map.Entry<Long, Deque<FutureTask<?>>> next = it.next();
+			it.remove();
+			
+			final FutureTask<?> task = next.getValue().poll();
+			waitingCount--;
+			
+			if (!next.getValue().isEmpty()) {
+				// the account is served again after all the other accounts
+				waiting.put(next.getKey(), next.getValue());
+			}
+			
+			if (task.isCancelled()) {
+				continue;
+			}
+			
+			running++;
+			
+			threadPool.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						finished();
+					}
+				}
+				
+			});
+		}
+		
+	}
+	
+	/**
+	 * Is called when a task has finished and frees its thread.
+	 */
+	private synchronized void finished() {
+		running--;
+		
+		if (!isShutdown) {
+			dispatch();
+		}
+	}
+	
+	/**
+	 * Cancels all waiting tasks and waits for the running ones.
+	 * 
+	 * @param timeout	the time to wait for the running tasks
+	 * @param unit		the unit of the timeout
+	 * @return			true, if all tasks have terminated
+	 */
+	private boolean terminate(long timeout, TimeUnit unit) {
+		
+		synchronized (this) {
+			isShutdown = true;
+			
+			for (Deque<FutureTask<?>> accountTasks : waiting.values()) {
+				for (FutureTask<?> task : accountTasks) {
+					task.cancel(false);
+				}
+			}
+			
+			waiting.clear();
+			waitingCount = 0;
+		}
+		
+		threadPool.shutdown();
+		
+		try {
+			
+			if (threadPool.awaitTermination(timeout, unit)) {
+				return true;
+			}
+			
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		LOGGER.warn("Experiments are still running. They are interrupted now.");
+		threadPool.shutdownNow();
+		return false;
+	}
+	
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.execute;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ws.rs.core.MediaType;
+
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.glassfish.jersey.media.sse.SseBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sopeco.service.persistence.ServicePersistenceProvider;
+import org.sopeco.service.persistence.entities.ScheduledExperiment;
+import org.sopeco.service.rest.exchange.ExperimentStatus;
+
+/**
+ * The <code>ExperimentStatusBroadcaster</code> pushes the status of executed experiments to
+ * the clients watching them via Server-Sent Events. The {@link ExecutionQueue} publishes
+ * every new status message once, and the {@link SseBroadcaster} of the experiment fans it
+ * out to all watchers. When the experiment has finished, the connections are closed.<br />
+ * <br />
+ * The events are named {@link #EVENT_STATUS} and {@link #EVENT_FINISHED} and carry an
+ * {@link ExperimentStatus} with only the new {@link MECLogEntry}. Experiments, which are not
+ * executed anymore without finishing, e.g. because they have been disabled or removed, are
+ * detected by {@link #checkWatched()}. Their watchers get the {@link #EVENT_CLOSED} event.
+ * 
+ * @author Peter Merkert
+ */
+public final class ExperimentStatusBroadcaster {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExperimentStatusBroadcaster.class);
+	
+	/**
+	 * The name of the events for the progress and log entries of a running experiment.
+	 */
+	public static final String EVENT_STATUS 	= "status";
+	
+	/**
+	 * The name of the last event of an experiment.
+	 */
+	public static final String EVENT_FINISHED 	= "finished";
+	
+	/**
+	 * The name of the last event of an experiment, which is not going to be executed.
+	 */
+	public static final String EVENT_CLOSED 	= "closed";
+	
+	/**
+	 * The singleton instance.
+	 */
+	private static ExperimentStatusBroadcaster singleton;
+	
+	/**
+	 * The broadcasters by the experiment key. Only watched experiments have a broadcaster.
+	 */
+	private final ConcurrentMap<Long, SseBroadcaster> broadcasters = new ConcurrentHashMap<Long, SseBroadcaster>();
+	
+	private ExperimentStatusBroadcaster() {
+	}
+	
+	/**
+	 * Singleton get method.
+	 * 
+	 * @return the singleton for the <code>ExperimentStatusBroadcaster</code>
+	 */
+	public static synchronized ExperimentStatusBroadcaster getInstance() {
+		if (singleton == null) {
+			singleton = new ExperimentStatusBroadcaster();
+		}
+		
+		return singleton;
+	}
+	
+	/**
+	 * Adds a watcher for the experiment with the given key. The current status is sent
+	 * to the watcher right away. If the experiment has already finished or is not going
+	 * to be executed, the connection is closed afterwards.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param output		the connection to the watcher
+	 */
+	public void subscribe(long experimentKey, EventOutput output) {
+		
+		SseBroadcaster broadcaster = broadcasters.get(experimentKey);
+		
+		if (broadcaster == null) {
+			SseBroadcaster newBroadcaster = new SseBroadcaster();
+			broadcaster = broadcasters.putIfAbsent(experimentKey, newBroadcaster);
+			
+			if (broadcaster == null) {
+				broadcaster = newBroadcaster;
+			}
+		}
+		
+		// added before the status is read, so no status gets lost in between. If the experiment
+		// finishes before, the status read afterwards is the finished one.
+		broadcaster.add(output);
+		
+		ExperimentStatus status = ExecutionScheduler.getInstance().getExperimentStatus(experimentKey);
+		
+		if (endIfNotExecuted(experimentKey, broadcaster, status)) {
+			// the broadcaster may have been closed by another thread, before the watcher has been added
+			close(experimentKey, output);
+			return;
+		}
+		
+		try {
+			output.write(createEvent(status.isFinished() ? EVENT_FINISHED : EVENT_STATUS, status));
+		} catch (IOException e) {
+			LOGGER.info("Cannot send the status of experiment {} to the watcher: {}", experimentKey, e.getMessage());
+		}
+	}
+	
+	/**
+	 * Disconnects the watchers of experiments, which are neither waiting nor running and
+	 * therefore never publish their status again. Watchers of finished experiments get the
+	 * last status, watchers of disabled experiments the {@link #EVENT_CLOSED} event. Is called
+	 * periodically by the {@link ExecutionScheduler}.
+	 */
+	public void checkWatched() {
+		for (Long experimentKey : broadcasters.keySet()) {
+			
+			if (ExecutionQueueManager.getQueueOfExperiment(experimentKey) != null) {
+				// the queue publishes the status
+				continue;
+			}
+			
+			SseBroadcaster broadcaster = broadcasters.get(experimentKey);
+			
+			if (broadcaster != null) {
+				endIfNotExecuted(experimentKey, broadcaster, ExecutionScheduler.getInstance().getExperimentStatus(experimentKey));
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether a client watches the experiment with the given key. The status only needs
+	 * to be published for watched experiments.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @return				true, if the experiment is watched
+	 */
+	public boolean isWatched(long experimentKey) {
+		return broadcasters.containsKey(experimentKey);
+	}
+	
+	/**
+	 * Sends the given status to all watchers of the experiment with the given key. If the
+	 * experiment has finished, the watchers are disconnected.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param status		the status with the new log entries
+	 */
+	public void publish(long experimentKey, ExperimentStatus status) {
+		SseBroadcaster broadcaster = status.isFinished() ? broadcasters.remove(experimentKey) : broadcasters.get(experimentKey);
+		
+		if (broadcaster == null) {
+			return;
+		}
+		
+		broadcaster.broadcast(createEvent(status.isFinished() ? EVENT_FINISHED : EVENT_STATUS, status));
+		
+		if (status.isFinished()) {
+			broadcaster.closeAll();
+		}
+	}
+	
+	/**
+	 * Sends the last event to the watchers of the given broadcaster and disconnects them, if the
+	 * experiment with the given key has finished, has been removed or is disabled. Waiting, running
+	 * and active scheduled experiments are still executed and keep their watchers.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param broadcaster	the broadcaster of the experiment
+	 * @param status		the current status of the experiment, <code>null</code> if it does not exist
+	 * @return				true, if the experiment is not executed anymore
+	 */
+	private boolean endIfNotExecuted(long experimentKey, SseBroadcaster broadcaster, ExperimentStatus status) {
+		String lastEvent;
+		
+		if (status == null) {
+			lastEvent = null;
+		} else if (status.isFinished()) {
+			lastEvent = EVENT_FINISHED;
+		} else if (isDisabled(experimentKey)) {
+			lastEvent = EVENT_CLOSED;
+		} else {
+			return false;
+		}
+		
+		if (broadcasters.remove(experimentKey, broadcaster)) {
+			
+			if (lastEvent != null) {
+				broadcaster.broadcast(createEvent(lastEvent, status));
+			}
+			
+			broadcaster.closeAll();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns whether the experiment with the given key is a disabled {@link ScheduledExperiment},
+	 * which is neither waiting nor running.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @return				true, if the experiment is not going to be executed
+	 */
+	private boolean isDisabled(long experimentKey) {
+		if (ExecutionQueueManager.getQueueOfExperiment(experimentKey) != null) {
+			return false;
+		}
+		
+		ScheduledExperiment experiment = ServicePersistenceProvider.getInstance().loadScheduledExperimentByKey(experimentKey);
+		
+		return experiment != null && !experiment.isActive();
+	}
+	
+	private void close(long experimentKey, EventOutput output) {
+		try {
+			output.close();
+		} catch (IOException e) {
+			LOGGER.debug("Cannot close the connection to the watcher of experiment {}: {}", experimentKey, e.getMessage());
+		}
+	}
+	
+	/**
+	 * Disconnects all watchers. Called when the service shuts down.
+	 */
+	public void closeAll() {
+		for (Long experimentKey : broadcasters.keySet()) {
+			
+			SseBroadcaster broadcaster = broadcasters.remove(experimentKey);
+			
+			if (broadcaster != null) {
+				broadcaster.closeAll();
+			}
+		}
+	}
+	
+	private OutboundEvent createEvent(String name, ExperimentStatus status) {
+		return new OutboundEvent.Builder().name(name)
+										  .mediaType(MediaType.APPLICATION_JSON_TYPE)
+										  .data(ExperimentStatus.class, status)
+										  .build();
+	}
+	
+}
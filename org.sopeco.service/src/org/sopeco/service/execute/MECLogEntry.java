@@ -36,6 +36,10 @@ public class MECLogEntry implements Serializable {
 
 	private static final long serialVersionUID = -2750616053499630478L;
 	
+	/**
+	 * The position of this entry in the log of its experiment, starting with 1.
+	 */
+	private long sequence;
 	private long time;
 	private String message;
 	private boolean error;
@@ -50,6 +54,21 @@ public class MECLogEntry implements Serializable {
 		this.errorMessage = pErrorMessage;
 	}
 
+	/**
+	 * @return the sequence number of this entry in the log of its experiment
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @param pSequence
+	 *            the sequence number to set
+	 */
+	public void setSequence(long pSequence) {
+		this.sequence = pSequence;
+	}
+
 	/**
 	 * @return the time
 	 */
@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.execute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.persistence.ServicePersistenceProvider;
+import org.sopeco.service.persistence.entities.MECLogChunk;
+
+/**
+ * The <code>MECLogWriter</code> buffers the {@link MECLogEntry}s of running experiments and
+ * writes them as append-only {@link MECLogChunk}s. A buffer is written, when it contains
+ * {@link ServiceConfiguration#MECLOG_FLUSH_SIZE} entries, when {@link #flushAll()} is called
+ * periodically by the {@link ExecutionScheduler} or when the experiment has finished.
+ * 
+ * @author Peter Merkert
+ */
+public final class MECLogWriter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MECLogWriter.class);
+	
+	/**
+	 * The singleton instance.
+	 */
+	private static MECLogWriter singleton;
+	
+	/**
+	 * The buffers by the experiment key.
+	 */
+	private final ConcurrentMap<Long, Buffer> buffers = new ConcurrentHashMap<Long, Buffer>();
+	
+	private MECLogWriter() {
+	}
+	
+	/**
+	 * Singleton get method.
+	 * 
+	 * @return the singleton for the <code>MECLogWriter</code>
+	 */
+	public static synchronized MECLogWriter getInstance() {
+		if (singleton == null) {
+			singleton = new MECLogWriter();
+		}
+		
+		return singleton;
+	}
+	
+	/**
+	 * Starts a new log for the experiment with the given key. An existing log of a former
+	 * execution with the same key is removed. The log has to be started before the first
+	 * entry is appended.
+	 * 
+	 * @param experimentKey the experiment key
+	 */
+	public void start(long experimentKey) {
+		Buffer buffer = new Buffer();
+		
+		synchronized (buffer) {
+			Buffer former = buffers.put(experimentKey, buffer);
+			
+			// the entries of the former log are not written anymore, as the log is removed
+			if (former != null) {
+				synchronized (former) {
+					former.finished = true;
+					former.pending.clear();
+				}
+			}
+			
+			ServicePersistenceProvider.getInstance().removeMECLogChunks(experimentKey);
+		}
+	}
+	
+	/**
+	 * Appends the entry to the log of the experiment with the given key. The entry is
+	 * discarded, if the log is not started or already finished.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param entry			the entry to append
+	 */
+	public void append(long experimentKey, MECLogEntry entry) {
+		Buffer buffer = buffers.get(experimentKey);
+		
+		if (buffer == null) {
+			LOGGER.debug("The log of experiment {} is not running. Entry is discarded.", experimentKey);
+			return;
+		}
+		
+		synchronized (buffer) {
+			if (buffer.finished) {
+				LOGGER.debug("The log of experiment {} is finished. Entry is discarded.", experimentKey);
+				return;
+			}
+			
+			buffer.pending.add(entry);
+			
+			if (buffer.pending.size() >= ServiceConfiguration.MECLOG_FLUSH_SIZE) {
+				flush(experimentKey, buffer);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the remaining entries of the experiment with the given key and
+	 * releases its buffer. If the entries cannot be written, the buffer is released
+	 * by {@link #flushAll()} after the entries have been written.
+	 * 
+	 * @param experimentKey the experiment key
+	 */
+	public void finish(long experimentKey) {
+		Buffer buffer = buffers.get(experimentKey);
+		
+		if (buffer == null) {
+			return;
+		}
+		
+		synchronized (buffer) {
+			buffer.finished = true;
+			flush(experimentKey, buffer);
+			release(experimentKey, buffer);
+		}
+	}
+	
+	/**
+	 * Writes the pending entries of the experiment with the given key, so the whole log
+	 * can be read from the database.
+	 * 
+	 * @param experimentKey the experiment key
+	 */
+	public void flush(long experimentKey) {
+		Buffer buffer = buffers.get(experimentKey);
+		
+		if (buffer != null) {
+			synchronized (buffer) {
+				flush(experimentKey, buffer);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the pending entries of all experiments and releases the buffers of the
+	 * finished experiments, which are completely written.
+	 */
+	public void flushAll() {
+		for (Long experimentKey : buffers.keySet()) {
+			
+			Buffer buffer = buffers.get(experimentKey);
+			
+			if (buffer != null) {
+				synchronized (buffer) {
+					flush(experimentKey, buffer);
+					release(experimentKey, buffer);
+				}
+			}
+			
+		}
+	}
+	
+	/**
+	 * Removes the given buffer, if its experiment has finished and all entries are written.
+	 * Only called while holding the lock of the buffer.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param buffer		the buffer
+	 */
+	private void release(long experimentKey, Buffer buffer) {
+		if (buffer.finished && buffer.pending.isEmpty()) {
+			buffers.remove(experimentKey, buffer);
+		}
+	}
+	
+	/**
+	 * Writes the pending entries of the given buffer as a new {@link MECLogChunk}. If the
+	 * chunk cannot be stored, the entries stay in the buffer. Only called while holding
+	 * the lock of the buffer.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param buffer		the buffer
+	 */
+	private void flush(long experimentKey, Buffer buffer) {
+		if (buffer.pending.isEmpty()) {
+			return;
+		}
+		
+		List<MECLogEntry> entries = new ArrayList<MECLogEntry>(buffer.pending);
+		
+		try {
+			
+			ServicePersistenceProvider.getInstance().storeMECLogChunk(new MECLogChunk(experimentKey, buffer.written, entries));
+			buffer.written += entries.size();
+			buffer.pending.clear();
+			
+		} catch (RuntimeException e) {
+			LOGGER.error("Cannot store MECLog of experiment " + experimentKey + ": " + e.getLocalizedMessage());
+		}
+	}
+	
+	/**
+	 * The buffer of one experiment log.
+	 */
+	private static final class Buffer {
+		
+		/**
+		 * The entries, which are not written yet.
+		 */
+		private final List<MECLogEntry> pending = new ArrayList<MECLogEntry>();
+		
+		/**
+		 * The number of already written entries.
+		 */
+		private int written = 0;
+		
+		/**
+		 * True, if the experiment has finished and no entries are appended anymore.
+		 */
+		private boolean finished = false;
+		
+	}
+	
+}
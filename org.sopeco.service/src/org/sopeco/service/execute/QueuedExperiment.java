@@ -28,8 +28,11 @@ package org.sopeco.service.execute;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 import org.sopeco.engine.status.ErrorInfo;
 import org.sopeco.engine.status.EventType;
@@ -49,13 +52,64 @@ public class QueuedExperiment {
 	private long timeQueued;
 
 	private ScheduledExperiment scheduledExperiment;
+
+	/**
+	 * The experiment key at the time the experiment has been enqueued. The key of the
+	 * {@link ScheduledExperiment} is its hash code and changes, when the entity is changed.
+	 */
+	private final long experimentKey;
 	private List<StatusMessage> statusMessageList;
 
 	private ProgressInfo lastProgressInfo;
 
+	/**
+	 * The already converted {@link MECLogEntry}s. Only the first <code>eventLogSize</code>
+	 * elements are used and an element is never changed after it has been added.
+	 */
+	private MECLogEntry[] eventLog;
+
+	/**
+	 * The current view on the converted entries. Replaced whenever an entry is added.
+	 */
+	private volatile EventLogSnapshot eventLogSnapshot;
+
 	public QueuedExperiment(ScheduledExperiment pScheduledExperiment) {
 		scheduledExperiment = pScheduledExperiment;
+		experimentKey = pScheduledExperiment.getExperimentKey();
 		statusMessageList = new ArrayList<StatusMessage>();
+		eventLog = new MECLogEntry[16];
+		eventLogSnapshot = new EventLogSnapshot(eventLog, 0);
+	}
+
+	/**
+	 * Adds the given {@link StatusMessage} to this experiment. The message is converted
+	 * into a {@link MECLogEntry} once and the entry is appended to the event log. The entry
+	 * gets the next sequence number of the log, the first entry has the sequence number 1.
+	 * 
+	 * @param statusMessage	the new status message
+	 * @return				the converted log entry
+	 */
+	public synchronized MECLogEntry addStatusMessage(StatusMessage statusMessage) {
+		statusMessageList.add(statusMessage);
+		
+		if (statusMessage.getStatusInfo() != null && statusMessage.getStatusInfo() instanceof ProgressInfo) {
+			lastProgressInfo = (ProgressInfo) statusMessage.getStatusInfo();
+		}
+		
+		MECLogEntry entry = createLogEntry(statusMessage);
+		
+		int size = eventLogSnapshot.size();
+		entry.setSequence(size + 1);
+		
+		if (size == eventLog.length) {
+			// the former snapshots keep the old array
+			eventLog = Arrays.copyOf(eventLog, size * 2);
+		}
+		
+		eventLog[size] = entry;
+		eventLogSnapshot = new EventLogSnapshot(eventLog, size + 1);
+		
+		return entry;
 	}
 
 	public ProgressInfo getLastProgressInfo() {
@@ -74,6 +128,16 @@ public class QueuedExperiment {
 		return scheduledExperiment;
 	}
 
+	/**
+	 * Returns the experiment key this experiment has been enqueued with. Logs, status and
+	 * details of this execution are stored under this key.
+	 * 
+	 * @return the experiment key
+	 */
+	public long getExperimentKey() {
+		return experimentKey;
+	}
+
 	public long getTimeEnded() {
 		return timeEnded;
 	}
@@ -98,45 +162,75 @@ public class QueuedExperiment {
 		this.timeStarted = pTimeStarted;
 	}
 
+	/**
+	 * Returns the event log of this experiment. The returned list is an unmodifiable snapshot,
+	 * which does not change when further messages are added to the experiment.
+	 * 
+	 * @return the converted status messages
+	 */
 	public List<MECLogEntry> getEventLogLiteList() {
-		List<MECLogEntry> list = new ArrayList<MECLogEntry>();
-		for (StatusMessage log : statusMessageList) {
+		return eventLogSnapshot;
+	}
 
-			MECLogEntry logLite = new MECLogEntry();
-			logLite.setTime(log.getTimestamp());
+	/**
+	 * Returns the entries of the event log with a sequence number greater than the given one.
+	 * The returned list is an unmodifiable snapshot like {@link #getEventLogLiteList()}.
+	 * 
+	 * @param since	the sequence number of the last already known entry, 0 for the whole log
+	 * @return		the newer converted status messages
+	 */
+	public List<MECLogEntry> getEventLogLiteList(long since) {
+		EventLogSnapshot snapshot = eventLogSnapshot;
+		
+		if (since <= 0) {
+			return snapshot;
+		}
+		
+		// the entry with the sequence number n is at the index n - 1
+		int from = (int) Math.min(since, snapshot.size());
+		return snapshot.subList(from, snapshot.size());
+	}
 
-			String message = getStatusString(log.getEventType());
-			;
+	/**
+	 * Converts the given {@link StatusMessage} into a {@link MECLogEntry}.
+	 * 
+	 * @param log	the status message
+	 * @return		the log entry
+	 */
+	public static MECLogEntry createLogEntry(StatusMessage log) {
+		MECLogEntry logLite = new MECLogEntry();
+		logLite.setTime(log.getTimestamp());
 
-			if (log.getEventType() != null
-					&& (log.getEventType() == EventType.ERROR || log.getEventType() == EventType.INFORMATION)) {
-				message = log.getDescription();
-			} else if (log.getDescription() != null && !log.getDescription().isEmpty()) {
-				message += " - " + log.getDescription();
-			}
-			logLite.setMessage(message);
-
-			if (log.getEventType() != null && log.getEventType() == EventType.ERROR) {
-				logLite.setError(true);
-				logLite.setException(false);
-			} else if (log.getStatusInfo() != null && log.getStatusInfo() instanceof ErrorInfo) {
-				logLite.setException(true);
-				logLite.setError(false);
-				logLite.setErrorMessage(((ErrorInfo) log.getStatusInfo()).getThrowable().getMessage());
-
-				StringWriter sw = new StringWriter();
-				PrintWriter pw = new PrintWriter(sw);
-				((ErrorInfo) log.getStatusInfo()).getThrowable().printStackTrace(pw);
-				String errorStack = sw.toString().replaceAll("\n", "\n<br>").replaceAll("\t", "&nbsp;&nbsp;&nbsp;");
-				logLite.setErrorMessage(errorStack);
-			} else {
-				logLite.setError(false);
-				logLite.setException(false);
-			}
+		String message = getStatusString(log.getEventType());
+		;
+
+		if (log.getEventType() != null
+				&& (log.getEventType() == EventType.ERROR || log.getEventType() == EventType.INFORMATION)) {
+			message = log.getDescription();
+		} else if (log.getDescription() != null && !log.getDescription().isEmpty()) {
+			message += " - " + log.getDescription();
+		}
+		logLite.setMessage(message);
+
+		if (log.getEventType() != null && log.getEventType() == EventType.ERROR) {
+			logLite.setError(true);
+			logLite.setException(false);
+		} else if (log.getStatusInfo() != null && log.getStatusInfo() instanceof ErrorInfo) {
+			logLite.setException(true);
+			logLite.setError(false);
+			logLite.setErrorMessage(((ErrorInfo) log.getStatusInfo()).getThrowable().getMessage());
 
-			list.add(logLite);
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			((ErrorInfo) log.getStatusInfo()).getThrowable().printStackTrace(pw);
+			String errorStack = sw.toString().replaceAll("\n", "\n<br>").replaceAll("\t", "&nbsp;&nbsp;&nbsp;");
+			logLite.setErrorMessage(errorStack);
+		} else {
+			logLite.setError(false);
+			logLite.setException(false);
 		}
-		return list;
+
+		return logLite;
 	}
 
 	public static String getStatusString(EventType type) {
@@ -173,4 +267,34 @@ public class QueuedExperiment {
 			throw new IllegalStateException("No eventType " + type + " expected.");
 		}
 	}
+
+	/**
+	 * An unmodifiable view on the first entries of an event log array. The viewed part of the
+	 * array is never changed, so the view can be handed out without copying.
+	 */
+	private static final class EventLogSnapshot extends AbstractList<MECLogEntry> implements RandomAccess {
+		
+		private final MECLogEntry[] entries;
+		
+		private final int size;
+		
+		private EventLogSnapshot(MECLogEntry[] entries, int size) {
+			this.entries 	= entries;
+			this.size 		= size;
+		}
+
+		@Override
+		public MECLogEntry get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return entries[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+		
+	}
 }
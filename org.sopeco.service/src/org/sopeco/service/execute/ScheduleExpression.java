@@ -26,17 +26,31 @@
  */
 package org.sopeco.service.execute;
 
-import java.util.Calendar;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * Schedule expressions are compiled into a {@link CompiledScheduleExpression} once and
+ * cached, so the expressions are not parsed again for every calculation.
+ * 
  * @author Marius Oehler
  */
 public final class ScheduleExpression {
 
+	/**
+	 * The maximum number of cached compiled expressions. The cache is cleared, when
+	 * the limit is reached.
+	 */
+	private static final int MAX_CACHED_EXPRESSIONS = 1000;
+	
+	/**
+	 * The already compiled expressions by their weekdays, hours and minutes string.
+	 */
+	private static ConcurrentMap<String, CompiledScheduleExpression> compiledExpressions = new ConcurrentHashMap<String, CompiledScheduleExpression>();
+
 	/**
 	 * Allowed values are 0-23.<br>
 	 * The '*' character is used to specify all values.<br>
@@ -75,30 +89,51 @@ public final class ScheduleExpression {
 		if (weekdays == null || hours == null || minutes == null) {
 			return -1;
 		}
-		if (startTime < System.currentTimeMillis()) {
-			startTime = System.currentTimeMillis();
-		}
-		while (!runNow(startTime, weekdays, hours, minutes)) {
-			startTime += 60 * 1000;
-		}
-		return startTime;
+		return compile(weekdays, hours, minutes).nextValidDate(startTime);
 	}
 
 	public static long nextValidDate(String weekdays, String hours, String minutes) {
 		if (weekdays == null || hours == null || minutes == null) {
 			return -1;
 		}
-
-		long time = System.currentTimeMillis();
-		MyDate date = new MyDate(time);
-		time -= date.getMiliSeconds();
-		time -= date.getSeconds() * 1000;
-		time += 60 * 1000;
-		return nextValidDate(time, weekdays, hours, minutes);
+		return compile(weekdays, hours, minutes).nextValidDate();
 	}
 
 	public static boolean runNow(String weekdays, String hours, String minutes) {
-		return runNow(System.currentTimeMillis(), weekdays, hours, minutes);
+		if (weekdays == null || hours == null || minutes == null) {
+			return false;
+		}
+		return compile(weekdays, hours, minutes).matches(System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the compiled form of the given expression. Compiled expressions are cached.
+	 * 
+	 * @param weekdays	the weekdays as comma separated list of {@link java.util.Calendar#DAY_OF_WEEK} values
+	 * @param hours		the hours, see {@link #expandHour(String)}
+	 * @param minutes	the minutes, see {@link #expandMinutes(String)}
+	 * @return			the {@link CompiledScheduleExpression}, <code>null</code> if one argument is null
+	 */
+	public static CompiledScheduleExpression compile(String weekdays, String hours, String minutes) {
+		if (weekdays == null || hours == null || minutes == null) {
+			return null;
+		}
+		
+		String key = weekdays + "|" + hours + "|" + minutes;
+		CompiledScheduleExpression compiled = compiledExpressions.get(key);
+		
+		if (compiled == null) {
+			
+			compiled = new CompiledScheduleExpression(splitString(weekdays), expandHour(hours), expandMinutes(minutes));
+			
+			if (compiledExpressions.size() >= MAX_CACHED_EXPRESSIONS) {
+				compiledExpressions.clear();
+			}
+			
+			compiledExpressions.put(key, compiled);
+		}
+		
+		return compiled;
 	}
 
 	/**
@@ -154,23 +189,6 @@ public final class ScheduleExpression {
 		return (set);
 	}
 
-	private static boolean runNow(long timestamp, String weekdays, String hours, String minutes) {
-		MyDate date = new MyDate(timestamp);
-
-		int nowHours = date.getHours();
-		int nowMinutes = date.getMinutes();
-		int nowDay = date.getDayOfWeek();
-
-		Set<Integer> setDays = splitString(weekdays);
-		Set<Integer> setHours = expandHour(hours);
-		Set<Integer> setMinutes = expandMinutes(minutes);
-
-		if (setDays.contains(nowDay) && setHours.contains(nowHours) && setMinutes.contains(nowMinutes)) {
-			return true;
-		}
-		return false;
-	}
-
 	private static Set<Integer> splitString(String src) {
 		Set<Integer> set = new TreeSet<Integer>();
 		if (src != null) {
@@ -188,42 +206,4 @@ public final class ScheduleExpression {
 
 	private ScheduleExpression() {
 	}
-
-	private static class MyDate {
-		private Date date;
-
-		public MyDate(long timestamp) {
-			date = new Date(timestamp);
-		}
-
-		public int getDayOfWeek() {
-			Calendar c = Calendar.getInstance();
-			c.setTime(date);
-			return c.get(Calendar.DAY_OF_WEEK);
-		}
-
-		public int getHours() {
-			Calendar c = Calendar.getInstance();
-			c.setTime(date);
-			return c.get(Calendar.HOUR_OF_DAY);
-		}
-
-		public int getMiliSeconds() {
-			Calendar c = Calendar.getInstance();
-			c.setTime(date);
-			return c.get(Calendar.MILLISECOND);
-		}
-
-		public int getMinutes() {
-			Calendar c = Calendar.getInstance();
-			c.setTime(date);
-			return c.get(Calendar.MINUTE);
-		}
-
-		public int getSeconds() {
-			Calendar c = Calendar.getInstance();
-			c.setTime(date);
-			return c.get(Calendar.SECOND);
-		}
-	}
 }
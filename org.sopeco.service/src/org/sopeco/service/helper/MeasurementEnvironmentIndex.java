@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.helper;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.sopeco.persistence.entities.definition.MeasurementEnvironmentDefinition;
+import org.sopeco.persistence.entities.definition.ParameterDefinition;
+import org.sopeco.persistence.entities.definition.ParameterNamespace;
+import org.sopeco.persistence.entities.definition.ParameterRole;
+import org.sopeco.service.configuration.ServiceConfiguration;
+
+/**
+ * The {@link MeasurementEnvironmentIndex} maps the namespace paths and the parameters of a
+ * {@link MeasurementEnvironmentDefinition} (MED) to the {@link ParameterNamespace}s and
+ * {@link ParameterDefinition}s. The index is built once by walking the namespace tree, then
+ * all lookups are hash lookups.<br />
+ * <br />
+ * Paths are separated by {@link ServiceConfiguration#MEASUREMENTENVIRONMENT_DELIMITER}. A path
+ * starts with the name of the root namespace or with the delimiter, which stands for the root, so
+ * "root/first/second" and "/first/second" address the same namespace. Any other path is invalid,
+ * so a child of the root, which has the name of the root, is addressed unambiguously.<br />
+ * <br />
+ * Changes on the MED must be done via this index to keep it up to date.
+ * 
+ * @author Peter Merkert
+ */
+public final class MeasurementEnvironmentIndex {
+
+	private static final String DELIMITER = ServiceConfiguration.MEASUREMENTENVIRONMENT_DELIMITER;
+	
+	private final ParameterNamespace root;
+	
+	/**
+	 * The namespaces by their normalized path. The root has the empty path.
+	 */
+	private final Map<String, ParameterNamespace> namespaces = new HashMap<String, ParameterNamespace>();
+	
+	/**
+	 * The normalized paths of the indexed namespaces.
+	 */
+	private final Map<ParameterNamespace, String> paths = new IdentityHashMap<ParameterNamespace, String>();
+	
+	/**
+	 * The parameters by their normalized namespace path and name.
+	 */
+	private final Map<String, ParameterDefinition> parameters = new HashMap<String, ParameterDefinition>();
+	
+	/**
+	 * Builds the index for the given MED.
+	 * 
+	 * @param med the {@link MeasurementEnvironmentDefinition}, which must have a root namespace
+	 */
+	public MeasurementEnvironmentIndex(MeasurementEnvironmentDefinition med) {
+		root = med.getRoot();
+		index(root, "");
+	}
+	
+	public ParameterNamespace getRoot() {
+		return root;
+	}
+	
+	/**
+	 * Returns the namespace with the given path.
+	 * 
+	 * @param path	the path to the namespace
+	 * @return		the {@link ParameterNamespace}, <code>null</code> if there is none
+	 */
+	public ParameterNamespace getNamespace(String path) {
+		String normalized = normalize(path);
+		return normalized == null ? null : namespaces.get(normalized);
+	}
+	
+	/**
+	 * Returns the parameter with the given name in the namespace with the given path.
+	 * 
+	 * @param path	the path to the namespace
+	 * @param name	the parameter name
+	 * @return		the {@link ParameterDefinition}, <code>null</code> if there is none
+	 */
+	public ParameterDefinition getParameter(String path, String name) {
+		String normalized = normalize(path);
+		return normalized == null ? null : parameters.get(key(normalized, name));
+	}
+	
+	/**
+	 * Adds all namespaces of the given path, which do not exist yet.
+	 * 
+	 * @param path	the path of the namespace
+	 * @return		the namespace at the end of the path, <code>null</code> if the path is
+	 * 				invalid or the root
+	 */
+	public ParameterNamespace addNamespaces(String path) {
+		String normalized = normalize(path);
+		
+		if (normalized == null || normalized.isEmpty()) {
+			return null;
+		}
+		
+		ParameterNamespace current = root;
+		String currentPath = "";
+		
+		for (String node : normalized.split(DELIMITER)) {
+			
+			currentPath = currentPath.isEmpty() ? node : currentPath + DELIMITER + node;
+			ParameterNamespace ns = namespaces.get(currentPath);
+			
+			if (ns == null) {
+				ns = SimpleEntityFactory.createNamespace(node);
+				ns.setParent(current);
+				current.getChildren().add(ns);
+				index(ns, currentPath);
+			}
+			
+			current = ns;
+		}
+		
+		return current;
+	}
+	
+	/**
+	 * Removes the given namespace with all its children. The root cannot be removed.
+	 * 
+	 * @param namespace	the namespace to remove
+	 * @return			true, if the namespace has been removed
+	 */
+	public boolean removeNamespace(ParameterNamespace namespace) {
+		if (namespace == root || namespace.getParent() == null || !paths.containsKey(namespace)) {
+			return false;
+		}
+		
+		unindex(namespace);
+		namespace.getParent().getChildren().remove(namespace);
+		
+		return true;
+	}
+	
+	/**
+	 * Renames the given namespace. The paths of all children change accordingly.
+	 * 
+	 * @param namespace	the namespace to rename
+	 * @param newName	the new name
+	 * @return			true, if the namespace has been renamed, false if it's the root or a
+	 * 					sibling with the new name exists
+	 */
+	public boolean renameNamespace(ParameterNamespace namespace, String newName) {
+		if (namespace == root || !paths.containsKey(namespace)) {
+			return false;
+		}
+		
+		String parentPath = paths.get(namespace.getParent());
+		String newPath = parentPath.isEmpty() ? newName : parentPath + DELIMITER + newName;
+		
+		if (namespaces.containsKey(newPath)) {
+			return namespaces.get(newPath) == namespace;
+		}
+		
+		unindex(namespace);
+		namespace.setName(newName);
+		index(namespace, newPath);
+		
+		return true;
+	}
+	
+	/**
+	 * Adds a new parameter to the given namespace.
+	 * 
+	 * @param namespace namespace where the parameter will be added
+	 * @param name 		name of the new parameter
+	 * @param type 		type of the new parameter
+	 * @param role 		role of the new parameter
+	 * @return 			the created {@link ParameterDefinition}
+	 */
+	public ParameterDefinition addParameter(ParameterNamespace namespace, String name, String type, ParameterRole role) {
+		ParameterDefinition parameter = SimpleEntityFactory.createParameterDefinition(name, type, role);
+		parameter.setNamespace(namespace);
+		namespace.getParameters().add(parameter);
+		parameters.put(key(paths.get(namespace), name), parameter);
+		return parameter;
+	}
+	
+	/**
+	 * Updates name, type and role of the given parameter.
+	 * 
+	 * @param parameter	the parameter to update
+	 * @param newName	the new name
+	 * @param type		the new type
+	 * @param role		the new role
+	 */
+	public void updateParameter(ParameterDefinition parameter, String newName, String type, ParameterRole role) {
+		String path = paths.get(parameter.getNamespace());
+		
+		parameters.remove(key(path, parameter.getName()));
+		
+		parameter.setName(newName);
+		parameter.setRole(role);
+		parameter.setType(type);
+		
+		parameters.put(key(path, newName), parameter);
+	}
+	
+	/**
+	 * Removes the given parameter from its namespace.
+	 * 
+	 * @param parameter	the parameter to remove
+	 * @return			true, if the parameter has been removed
+	 */
+	public boolean removeParameter(ParameterDefinition parameter) {
+		String path = paths.get(parameter.getNamespace());
+		
+		if (path == null || !parameter.getNamespace().getParameters().remove(parameter)) {
+			return false;
+		}
+		
+		parameters.remove(key(path, parameter.getName()));
+		
+		return true;
+	}
+	
+	/**
+	 * Normalizes the given path: the leading delimiters or the name of the root namespace
+	 * and the trailing delimiters are removed.
+	 * 
+	 * @param path	the path
+	 * @return		the normalized path, the empty String for the root, <code>null</code> if
+	 * 				the path starts neither with the delimiter nor with the root name
+	 */
+	private String normalize(String path) {
+		String normalized;
+		String rootName = root.getName();
+		
+		if (path.startsWith(DELIMITER)) {
+			
+			normalized = path;
+			
+			while (normalized.startsWith(DELIMITER)) {
+				normalized = normalized.substring(DELIMITER.length());
+			}
+			
+		} else if (path.equals(rootName)) {
+			
+			return "";
+			
+		} else if (path.startsWith(rootName + DELIMITER)) {
+			
+			normalized = path.substring(rootName.length() + DELIMITER.length());
+			
+		} else {
+			
+			return null;
+			
+		}
+		
+		while (normalized.endsWith(DELIMITER)) {
+			normalized = normalized.substring(0, normalized.length() - DELIMITER.length());
+		}
+		
+		return normalized;
+	}
+	
+	private void index(ParameterNamespace namespace, String path) {
+		namespaces.put(path, namespace);
+		paths.put(namespace, path);
+		
+		for (ParameterDefinition parameter : namespace.getParameters()) {
+			parameters.put(key(path, parameter.getName()), parameter);
+		}
+		
+		for (ParameterNamespace child : namespace.getChildren()) {
+			index(child, path.isEmpty() ? child.getName() : path + DELIMITER + child.getName());
+		}
+	}
+	
+	private void unindex(ParameterNamespace namespace) {
+		String path = paths.remove(namespace);
+		
+		if (path != null && namespaces.get(path) == namespace) {
+			namespaces.remove(path);
+		}
+		
+		for (ParameterDefinition parameter : namespace.getParameters()) {
+			parameters.remove(key(path, parameter.getName()));
+		}
+		
+		for (ParameterNamespace child : namespace.getChildren()) {
+			unindex(child);
+		}
+	}
+	
+	private static String key(String path, String name) {
+		return path + DELIMITER + DELIMITER + name;
+	}
+	
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sopeco.persistence.entities.definition.ScenarioDefinition;
+
+/**
+ * The {@link ScenarioDefinitionCache} holds the {@link ScenarioDefinition}s per account and
+ * scenario name. The definitions are cached in serialized form, so every load returns
+ * a new copy, which can be changed by the caller without affecting the cache.<br />
+ * <br />
+ * Each cached definition has a version, which changes whenever the definition is
+ * invalidated and loaded again. The version can be used as ETag of the definition.
+ * 
+ * @author Peter Merkert
+ */
+final class ScenarioDefinitionCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ScenarioDefinitionCache.class);
+	
+	/**
+	 * The versions are unique within this process. Starting at the current time makes
+	 * collisions with versions from earlier processes unlikely.
+	 */
+	private final AtomicLong versions = new AtomicLong(System.currentTimeMillis());
+	
+	/**
+	 * The cache entries by account ID and scenario name in access order.
+	 */
+	private final Map<String, Entry> entries;
+	
+	/**
+	 * @param maxSize the maximum number of cached definitions
+	 */
+	ScenarioDefinitionCache(final int maxSize) {
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxSize;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Returns the current entry for the given scenario. Pass the returned entry to
+	 * {@link #fill(long, String, Entry, ScenarioDefinition)} after loading the definition
+	 * from the database.
+	 * 
+	 * @param accountId		the account ID
+	 * @param scenarioName	the scenario name
+	 * @return				the entry, <code>null</code> if the scenario is not known to the cache
+	 */
+	synchronized Entry get(long accountId, String scenarioName) {
+		return entries.get(key(accountId, scenarioName));
+	}
+	
+	/**
+	 * Caches the given definition, which has been loaded from the database. The definition
+	 * is only cached, if the entry of the scenario has not changed since <code>previous</code>
+	 * was fetched. Otherwise the definition might already be outdated.
+	 * 
+	 * @param accountId		the account ID
+	 * @param scenarioName	the scenario name
+	 * @param previous		the entry fetched before loading the definition
+	 * @param definition	the loaded definition
+	 * @return				the new entry, <code>null</code> if the definition has not been cached
+	 */
+	Entry fill(long accountId, String scenarioName, Entry previous, ScenarioDefinition definition) {
+		byte[] data = serialize(definition);
+		
+		if (data == null) {
+			return null;
+		}
+		
+		String key = key(accountId, scenarioName);
+		
+		synchronized (this) {
+			
+			if (entries.get(key) != previous) {
+				return null;
+			}
+			
+			Entry entry = new Entry(data, versions.incrementAndGet());
+			entries.put(key, entry);
+			return entry;
+		}
+	}
+	
+	/**
+	 * Marks the cached definition of the given scenario as outdated.
+	 * 
+	 * @param accountId		the account ID
+	 * @param scenarioName	the scenario name
+	 */
+	synchronized void invalidate(long accountId, String scenarioName) {
+		entries.put(key(accountId, scenarioName), new Entry(null, versions.incrementAndGet()));
+	}
+	
+	private static String key(long accountId, String scenarioName) {
+		return accountId + "/" + scenarioName;
+	}
+	
+	private static byte[] serialize(ScenarioDefinition definition) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(definition);
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			LOGGER.debug("ScenarioDefinition '{}' cannot be cached: {}", definition.getScenarioName(), e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * A cached definition. Entries without data mark invalidated definitions.
+	 */
+	static final class Entry {
+		
+		private final byte[] data;
+		
+		private final long version;
+		
+		private Entry(byte[] data, long version) {
+			this.data 		= data;
+			this.version 	= version;
+		}
+		
+		boolean isValid() {
+			return data != null;
+		}
+		
+		long getVersion() {
+			return version;
+		}
+		
+		/**
+		 * @return a new copy of the cached definition, <code>null</code> if it cannot be read
+		 */
+		ScenarioDefinition getDefinition() {
+			if (data == null) {
+				return null;
+			}
+			
+			try {
+				ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+				try {
+					return (ScenarioDefinition) in.readObject();
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				LOGGER.warn("Cannot read cached ScenarioDefinition: {}", e.getMessage());
+				return null;
+			} catch (ClassNotFoundException e) {
+				LOGGER.warn("Cannot read cached ScenarioDefinition: {}", e.getMessage());
+				return null;
+			}
+		}
+		
+	}
+	
+}
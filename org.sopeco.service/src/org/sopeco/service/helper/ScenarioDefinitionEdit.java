@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.helper;
+
+import org.sopeco.persistence.entities.definition.ScenarioDefinition;
+
+/**
+ * A {@link ScenarioDefinitionEdit} is one change on a {@link ScenarioDefinition}. Several
+ * edits can be applied to a scenario with one load and store of the definition via
+ * {@link ServiceStorageModul#editScenarioDefinition(String, String, java.util.List, boolean)}.
+ * 
+ * @author Peter Merkert
+ */
+public interface ScenarioDefinitionEdit {
+
+	/**
+	 * Applies this edit to the given definition. If the edit cannot be applied, the
+	 * definition must be left unchanged.
+	 * 
+	 * @param definition	the {@link ScenarioDefinition} to change
+	 * @return				<code>null</code>, if the edit has been applied, otherwise
+	 * 						the reason why it has failed
+	 */
+	String apply(ScenarioDefinition definition);
+	
+}
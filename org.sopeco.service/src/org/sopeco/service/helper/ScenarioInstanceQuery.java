@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.helper;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.sopeco.persistence.entities.ExperimentSeries;
+import org.sopeco.persistence.entities.ExperimentSeriesRun;
+import org.sopeco.persistence.entities.ScenarioInstance;
+
+/**
+ * The {@link ScenarioInstanceQuery} selects a page of the {@link ScenarioInstance}s of a scenario.<br />
+ * <br />
+ * The instances are ordered by their MeasurementEnvironmentController URL. A cursor is the encoded
+ * URL of the last instance of the previous page, so the next page starts behind it, even if instances
+ * have been added or removed in the meantime. Optionally only the {@link ExperimentSeriesRun}s in
+ * a time range are kept, and instances without any run in that range are skipped.<br />
+ * <br />
+ * The <code>IPersistenceProvider</code> of SoPeCo has no paged query for instances, so the instances
+ * of the scenario are loaded as a whole. The query only walks through the instances until the page
+ * is filled, so the runs of instances behind the page are neither filtered nor decorated.
+ * 
+ * @author Peter Merkert
+ */
+public final class ScenarioInstanceQuery {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	private static final Comparator<ScenarioInstance> URL_ORDER = new Comparator<ScenarioInstance>() {
+		@Override
+		public int compare(ScenarioInstance o1, ScenarioInstance o2) {
+			return o1.getMeasurementEnvironmentUrl().compareTo(o2.getMeasurementEnvironmentUrl());
+		}
+	};
+	
+	private final String cursorUrl;
+	
+	private final Long from;
+	
+	private final Long to;
+	
+	private final int offset;
+	
+	private final int limit;
+	
+	private String nextCursor;
+	
+	/**
+	 * @param cursor	the cursor returned with the previous page, <code>null</code> for the first page
+	 * @param from		the earliest run timestamp, <code>null</code> for no lower bound
+	 * @param to		the latest run timestamp, <code>null</code> for no upper bound
+	 * @param offset	the number of instances to skip behind the cursor
+	 * @param limit		the maximum number of instances, negative for all instances
+	 * @throws IllegalArgumentException if the cursor is invalid
+	 */
+	public ScenarioInstanceQuery(String cursor, Long from, Long to, int offset, int limit) {
+		this.cursorUrl 	= cursor == null ? null : decodeCursor(cursor);
+		this.from 		= from;
+		this.to 		= to;
+		this.offset 	= offset;
+		this.limit 		= limit;
+	}
+	
+	/**
+	 * Returns the page of the given instances. The runs of the returned instances are restricted
+	 * to the time range. Instances behind the page are left untouched, except for the first one,
+	 * which tells whether there is a further page.
+	 * 
+	 * @param scenarioInstances the {@link ScenarioInstance}s of the scenario
+	 * @return					the page of the {@link ScenarioInstance}s
+	 */
+	public List<ScenarioInstance> apply(List<ScenarioInstance> scenarioInstances) {
+		List<ScenarioInstance> sorted = new ArrayList<ScenarioInstance>(scenarioInstances);
+		Collections.sort(sorted, URL_ORDER);
+		
+		List<ScenarioInstance> page = new ArrayList<ScenarioInstance>();
+		int skip 	 = Math.max(offset, 0);
+		boolean more = false;
+		
+		for (ScenarioInstance si : sorted) {
+			
+			if (cursorUrl != null && si.getMeasurementEnvironmentUrl().compareTo(cursorUrl) <= 0) {
+				continue;
+			}
+			
+			if (!restrictRuns(si)) {
+				continue;
+			}
+			
+			if (skip > 0) {
+				skip--;
+				continue;
+			}
+			
+			if (limit >= 0 && page.size() >= limit) {
+				more = true;
+				break;
+			}
+			
+			page.add(si);
+		}
+		
+		if (!page.isEmpty() && more) {
+			nextCursor = encodeCursor(page.get(page.size() - 1).getMeasurementEnvironmentUrl());
+		} else {
+			nextCursor = null;
+		}
+		
+		return page;
+	}
+	
+	/**
+	 * Returns the cursor of the page following the last page returned by {@link #apply(List)}.
+	 * 
+	 * @return the cursor, <code>null</code> if there is no further page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+	
+	/**
+	 * Returns the part of the given list between the offset and the offset plus the limit.
+	 * 
+	 * @param list		the list
+	 * @param offset	the number of elements to skip
+	 * @param limit		the maximum number of elements, negative for all
+	 * @return			the part of the list
+	 */
+	public static <T> List<T> page(List<T> list, int offset, int limit) {
+		int from = Math.min(Math.max(offset, 0), list.size());
+		int to	 = limit < 0 ? list.size() : (int) Math.min((long) from + limit, list.size());
+		return list.subList(from, to);
+	}
+	
+	/**
+	 * Removes the runs outside the time range from the given instance.
+	 * 
+	 * @param scenarioInstance	the {@link ScenarioInstance}
+	 * @return					true, if the instance has to be returned
+	 */
+	private boolean restrictRuns(ScenarioInstance scenarioInstance) {
+		if (from == null && to == null) {
+			return true;
+		}
+		
+		boolean hasRuns = false;
+		
+		for (ExperimentSeries es : scenarioInstance.getExperimentSeriesList()) {
+			
+			for (Iterator<ExperimentSeriesRun> it = es.getExperimentSeriesRuns().iterator(); it.hasNext();) {
+				
+				Long timestamp = it.next().getTimestamp();
+				
+				if (timestamp == null || (from != null && timestamp < from) || (to != null && timestamp > to)) {
+					it.remove();
+				} else {
+					hasRuns = true;
+				}
+			}
+		}
+		
+		return hasRuns;
+	}
+	
+	private static String encodeCursor(String url) {
+		byte[] bytes = url.getBytes(UTF8);
+		char[] chars = new char[bytes.length * 2];
+		
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] 	 = HEX[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		
+		return new String(chars);
+	}
+	
+	private static String decodeCursor(String cursor) {
+		if (cursor.length() % 2 != 0) {
+			throw new IllegalArgumentException("Invalid cursor '" + cursor + "'.");
+		}
+		
+		byte[] bytes = new byte[cursor.length() / 2];
+		
+		for (int i = 0; i < bytes.length; i++) {
+			int high = Character.digit(cursor.charAt(i * 2), 16);
+			int low  = Character.digit(cursor.charAt(i * 2 + 1), 16);
+			
+			if (high < 0 || low < 0) {
+				throw new IllegalArgumentException("Invalid cursor '" + cursor + "'.");
+			}
+			
+			bytes[i] = (byte) ((high << 4) | low);
+		}
+		
+		return new String(bytes, UTF8);
+	}
+	
+}
@@ -26,6 +26,7 @@
  */
 package org.sopeco.service.helper;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -35,7 +36,10 @@ import org.sopeco.persistence.entities.definition.ExperimentSeriesDefinition;
 import org.sopeco.persistence.entities.definition.MeasurementSpecification;
 import org.sopeco.persistence.entities.definition.ScenarioDefinition;
 import org.sopeco.persistence.exceptions.DataNotFoundException;
+import org.sopeco.service.configuration.ServiceConfiguration;
 import org.sopeco.service.persistence.AccountPersistenceProvider;
+import org.sopeco.service.persistence.ServicePersistenceProvider;
+import org.sopeco.service.persistence.entities.Users;
 
 /**
  * The {@link ServiceStorageModul} is used to have general database access methods
@@ -47,6 +51,23 @@ import org.sopeco.service.persistence.AccountPersistenceProvider;
 public final class ServiceStorageModul {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ServiceStorageModul.class);
+	
+	/**
+	 * The recently loaded {@link ScenarioDefinition}s of all accounts.
+	 */
+	private static final ScenarioDefinitionCache CACHE = new ScenarioDefinitionCache(ServiceConfiguration.SCENARIO_CACHE_SIZE);
+	
+	/**
+	 * The locks to serialize the edits on a scenario. The scenarios are mapped onto the
+	 * locks via their account ID and name.
+	 */
+	private static final Object[] EDIT_LOCKS = new Object[64];
+	
+	static {
+		for (int i = 0; i < EDIT_LOCKS.length; i++) {
+			EDIT_LOCKS[i] = new Object();
+		}
+	}
 
 	/**
 	 * Stores the given {@link ScenarioDefinition} in the users service database.<br />
@@ -66,14 +87,106 @@ public final class ServiceStorageModul {
 			return false;
 		}
 		
-		dbCon.store(scenarioDefintion);
-		dbCon.closeProvider();
+		try {
+			dbCon.store(scenarioDefintion);
+		} finally {
+			dbCon.closeProvider();
+		}
+		
+		invalidateScenarioDefinition(scenarioDefintion.getScenarioName(), usertoken);
 		
 		return true;
 	}
 	
 	/**
-	 * Load a Scenario definition with the given name and user (via token).
+	 * Applies the given edits to the {@link ScenarioDefinition} with the given name. The
+	 * definition is loaded and stored only once for all edits. Batches on the same
+	 * scenario are applied one after another.<br />
+	 * <br />
+	 * If the batch is <code>atomic</code>, the definition is only stored if all edits have
+	 * been applied. Otherwise the successful edits are stored and the failed ones are skipped.
+	 * 
+	 * @param scenarioname	the name of the scenario
+	 * @param token			the token to identify the user
+	 * @param edits			the edits in the order they are applied
+	 * @param atomic		true, if all edits must succeed to store the definition
+	 * @return				the result of each edit: <code>null</code> if the edit has been applied,
+	 * 						otherwise the reason why it has failed. The result is <code>null</code>
+	 * 						as a whole, if the scenario cannot be loaded or stored.
+	 */
+	public static List<String> editScenarioDefinition(String scenarioname, String token,
+													  List<? extends ScenarioDefinitionEdit> edits, boolean atomic) {
+		
+		Users u = ServicePersistenceProvider.getInstance().loadUser(token);
+		
+		if (u == null) {
+			LOGGER.warn("Invalid token '{}'!", token);
+			return null;
+		}
+		
+		int lockIndex = ((u.getAccountID() + "/" + scenarioname).hashCode() & Integer.MAX_VALUE) % EDIT_LOCKS.length;
+		
+		synchronized (EDIT_LOCKS[lockIndex]) {
+			
+			ScenarioDefinition definition = loadScenarioDefinition(scenarioname, token);
+			
+			if (definition == null) {
+				LOGGER.info("Cannot find a ScenarioDefition with the given name in the database.");
+				return null;
+			}
+			
+			List<String> results = new ArrayList<String>(edits.size());
+			boolean changed = false;
+			boolean failed 	= false;
+			
+			for (ScenarioDefinitionEdit edit : edits) {
+				
+				String result;
+				
+				if (failed && atomic) {
+					result = "Skipped, because a previous edit failed.";
+				} else {
+					result = edit.apply(definition);
+				}
+				
+				results.add(result);
+				failed 	|= result != null;
+				changed |= result == null;
+			}
+			
+			if (failed && atomic) {
+				LOGGER.debug("Edits on scenario '{}' failed. Nothing is stored.", scenarioname);
+				return results;
+			}
+			
+			if (changed && !storeScenarioDefition(token, definition)) {
+				return null;
+			}
+			
+			return results;
+		}
+	}
+	
+	/**
+	 * Marks the cached {@link ScenarioDefinition} with the given name as outdated. Must be
+	 * called whenever the definition is changed or removed in the database without
+	 * {@link #storeScenarioDefition(String, ScenarioDefinition)}.
+	 * 
+	 * @param scenarioname 	the name of the scenario
+	 * @param token 		the token to identify the user
+	 */
+	public static void invalidateScenarioDefinition(String scenarioname, String token) {
+		Users u = ServicePersistenceProvider.getInstance().loadUser(token);
+		
+		if (u != null) {
+			CACHE.invalidate(u.getAccountID(), scenarioname);
+		}
+	}
+	
+	/**
+	 * Load a Scenario definition with the given name and user (via token).<br />
+	 * The definition is served from the cache, if possible. Each call returns a new
+	 * copy of the definition, so the returned definition can be changed.
 	 * 
 	 * @param scenarioname 	the name of the scenario which definition has to be loaded
 	 * @param token 		the token to identify the user
@@ -81,6 +194,82 @@ public final class ServiceStorageModul {
 	 * 						Null if there is no scenario with the given name.
 	 */
 	public static ScenarioDefinition loadScenarioDefinition(String scenarioname, String token) {
+		
+		Users u = ServicePersistenceProvider.getInstance().loadUser(token);
+		
+		if (u == null) {
+			LOGGER.warn("Invalid token '{}'!", token);
+			return null;
+		}
+		
+		ScenarioDefinitionCache.Entry entry = CACHE.get(u.getAccountID(), scenarioname);
+		
+		if (entry != null && entry.isValid()) {
+			
+			ScenarioDefinition definition = entry.getDefinition();
+			
+			if (definition != null) {
+				return definition;
+			}
+			
+		}
+		
+		ScenarioDefinition definition = loadScenarioDefinitionFromDatabase(scenarioname, token);
+		
+		if (definition != null) {
+			CACHE.fill(u.getAccountID(), scenarioname, entry, definition);
+		}
+		
+		return definition;
+	}
+	
+	/**
+	 * Returns the version of the {@link ScenarioDefinition} with the given name. The version
+	 * changes whenever the definition is stored, so it can be used as ETag.
+	 * 
+	 * @param scenarioname 	the name of the scenario
+	 * @param token 		the token to identify the user
+	 * @return 				the version, -1 if there is no scenario with the given name or
+	 * 						the definition cannot be cached
+	 */
+	public static long getScenarioDefinitionVersion(String scenarioname, String token) {
+		
+		Users u = ServicePersistenceProvider.getInstance().loadUser(token);
+		
+		if (u == null) {
+			LOGGER.warn("Invalid token '{}'!", token);
+			return -1;
+		}
+		
+		ScenarioDefinitionCache.Entry entry = CACHE.get(u.getAccountID(), scenarioname);
+		
+		if (entry == null || !entry.isValid()) {
+			
+			ScenarioDefinition definition = loadScenarioDefinitionFromDatabase(scenarioname, token);
+			
+			if (definition == null) {
+				return -1;
+			}
+			
+			entry = CACHE.fill(u.getAccountID(), scenarioname, entry, definition);
+			
+			if (entry == null) {
+				return -1;
+			}
+			
+		}
+		
+		return entry.getVersion();
+	}
+	
+	/**
+	 * Loads the {@link ScenarioDefinition} with the given name from the account database.
+	 * 
+	 * @param scenarioname 	the name of the scenario which definition has to be loaded
+	 * @param token 		the token to identify the user
+	 * @return 				the scenario definition, <code>null</code> if there is none
+	 */
+	private static ScenarioDefinition loadScenarioDefinitionFromDatabase(String scenarioname, String token) {
 
 		IPersistenceProvider dbCon = AccountPersistenceProvider.createPersistenceProvider(token);
 		
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.persistence;
+
+import org.sopeco.persistence.config.PersistenceConfiguration;
+import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.persistence.entities.Account;
+
+/**
+ * The {@link AccountConnectionDescriptor} contains the database connection settings of one
+ * {@link Account}. The descriptor is immutable and has its own configuration session, so the
+ * connection settings of different accounts never share a {@link PersistenceConfiguration}.
+ * 
+ * @author Peter Merkert
+ */
+public final class AccountConnectionDescriptor {
+
+	private final long accountId;
+	
+	private final String host;
+	
+	private final String port;
+	
+	private final String name;
+	
+	private final String password;
+	
+	private final String sessionId;
+	
+	/**
+	 * Creates the descriptor with the current database settings of the given account.
+	 * 
+	 * @param account the account
+	 */
+	public AccountConnectionDescriptor(Account account) {
+		this.accountId 	= account.getId();
+		this.host 		= account.getDbHost();
+		this.port 		= Integer.toString(account.getDbPort());
+		this.name 		= account.getDbName();
+		this.password 	= account.getDbPassword() == null ? "" : account.getDbPassword();
+		this.sessionId 	= ServiceConfiguration.SESSION_ID + "_" + accountId;
+	}
+	
+	public long getAccountId() {
+		return accountId;
+	}
+	
+	public String getHost() {
+		return host;
+	}
+	
+	public String getPort() {
+		return port;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the ID of the configuration session for this account database
+	 */
+	public String getSessionId() {
+		return sessionId;
+	}
+	
+	/**
+	 * Writes the connection settings into the given configuration.
+	 * 
+	 * @param configuration the {@link PersistenceConfiguration} to update
+	 */
+	public void applyTo(PersistenceConfiguration configuration) {
+		if (password.isEmpty()) {
+			configuration.setUsePassword(false);
+		} else {
+			configuration.setUsePassword(true);
+			configuration.updateDBPassword(password);
+		}
+		
+		configuration.updateDBHost(host);
+		configuration.updateDBPort(port);
+		configuration.updateDBName(name);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = (int) (accountId ^ (accountId >>> 32));
+		result = 31 * result + (host == null ? 0 : host.hashCode());
+		result = 31 * result + port.hashCode();
+		result = 31 * result + (name == null ? 0 : name.hashCode());
+		result = 31 * result + password.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		
+		if (!(obj instanceof AccountConnectionDescriptor)) {
+			return false;
+		}
+		
+		AccountConnectionDescriptor other = (AccountConnectionDescriptor) obj;
+		return accountId == other.accountId
+			   && equals(host, other.host)
+			   && port.equals(other.port)
+			   && equals(name, other.name)
+			   && password.equals(other.password);
+	}
+	
+	@Override
+	public String toString() {
+		return "account " + accountId + " (" + host + ":" + port + "/" + name + ")";
+	}
+	
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+	
+}
@@ -39,6 +39,11 @@ public class AccountPersistenceProvider extends PersistenceProviderFactory {
 
 	private static Logger LOGGER = LoggerFactory.getLogger(AccountPersistenceProvider.class);
 	
+	/**
+	 * The opened persistence providers by account.
+	 */
+	private static final AccountPersistenceProviderPool POOL = new AccountPersistenceProviderPool();
+	
 	/**
 	 * Create the database connection for the given user (via token). The passed token
 	 * identifies a unique user in for the currently conected users.
@@ -61,7 +66,9 @@ public class AccountPersistenceProvider extends PersistenceProviderFactory {
 	}
 	
 	/**
-	 * Create the database connection for the given account.
+	 * Returns the database connection for the given account. The connections are pooled per
+	 * account. The returned provider has to be released with <code>closeProvider()</code>,
+	 * when it's not used anymore. This does not close the pooled connection.
 	 * 
 	 * @param account the account whose database connection is requested
 	 * @return persistence provider for the given account
@@ -73,26 +80,47 @@ public class AccountPersistenceProvider extends PersistenceProviderFactory {
 			return null;
 		}
 		
-		String dbPassword  = account.getDbPassword();
-		String host 	   = account.getDbHost();
-		String port 	   = Integer.toString(account.getDbPort());
-		String name 	   = account.getDbName();
-		
-		if (dbPassword.isEmpty()) {
-			PersistenceConfiguration.getSessionSingleton(ServiceConfiguration.SESSION_ID).setUsePassword(false);
-		} else {
-			PersistenceConfiguration.getSessionSingleton(ServiceConfiguration.SESSION_ID).setUsePassword(true);
-			PersistenceConfiguration.getSessionSingleton(ServiceConfiguration.SESSION_ID).updateDBPassword(dbPassword);
-		}
+		return POOL.get(account);
+	}
+	
+	/**
+	 * Closes the pooled database connections, which have not been used for
+	 * {@link ServiceConfiguration#PERSISTENCE_POOL_IDLE_TIMEOUT} ms, as soon as they are
+	 * released by all callers.
+	 */
+	public static void evictIdleProviders() {
+		POOL.evictIdleProviders();
+	}
+	
+	/**
+	 * Closes all pooled database connections.
+	 */
+	public static void closeAllProviders() {
+		POOL.closeAll();
+	}
+	
+	/**
+	 * Opens a new database connection with the given settings. The settings are written
+	 * into the configuration session of the account, so connections for different accounts
+	 * can be opened at the same time.
+	 * 
+	 * @param descriptor the database settings of the account
+	 * @return persistence provider for the account
+	 */
+	static IPersistenceProvider openPersistenceProvider(AccountConnectionDescriptor descriptor) {
 		
-		PersistenceConfiguration.getSessionSingleton(ServiceConfiguration.SESSION_ID).updateDBHost(host);
-		PersistenceConfiguration.getSessionSingleton(ServiceConfiguration.SESSION_ID).updateDBPort(port);
-		PersistenceConfiguration.getSessionSingleton(ServiceConfiguration.SESSION_ID).updateDBName(name);
-
-		LOGGER.debug("Creating a new persistence provider for account '{}'", account.getName());
+		PersistenceConfiguration configuration = PersistenceConfiguration.getSessionSingleton(descriptor.getSessionId());
 		
-		AccountPersistenceProvider factory = new AccountPersistenceProvider();
-		return factory.createJPAPersistenceProvider(ServiceConfiguration.SESSION_ID);
+		synchronized (configuration) {
+			
+			descriptor.applyTo(configuration);
+	
+			LOGGER.debug("Creating a new persistence provider for {}", descriptor);
+			
+			AccountPersistenceProvider factory = new AccountPersistenceProvider();
+			return factory.createJPAPersistenceProvider(descriptor.getSessionId());
+			
+		}
 	}
 	
 	/**
@@ -116,22 +144,8 @@ public class AccountPersistenceProvider extends PersistenceProviderFactory {
 
 		Account account = ServicePersistenceProvider.getInstance().loadAccount(u.getAccountID());
 		
-		String dbPassword  = account.getDbPassword();
-		String host 	   = account.getDbHost();
-		String port 	   = Integer.toString(account.getDbPort());
-		String name 	   = account.getDbName();
-		
 		// now set the configuration properties for the user
-		if (dbPassword.isEmpty()) {
-			PersistenceConfiguration.getSessionSingleton(token).setUsePassword(false);
-		} else {
-			PersistenceConfiguration.getSessionSingleton(token).setUsePassword(true);
-			PersistenceConfiguration.getSessionSingleton(token).updateDBPassword(dbPassword);
-		}
-		
-		PersistenceConfiguration.getSessionSingleton(token).updateDBHost(host);
-		PersistenceConfiguration.getSessionSingleton(token).updateDBPort(port);
-		PersistenceConfiguration.getSessionSingleton(token).updateDBName(name);
+		new AccountConnectionDescriptor(account).applyTo(PersistenceConfiguration.getSessionSingleton(token));
 	}
 	
 }
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.persistence;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sopeco.persistence.IPersistenceProvider;
+import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.persistence.entities.Account;
+
+/**
+ * The {@link AccountPersistenceProviderPool} holds one opened {@link IPersistenceProvider}
+ * per account. Creating a provider bootstraps a new JPA factory and database connection,
+ * so the providers are reused for all requests on the same account.<br />
+ * <br />
+ * Every call of {@link #get(Account)} leases the pooled provider and returns a proxy of it.
+ * Calling <code>closeProvider()</code> on the proxy returns the lease, but does not close
+ * the pooled provider. Providers are retired from the pool when they have not been used for
+ * {@link ServiceConfiguration#PERSISTENCE_POOL_IDLE_TIMEOUT} ms, when the pool exceeds
+ * {@link ServiceConfiguration#PERSISTENCE_POOL_SIZE} or when the database settings of the
+ * account change. A retired provider is closed as soon as its last lease is returned.
+ * {@link #closeAll()} closes all providers immediately on shutdown.
+ * 
+ * @author Peter Merkert
+ */
+final class AccountPersistenceProviderPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AccountPersistenceProviderPool.class);
+	
+	/**
+	 * The number of locks to open the providers. The accounts are spread over the locks by
+	 * their ID, so the number of locks does not grow with the number of accounts.
+	 */
+	private static final int OPEN_LOCK_STRIPES = 32;
+	
+	/**
+	 * The pooled providers by account ID.
+	 */
+	private final ConcurrentMap<Long, PooledProvider> providers = new ConcurrentHashMap<Long, PooledProvider>();
+	
+	/**
+	 * The locks to open the provider of an account. Providers of accounts with different
+	 * locks are opened in parallel.
+	 */
+	private final Object[] openLocks = new Object[OPEN_LOCK_STRIPES];
+	
+	AccountPersistenceProviderPool() {
+		for (int i = 0; i < OPEN_LOCK_STRIPES; i++) {
+			openLocks[i] = new Object();
+		}
+	}
+	
+	/**
+	 * Leases the pooled provider for the given account. If there is none or the database
+	 * settings of the account have changed, a new provider is opened. The caller has to
+	 * call <code>closeProvider()</code> on the returned provider, when it's not used anymore.
+	 * 
+	 * @param account	the account
+	 * @return			the provider for the account database, <code>null</code> if it cannot be opened
+	 */
+	IPersistenceProvider get(Account account) {
+		AccountConnectionDescriptor descriptor = new AccountConnectionDescriptor(account);
+		
+		while (true) {
+			
+			PooledProvider pooled = providers.get(account.getId());
+			
+			if (pooled == null || !pooled.descriptor.equals(descriptor)) {
+				
+				synchronized (getOpenLock(account.getId())) {
+					
+					pooled = providers.get(account.getId());
+					
+					if (pooled != null && !pooled.descriptor.equals(descriptor)) {
+						LOGGER.debug("Database settings of account '{}' changed.", account.getName());
+						if (providers.remove(account.getId(), pooled)) {
+							pooled.retire();
+						}
+						pooled = null;
+					}
+					
+					if (pooled == null) {
+						
+						IPersistenceProvider provider = AccountPersistenceProvider.openPersistenceProvider(descriptor);
+						
+						if (provider == null) {
+							return null;
+						}
+						
+						pooled = new PooledProvider(provider, descriptor);
+						providers.put(account.getId(), pooled);
+					}
+					
+				}
+				
+				evictExceedingProviders();
+			}
+			
+			IPersistenceProvider lease = pooled.lease();
+			
+			// the provider has been retired in the meantime, so the current one is looked up again
+			if (lease != null) {
+				return lease;
+			}
+		}
+	}
+	
+	/**
+	 * Retires all providers, which have not been used for the idle timeout.
+	 */
+	synchronized void evictIdleProviders() {
+		long now = System.currentTimeMillis();
+		
+		List<Long> idleAccounts = new ArrayList<Long>();
+		for (Map.Entry<Long, PooledProvider> entry : providers.entrySet()) {
+			if (now - entry.getValue().lastUsed > ServiceConfiguration.PERSISTENCE_POOL_IDLE_TIMEOUT) {
+				idleAccounts.add(entry.getKey());
+			}
+		}
+		
+		for (Long accountId : idleAccounts) {
+			LOGGER.debug("Retiring idle persistence provider of account {}.", accountId);
+			retire(accountId);
+		}
+	}
+	
+	/**
+	 * Closes all pooled providers, regardless of their leases.
+	 */
+	synchronized void closeAll() {
+		for (PooledProvider pooled : providers.values()) {
+			pooled.close();
+		}
+		
+		providers.clear();
+	}
+	
+	/**
+	 * Retires the least recently used providers until the pool size is reached again. Retired
+	 * providers, which are still leased, stay open until their last lease is returned.
+	 */
+	private synchronized void evictExceedingProviders() {
+		while (providers.size() > ServiceConfiguration.PERSISTENCE_POOL_SIZE) {
+			
+			Long eldest = null;
+			long eldestUsage = Long.MAX_VALUE;
+			
+			for (Map.Entry<Long, PooledProvider> entry : providers.entrySet()) {
+				if (entry.getValue().lastUsed < eldestUsage) {
+					eldest 		= entry.getKey();
+					eldestUsage = entry.getValue().lastUsed;
+				}
+			}
+			
+			if (eldest == null) {
+				return;
+			}
+			
+			LOGGER.debug("Retiring least recently used persistence provider of account {}.", eldest);
+			retire(eldest);
+		}
+	}
+	
+	private void retire(Long accountId) {
+		PooledProvider pooled = providers.remove(accountId);
+		
+		if (pooled != null) {
+			pooled.retire();
+		}
+	}
+	
+	private Object getOpenLock(long accountId) {
+		return openLocks[(int) ((accountId & Long.MAX_VALUE) % OPEN_LOCK_STRIPES)];
+	}
+	
+	/**
+	 * A pooled provider together with the number of its leases and the time of its last usage.
+	 */
+	private static final class PooledProvider {
+		
+		private final IPersistenceProvider provider;
+		
+		private final AccountConnectionDescriptor descriptor;
+		
+		private volatile long lastUsed = System.currentTimeMillis();
+		
+		/**
+		 * The number of leases, which have not been returned yet.
+		 */
+		private int leases = 0;
+		
+		/**
+		 * True, if the provider has been removed from the pool.
+		 */
+		private boolean retired = false;
+		
+		private boolean closed = false;
+		
+		private PooledProvider(IPersistenceProvider provider, AccountConnectionDescriptor descriptor) {
+			this.provider 	= provider;
+			this.descriptor = descriptor;
+		}
+		
+		private void touch() {
+			lastUsed = System.currentTimeMillis();
+		}
+		
+		/**
+		 * Leases the provider.
+		 * 
+		 * @return the proxy of the lease, <code>null</code> if the provider is retired
+		 */
+		private synchronized IPersistenceProvider lease() {
+			if (retired) {
+				return null;
+			}
+			
+			leases++;
+			touch();
+			
+			return (IPersistenceProvider) Proxy.newProxyInstance(IPersistenceProvider.class.getClassLoader(),
+																 new Class<?>[] { IPersistenceProvider.class },
+																 new Lease(this));
+		}
+		
+		/**
+		 * Returns a lease and closes the provider, if it's retired and this was the last lease.
+		 */
+		private synchronized void release() {
+			leases--;
+			
+			if (retired && leases == 0) {
+				close();
+			}
+		}
+		
+		/**
+		 * Marks the provider as removed from the pool. It's closed right away, if it's not leased.
+		 */
+		private synchronized void retire() {
+			retired = true;
+			
+			if (leases == 0) {
+				close();
+			} else {
+				LOGGER.debug("Closing retired persistence provider for {} after {} leases are returned.", descriptor, leases);
+			}
+		}
+		
+		private synchronized void close() {
+			if (closed) {
+				return;
+			}
+			
+			closed = true;
+			
+			try {
+				provider.closeProvider();
+			} catch (RuntimeException e) {
+				LOGGER.warn("Closing a pooled persistence provider failed: {}", e.getMessage());
+			}
+		}
+		
+	}
+	
+	/**
+	 * The handler of the proxy returned for one lease. Calling <code>closeProvider()</code>
+	 * returns the lease once, all other calls are passed to the pooled provider.
+	 */
+	private static final class Lease implements InvocationHandler {
+		
+		private final PooledProvider pooled;
+		
+		private boolean released = false;
+		
+		private Lease(PooledProvider pooled) {
+			this.pooled = pooled;
+		}
+		
+		@Override
+		public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+			
+			if (method.getName().equals("closeProvider") && method.getParameterTypes().length == 0) {
+				release();
+				return null;
+			}
+			
+			pooled.touch();
+			
+			try {
+				return method.invoke(pooled.provider, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+		
+		private void release() {
+			synchronized (this) {
+				if (released) {
+					return;
+				}
+				released = true;
+			}
+			
+			pooled.release();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.persistence;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sopeco.service.persistence.entities.ScheduledExperiment;
+
+/**
+ * The {@link ScheduledExperimentKeyIndex} maps the experiment keys of the stored
+ * {@link ScheduledExperiment}s to their IDs. The experiment key is the hash code of the
+ * experiment and no column, so without the index a lookup by key has to load and hash
+ * all scheduled experiments.<br />
+ * <br />
+ * The index is filled once with all stored experiments and afterwards kept up to date by
+ * the {@link ServicePersistenceProvider}, whenever an experiment is stored or removed. As
+ * the key changes with the experiment, the former key of a stored experiment is replaced.
+ * 
+ * @author Peter Merkert
+ */
+final class ScheduledExperimentKeyIndex {
+
+	private final Map<Long, Long> idByKey = new HashMap<Long, Long>();
+	
+	private final Map<Long, Long> keyById = new HashMap<Long, Long>();
+	
+	private boolean initialized = false;
+	
+	/**
+	 * Returns whether the index has been filled with all stored experiments.
+	 * 
+	 * @return true, if the index is initialized
+	 */
+	synchronized boolean isInitialized() {
+		return initialized;
+	}
+	
+	/**
+	 * Fills the index with the given experiments, if not done before.
+	 * 
+	 * @param experiments all stored experiments
+	 */
+	synchronized void initialize(List<ScheduledExperiment> experiments) {
+		if (initialized) {
+			return;
+		}
+		
+		for (ScheduledExperiment experiment : experiments) {
+			put(experiment);
+		}
+		
+		initialized = true;
+	}
+	
+	/**
+	 * Returns the ID of the experiment with the given key.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @return				the ID, <code>null</code> if no stored experiment has the key
+	 */
+	synchronized Long getId(long experimentKey) {
+		return idByKey.get(experimentKey);
+	}
+	
+	/**
+	 * Adds the given stored experiment or replaces its former key.
+	 * 
+	 * @param experiment the stored experiment
+	 */
+	synchronized void put(ScheduledExperiment experiment) {
+		remove(experiment.getId());
+		
+		long experimentKey = experiment.getExperimentKey();
+		idByKey.put(experimentKey, experiment.getId());
+		keyById.put(experiment.getId(), experimentKey);
+	}
+	
+	/**
+	 * Removes the experiment with the given ID.
+	 * 
+	 * @param id the ID of the removed experiment
+	 */
+	synchronized void remove(long id) {
+		Long experimentKey = keyById.remove(id);
+		
+		if (experimentKey == null) {
+			return;
+		}
+		
+		Long indexedId = idByKey.get(experimentKey);
+		
+		if (indexedId != null && indexedId == id) {
+			idByKey.remove(experimentKey);
+		}
+	}
+	
+}
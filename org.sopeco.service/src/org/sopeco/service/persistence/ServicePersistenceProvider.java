@@ -28,20 +28,24 @@ package org.sopeco.service.persistence;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
 import javax.persistence.Persistence;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sopeco.service.configuration.ServiceConfiguration;
 import org.sopeco.service.execute.MECLogEntry;
 import org.sopeco.service.persistence.entities.Account;
 import org.sopeco.service.persistence.entities.ExecutedExperimentDetails;
 import org.sopeco.service.persistence.entities.MECLog;
+import org.sopeco.service.persistence.entities.MECLogChunk;
 import org.sopeco.service.persistence.entities.ScheduledExperiment;
 import org.sopeco.service.persistence.entities.Users;
 
@@ -61,6 +65,21 @@ public final class ServicePersistenceProvider {
 	 * This factory handles a connection pool automatically.
 	 */
 	private EntityManagerFactory emf;
+	
+	/**
+	 * Cache for the users by token, as the users are loaded with every request.
+	 */
+	private final UserCache userCache = new UserCache(ServiceConfiguration.USER_CACHE_SIZE, ServiceConfiguration.USER_CACHE_TTL);
+	
+	/**
+	 * The last request times of the users, which still have to be written to the database.
+	 */
+	private final UserTouchBuffer userTouches = new UserTouchBuffer(ServiceConfiguration.USER_TOUCH_FLUSH_INTERVAL);
+	
+	/**
+	 * The IDs of the scheduled experiments by their experiment key.
+	 */
+	private final ScheduledExperimentKeyIndex scheduledExperimentKeys = new ScheduledExperimentKeyIndex();
 
 	/**
 	 * Singleton instance for this persistence provider.
@@ -94,6 +113,8 @@ public final class ServicePersistenceProvider {
 	public static void close() {
 		
 		if (singleton != null) {
+			singleton.flushUserTouches();
+			singleton.userCache.clear();
 			singleton.emf.close();
 			singleton = null;
 		}
@@ -104,15 +125,116 @@ public final class ServicePersistenceProvider {
 	///////////////////////////////////// DATABASE FETCH METHODS ////////////////////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	/**
+	 * Loads the {@link Users} with the given token. Recently used users are served from
+	 * the {@link UserCache} without accessing the database.
+	 * 
+	 * @param token	the user token
+	 * @return		the {@link Users}, <code>null</code> if there is no user with the token
+	 */
 	public Users loadUser(String token) {
-		return loadSingleByQuery(Users.class, "getUserByToken", "token", token);
+		if (token == null) {
+			return null;
+		}
+		
+		Users user = userCache.get(token);
+		
+		if (user == null) {
+			
+			user = loadSingleByQuery(Users.class, "getUserByToken", "token", token);
+			
+			if (user == null) {
+				return null;
+			}
+			
+			// the database might not contain the latest request time yet
+			Long touched = userTouches.get(token);
+			if (touched != null && touched > user.getLastRequestTime()) {
+				user.setLastRequestTime(touched);
+			}
+			
+			userCache.put(user);
+		}
+		
+		return user;
+	}
+	
+	/**
+	 * Sets the last request time of the given user to the current time. The time is not
+	 * written immediately, but buffered and flushed together with the other users request
+	 * times once per {@link ServiceConfiguration#USER_TOUCH_FLUSH_INTERVAL}.
+	 * 
+	 * @param user	the {@link Users} to touch
+	 */
+	public void touchUser(Users user) {
+		long now = System.currentTimeMillis();
+		
+		user.setLastRequestTime(now);
+		userTouches.touch(user.getToken(), now);
+		
+		if (userTouches.isFlushDue(now)) {
+			
+			try {
+				flushUserTouches();
+			} catch (RuntimeException e) {
+				LOGGER.warn("Could not write the last request times of the users: {}", e.getMessage());
+			}
+			
+		}
+	}
+	
+	/**
+	 * Writes all buffered last request times of the users to the database in one transaction.
+	 */
+	public void flushUserTouches() {
+		if (userTouches.isEmpty()) {
+			return;
+		}
+		
+		Map<String, Long> touches = userTouches.snapshot();
+		
+		EntityManager em = emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			Query query = em.createNamedQuery("updateUserRequestTime");
+			for (Map.Entry<String, Long> touch : touches.entrySet()) {
+				query.setParameter("token", touch.getKey());
+				query.setParameter("time", touch.getValue());
+				query.executeUpdate();
+			}
+			em.getTransaction().commit();
+		} finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			em.close();
+		}
+		
+		for (Map.Entry<String, Long> touch : touches.entrySet()) {
+			userTouches.flushed(touch.getKey(), touch.getValue());
+		}
+		
+		LOGGER.debug("Written the last request times of {} users.", touches.size());
 	}
 
 	public Users storeUser(Users user) {
-		return store(user);
+		Users stored = store(user);
+		
+		if (stored != null) {
+			userCache.put(stored);
+		} else if (user != null) {
+			userCache.invalidate(user.getToken());
+		}
+		
+		return stored;
 	}
 
 	public void removeUser(Users user) {
+		if (user != null) {
+			userCache.invalidate(user.getToken());
+			userTouches.discard(user.getToken());
+		}
+		
 		remove(user);
 	}
 
@@ -133,11 +255,48 @@ public final class ServicePersistenceProvider {
 	}
 	
 	public void storeScheduledExperiment(ScheduledExperiment scheduledExperiment) {
-		store(scheduledExperiment);
+		ScheduledExperiment stored = store(scheduledExperiment);
+		
+		if (stored != null) {
+			scheduledExperimentKeys.put(stored);
+		}
 	}
 
 	public void removeScheduledExperiment(ScheduledExperiment experiment) {
 		remove(experiment);
+		scheduledExperimentKeys.remove(experiment.getId());
+	}
+	
+	/**
+	 * Loads the {@link ScheduledExperiment} with the given experiment key. The ID of the
+	 * experiment is looked up in an index, which is filled with all stored experiments on
+	 * the first call.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @return				the {@link ScheduledExperiment}, <code>null</code> if there is none with the key
+	 */
+	public ScheduledExperiment loadScheduledExperimentByKey(long experimentKey) {
+		
+		// loaded while holding the lock, so no concurrent store is overwritten
+		synchronized (scheduledExperimentKeys) {
+			if (!scheduledExperimentKeys.isInitialized()) {
+				scheduledExperimentKeys.initialize(loadAllScheduledExperiments());
+			}
+		}
+		
+		Long id = scheduledExperimentKeys.getId(experimentKey);
+		
+		if (id == null) {
+			return null;
+		}
+		
+		ScheduledExperiment experiment = loadScheduledExperiment(id);
+		
+		if (experiment == null || experiment.getExperimentKey() != experimentKey) {
+			return null;
+		}
+		
+		return experiment;
 	}
 	
 	public ScheduledExperiment loadScheduledExperiment(long id) {
@@ -148,10 +307,31 @@ public final class ServicePersistenceProvider {
 		return loadByQuery(ScheduledExperiment.class, "getAllExperiments");
 	}
 
+	/**
+	 * Loads the ID and the next execution time of all {@link ScheduledExperiment}s. The
+	 * experiments themselves (including their scenario definition) are not fetched.
+	 * 
+	 * @return	list of arrays with the ID at index 0 and the next execution time at index 1
+	 */
+	public List<Object[]> loadAllScheduledExperimentTimes() {
+		return loadByQuery(Object[].class, "getAllExperimentTimes");
+	}
+
 	public List<ScheduledExperiment> loadScheduledExperimentsByAccount(long accountId) {
 		return loadByQuery(ScheduledExperiment.class, "getExperimentsByAccount", "account", accountId);
 	}
 
+	/**
+	 * Loads the IDs of all accounts, which have scheduled experiments on the controller with
+	 * the given URL.
+	 * 
+	 * @param controllerUrl	the URL of the controller
+	 * @return				the account IDs
+	 */
+	public List<Long> loadAccountIdsByControllerUrl(String controllerUrl) {
+		return loadByQuery(Long.class, "getAccountsByControllerUrl", "controllerUrl", controllerUrl);
+	}
+
 	public List<ExecutedExperimentDetails> loadExecutedExperimentDetails(long accountId, String scenarioName) {
 		return loadByQuery(ExecutedExperimentDetails.class, "getExperiments", "accountId", accountId, "scenarioName", scenarioName);
 	}
@@ -174,24 +354,157 @@ public final class ServicePersistenceProvider {
 	}
 	
 	/**
-	 * The ID of the {@link MECLog} is the epxerimnet key of the connected experiment.
+	 * The ID of the {@link MECLog} is the epxerimnet key of the connected experiment.<br />
+	 * The log is assembled out of the {@link MECLogChunk}s of the experiment. Logs, which
+	 * have been stored as a whole before, are still loaded.
 	 * 
 	 * @param experimentkey	the experiment key
 	 * @return				the {@link MECLog} with {@link MECLogEntry}s
 	 */
 	public MECLog loadMECLog(long experimentkey) {
+		return loadMECLog(experimentkey, 0);
+	}
+	
+	/**
+	 * Loads the {@link MECLogEntry}s of the experiment with the given key, which have a sequence
+	 * number greater than <code>since</code>. Only the {@link MECLogChunk}s containing such entries
+	 * are loaded. Entries of logs, which have been stored before sequence numbers existed, get
+	 * their sequence number by their position.
+	 * 
+	 * @param experimentkey	the experiment key
+	 * @param since			the sequence number of the last known entry, 0 for the whole log
+	 * @return				the {@link MECLog} with the newer {@link MECLogEntry}s, <code>null</code>
+	 * 						if there is no log for the whole log requested
+	 */
+	public MECLog loadMECLog(long experimentkey, long since) {
+		List<MECLogChunk> chunks;
+		
+		if (since <= 0) {
+			chunks = loadMECLogChunks(experimentkey);
+		} else {
+			chunks = loadByQuery(MECLogChunk.class, "getMECLogChunksSince", "experimentKey", experimentkey, "since", (int) Math.min(since, Integer.MAX_VALUE));
+		}
+		
+		List<MECLogEntry> entries = new ArrayList<MECLogEntry>();
+		
+		if (chunks.isEmpty()) {
+			
+			MECLog legacyLog = loadWholeMECLog(experimentkey);
+			
+			if (legacyLog == null) {
+				// a known log without newer entries is returned empty
+				return since <= 0 ? null : createMECLog(experimentkey, entries);
+			}
+			
+			addMECLogEntriesSince(entries, legacyLog.getEntries(), 0, since);
+			
+		} else {
+			
+			for (MECLogChunk chunk : chunks) {
+				addMECLogEntriesSince(entries, chunk.getEntries(), chunk.getFirstEntry(), since);
+			}
+			
+		}
+		
+		return createMECLog(experimentkey, entries);
+	}
+	
+	/**
+	 * Loads all {@link MECLogChunk}s of the experiment with the given key in the order
+	 * of their entries.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @return				the chunks of the log
+	 */
+	public List<MECLogChunk> loadMECLogChunks(long experimentKey) {
+		return loadByQuery(MECLogChunk.class, "getMECLogChunks", "experimentKey", experimentKey);
+	}
+	
+	/**
+	 * Adds the entries of the given log segment with a sequence number greater than <code>since</code>
+	 * to the target list.
+	 * 
+	 * @param target		the list to add the entries to
+	 * @param segment		the entries of the log segment
+	 * @param firstEntry	the position of the first entry of the segment in the whole log
+	 * @param since			the sequence number of the last known entry
+	 */
+	private void addMECLogEntriesSince(List<MECLogEntry> target, List<MECLogEntry> segment, int firstEntry, long since) {
+		if (segment == null) {
+			return;
+		}
+		
+		for (int i = 0; i < segment.size(); i++) {
+			
+			MECLogEntry entry = segment.get(i);
+			long sequence = firstEntry + i + 1;
+			
+			if (entry.getSequence() == 0) {
+				entry.setSequence(sequence);
+			}
+			
+			if (sequence > since) {
+				target.add(entry);
+			}
+		}
+	}
+	
+	private MECLog createMECLog(long experimentkey, List<MECLogEntry> entries) {
+		MECLog log = new MECLog();
+		log.setId(experimentkey);
+		log.setEntries(entries);
+		return log;
+	}
+	
+	/**
+	 * Loads the IDs of the {@link MECLogChunk}s of the experiment with the given key in the order
+	 * of their entries. Only the chunks with entries behind the given position and in the given
+	 * time window are returned.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param skip			the number of entries at the beginning of the log, which are not requested
+	 * @param fromTime		the earliest time of a requested entry
+	 * @param toTime		the latest time of a requested entry
+	 * @return				the IDs of the chunks
+	 */
+	public List<Long> loadMECLogChunkIDs(long experimentKey, int skip, long fromTime, long toTime) {
+		return loadByQuery(Long.class, "getMECLogChunkIDs", "experimentKey", experimentKey, "skip", skip, "fromTime", fromTime, "toTime", toTime);
+	}
+	
+	public MECLogChunk loadMECLogChunk(long id) {
+		return loadSingleById(MECLogChunk.class, id);
+	}
+	
+	/**
+	 * Loads the {@link MECLog}, which has been stored as a whole before the logs were written
+	 * in {@link MECLogChunk}s.
+	 * 
+	 * @param experimentkey	the experiment key
+	 * @return				the {@link MECLog}, <code>null</code> if there is none
+	 */
+	public MECLog loadWholeMECLog(long experimentkey) {
 		return loadSingleById(MECLog.class, experimentkey);
 	}
 	
+	public void storeMECLogChunk(MECLogChunk chunk) {
+		store(chunk);
+	}
+	
+	/**
+	 * Removes all {@link MECLogChunk}s of the experiment with the given key.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @return				the number of removed chunks
+	 */
+	public int removeMECLogChunks(long experimentKey) {
+		return executeUpdate("removeMECLogChunks", "experimentKey", experimentKey);
+	}
+	
 	public long storeExecutedExperimentDetails(ExecutedExperimentDetails experimentDetails) {
 		ExecutedExperimentDetails entity = store(experimentDetails);
 		return entity == null ? -1 : entity.getId();
 	}
 	
-	public void storeMECLog(MECLog mecLog) {
-		store(mecLog);
-	}
-	
 	/********************************************************************/
 	/**
 	 * The methods are taken out of the WebUI from Marius Oehler.
@@ -230,6 +543,26 @@ public final class ServicePersistenceProvider {
 		}
 	}
 
+	private int executeUpdate(String queryName, Object... parameterList) {
+		EntityManager em = emf.createEntityManager();
+		int result = 0;
+		try {
+			em.getTransaction().begin();
+			Query query = em.createNamedQuery(queryName);
+			for (int i = 0; i + 1 < parameterList.length; i += 2) {
+				query.setParameter((String) parameterList[i], parameterList[i + 1]);
+			}
+			result = query.executeUpdate();
+			em.getTransaction().commit();
+		} finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			em.close();
+		}
+		return result;
+	}
+
 	private <T> T loadSingleById(Class<T> returnClazz, Object primaryKey) {
 		EntityManager em = emf.createEntityManager();
 		T entity = em.find(returnClazz, primaryKey);
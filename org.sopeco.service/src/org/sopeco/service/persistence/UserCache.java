@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.persistence.entities.Users;
+
+/**
+ * The {@link UserCache} holds the recently used {@link Users} by their token. This saves
+ * a database round-trip for the authentication of every REST request.<br />
+ * <br />
+ * The cache is bounded in size (least recently used users are evicted first) and
+ * an entry is only used for {@link ServiceConfiguration#USER_CACHE_TTL} ms. Expired
+ * users are never returned from the cache.
+ * 
+ * @author Peter Merkert
+ */
+final class UserCache {
+
+	/**
+	 * The cached users by token in access order.
+	 */
+	private final Map<String, CachedUser> users;
+	
+	private final long timeToLive;
+	
+	/**
+	 * Creates a new cache.
+	 * 
+	 * @param maxSize		the maximum number of cached users
+	 * @param timeToLive	the time in ms a cached user is valid
+	 */
+	UserCache(final int maxSize, long timeToLive) {
+		this.timeToLive = timeToLive;
+		this.users 		= new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+				return size() > maxSize;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Returns the cached user with the given token. Users, which are expired or have
+	 * been cached for too long, are removed from the cache.
+	 * 
+	 * @param token	the user token
+	 * @return		the cached {@link Users}, <code>null</code> if not cached
+	 */
+	synchronized Users get(String token) {
+		CachedUser cached = users.get(token);
+		
+		if (cached == null) {
+			return null;
+		}
+		
+		if (System.currentTimeMillis() - cached.cachedAt > timeToLive || cached.user.isExpired()) {
+			users.remove(token);
+			return null;
+		}
+		
+		return cached.user;
+	}
+	
+	/**
+	 * Caches the given user. Users, which are already expired, are not cached.
+	 * 
+	 * @param user	the {@link Users} to cache
+	 */
+	synchronized void put(Users user) {
+		if (user == null || user.getToken() == null) {
+			return;
+		}
+		
+		if (user.isExpired()) {
+			users.remove(user.getToken());
+			return;
+		}
+		
+		users.put(user.getToken(), new CachedUser(user, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Removes the user with the given token from the cache.
+	 * 
+	 * @param token	the user token
+	 */
+	synchronized void invalidate(String token) {
+		users.remove(token);
+	}
+	
+	synchronized void clear() {
+		users.clear();
+	}
+	
+	/**
+	 * A user together with the time it was cached.
+	 */
+	private static final class CachedUser {
+		
+		private final Users user;
+		
+		private final long cachedAt;
+		
+		private CachedUser(Users user, long cachedAt) {
+			this.user 		= user;
+			this.cachedAt 	= cachedAt;
+		}
+		
+	}
+	
+}
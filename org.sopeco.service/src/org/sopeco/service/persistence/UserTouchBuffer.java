@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sopeco.service.persistence.entities.Users;
+
+/**
+ * The {@link UserTouchBuffer} collects the last request times of the {@link Users} in memory.
+ * Instead of storing the user with every request, the buffered times are written to the
+ * database in one batch, at most once per flush interval.<br />
+ * <br />
+ * A buffered time stays in the buffer until it has been written, so that it can be applied
+ * to users loaded from the database in the meantime.
+ * 
+ * @author Peter Merkert
+ */
+final class UserTouchBuffer {
+
+	/**
+	 * The latest request time by user token, which has not been written yet.
+	 */
+	private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<String, Long>();
+	
+	private final AtomicLong lastFlush = new AtomicLong(System.currentTimeMillis());
+	
+	private final long flushInterval;
+	
+	/**
+	 * @param flushInterval the minimum time in ms between two flushes
+	 */
+	UserTouchBuffer(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+	
+	/**
+	 * Buffers the request time for the user with the given token. An older request time
+	 * never replaces a newer one.
+	 * 
+	 * @param token	the user token
+	 * @param time	the request time
+	 */
+	void touch(String token, long time) {
+		Long current = pending.putIfAbsent(token, time);
+		
+		while (current != null && current < time) {
+			
+			if (pending.replace(token, current, time)) {
+				return;
+			}
+			
+			current = pending.putIfAbsent(token, time);
+		}
+	}
+	
+	/**
+	 * Returns the buffered request time of the user with the given token.
+	 * 
+	 * @param token	the user token
+	 * @return		the request time, <code>null</code> if nothing is buffered
+	 */
+	Long get(String token) {
+		return pending.get(token);
+	}
+	
+	/**
+	 * Drops the buffered request time of the user with the given token, e.g. when the user
+	 * has been removed.
+	 * 
+	 * @param token	the user token
+	 */
+	void discard(String token) {
+		pending.remove(token);
+	}
+	
+	/**
+	 * Returns whether the flush interval has passed. If so, the interval is restarted, so
+	 * only one of several concurrent callers gets <code>true</code>.
+	 * 
+	 * @param now	the current time
+	 * @return		true, if the caller should flush the buffer
+	 */
+	boolean isFlushDue(long now) {
+		long last = lastFlush.get();
+		return now - last >= flushInterval && lastFlush.compareAndSet(last, now);
+	}
+	
+	/**
+	 * @return a copy of the currently buffered request times by user token
+	 */
+	Map<String, Long> snapshot() {
+		return new HashMap<String, Long>(pending);
+	}
+	
+	/**
+	 * Marks the request time of the user as written. If the user has been touched again
+	 * in the meantime, the newer time stays in the buffer.
+	 * 
+	 * @param token	the user token
+	 * @param time	the written request time
+	 */
+	void flushed(String token, Long time) {
+		pending.remove(token, time);
+	}
+	
+	boolean isEmpty() {
+		return pending.isEmpty();
+	}
+	
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.persistence.entities;
+
+import java.io.Serializable;
+import java.util.List;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import org.sopeco.service.execute.MECLogEntry;
+
+/**
+ * A <code>MECLogChunk</code> is a segment of the log of an executed experiment. The
+ * chunks of an experiment are only appended and never changed, so a long log is not
+ * rewritten for every new {@link MECLogEntry}. The whole log is the concatenation of all
+ * chunks of an experiment ordered by <code>firstEntry</code>.
+ * 
+ * @author Peter Merkert
+ */
+@Entity
+@Table(indexes = { @Index(columnList = "experimentKey") })
+@NamedQueries({ @NamedQuery(name = "getMECLogChunks", query = "SELECT c FROM MECLogChunk c WHERE c.experimentKey = :experimentKey ORDER BY c.firstEntry"),
+				@NamedQuery(name = "getMECLogChunkIDs", query = "SELECT c.id FROM MECLogChunk c WHERE c.experimentKey = :experimentKey AND c.firstEntry + c.entryCount > :skip AND c.lastTime >= :fromTime AND c.firstTime <= :toTime ORDER BY c.firstEntry"),
+				@NamedQuery(name = "getMECLogChunksSince", query = "SELECT c FROM MECLogChunk c WHERE c.experimentKey = :experimentKey AND c.firstEntry + c.entryCount > :since ORDER BY c.firstEntry"),
+				@NamedQuery(name = "removeMECLogChunks", query = "DELETE FROM MECLogChunk c WHERE c.experimentKey = :experimentKey")})
+public class MECLogChunk implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@GeneratedValue
+	private long id;
+
+	/**
+	 * The experiment key of the executed experiment, the log belongs to.
+	 */
+	@Column(name = "experimentKey")
+	private long experimentKey;
+
+	/**
+	 * The position of the first entry of this chunk in the whole log.
+	 */
+	@Column(name = "firstEntry")
+	private int firstEntry;
+
+	@Column(name = "entryCount")
+	private int entryCount;
+
+	@Column(name = "firstTime")
+	private long firstTime;
+
+	@Column(name = "lastTime")
+	private long lastTime;
+
+	@Lob
+	@Column(name = "entries")
+	private List<MECLogEntry> entries;
+
+	public MECLogChunk() {
+	}
+
+	/**
+	 * Creates a new chunk with the given entries.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param firstEntry	the position of the first entry in the whole log
+	 * @param entries		the entries of the chunk, must not be empty
+	 */
+	public MECLogChunk(long experimentKey, int firstEntry, List<MECLogEntry> entries) {
+		this.experimentKey 	= experimentKey;
+		this.firstEntry 	= firstEntry;
+		this.entries 		= entries;
+		this.entryCount 	= entries.size();
+		this.firstTime 		= entries.get(0).getTime();
+		this.lastTime 		= entries.get(entries.size() - 1).getTime();
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public long getExperimentKey() {
+		return experimentKey;
+	}
+
+	public int getFirstEntry() {
+		return firstEntry;
+	}
+
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	public long getFirstTime() {
+		return firstTime;
+	}
+
+	public long getLastTime() {
+		return lastTime;
+	}
+
+	public List<MECLogEntry> getEntries() {
+		return entries;
+	}
+}
@@ -40,10 +40,14 @@ import javax.persistence.Id;
 import javax.persistence.Lob;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.Transient;
 
 import org.sopeco.config.IConfiguration;
 import org.sopeco.persistence.entities.definition.ScenarioDefinition;
+import org.sopeco.service.execute.CompiledScheduleExpression;
+import org.sopeco.service.execute.DurationStatistics;
 import org.sopeco.service.execute.QueuedExperiment;
+import org.sopeco.service.execute.ScheduleExpression;
 
 /**
  * 
@@ -53,7 +57,9 @@ import org.sopeco.service.execute.QueuedExperiment;
 @Entity
 @NamedQueries({
 		@NamedQuery(name = "getAllExperiments", query = "SELECT u FROM ScheduledExperiment u"),
-		@NamedQuery(name = "getExperimentsByAccount", query = "SELECT s FROM ScheduledExperiment s WHERE s.account = :account") })
+		@NamedQuery(name = "getAllExperimentTimes", query = "SELECT s.id, s.nextExecutionTime FROM ScheduledExperiment s"),
+		@NamedQuery(name = "getExperimentsByAccount", query = "SELECT s FROM ScheduledExperiment s WHERE s.account = :account"),
+		@NamedQuery(name = "getAccountsByControllerUrl", query = "SELECT DISTINCT s.account FROM ScheduledExperiment s WHERE s.controllerUrl = :controllerUrl") })
 public class ScheduledExperiment implements Serializable {
 
 	/**
@@ -108,14 +114,30 @@ public class ScheduledExperiment implements Serializable {
 	@Column(name = "repeatMinutes")
 	private String repeatMinutes;
 
+	/**
+	 * The durations of the latest executions, at most {@link org.sopeco.service.configuration.ServiceConfiguration#DURATION_HISTORY_SIZE}.
+	 */
 	@Column(name = "durations")
 	private List<Long> durations = new ArrayList<Long>();
 
+	/**
+	 * The statistics over the durations of all executions.
+	 */
+	@Lob
+	@Column(name = "durationStatistics")
+	private DurationStatistics durationStatistics;
+
 	@Lob
 	@ElementCollection
 	@Column(name = "selectedExperiments")
 	private List<String> selectedExperiments = new ArrayList<String>();
 
+	/**
+	 * The compiled repeat settings, created on first access.
+	 */
+	@Transient
+	private transient CompiledScheduleExpression compiledSchedule;
+
 	public ScheduledExperiment() {
 	}
 
@@ -141,6 +163,25 @@ public class ScheduledExperiment implements Serializable {
 		this.durations = pDurations;
 	}
 
+	/**
+	 * Returns the statistics over the durations of all executions. Experiments, which have been
+	 * stored before the statistics existed, get statistics created out of their duration list.
+	 * The created statistics are not assigned, because the experiment key depends on them. They
+	 * are stored with the next execution.
+	 * 
+	 * @return the {@link DurationStatistics}
+	 */
+	public DurationStatistics getDurationStatistics() {
+		if (durationStatistics == null) {
+			return DurationStatistics.of(durations);
+		}
+		return durationStatistics;
+	}
+
+	public void setDurationStatistics(DurationStatistics pDurationStatistics) {
+		this.durationStatistics = pDurationStatistics;
+	}
+
 	public Map<String, Object> getProperties() {
 		return properties;
 	}
@@ -237,12 +278,25 @@ public class ScheduledExperiment implements Serializable {
 		this.label = label;
 	}
 
+	/**
+	 * Returns the compiled form of the repeat days, hours and minutes.
+	 * 
+	 * @return the {@link CompiledScheduleExpression}, <code>null</code> if a repeat setting is missing
+	 */
+	public CompiledScheduleExpression getCompiledSchedule() {
+		if (compiledSchedule == null) {
+			compiledSchedule = ScheduleExpression.compile(repeatDays, repeatHours, repeatMinutes);
+		}
+		return compiledSchedule;
+	}
+
 	public String getRepeatDays() {
 		return repeatDays;
 	}
 
 	public void setRepeatDays(String repeatDays) {
 		this.repeatDays = repeatDays;
+		this.compiledSchedule = null;
 	}
 
 	public String getRepeatHours() {
@@ -251,6 +305,7 @@ public class ScheduledExperiment implements Serializable {
 
 	public void setRepeatHours(String repeatHours) {
 		this.repeatHours = repeatHours;
+		this.compiledSchedule = null;
 	}
 
 	public String getRepeatMinutes() {
@@ -259,6 +314,7 @@ public class ScheduledExperiment implements Serializable {
 
 	public void setRepeatMinutes(String repeatMinutes) {
 		this.repeatMinutes = repeatMinutes;
+		this.compiledSchedule = null;
 	}
 
 	/**
@@ -337,6 +393,11 @@ public class ScheduledExperiment implements Serializable {
 			
 		}
 		
+		// the duration list is bounded, the key must change with every execution anyway
+		if (this.durationStatistics != null) {
+			durations += "#" + this.durationStatistics.getCount();
+		}
+		
 		if (this.selectedExperiments != null) {
 			
 			for (String s : this.selectedExperiments) {
@@ -29,6 +29,7 @@ package org.sopeco.service.persistence.entities;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 
 import org.slf4j.Logger;
@@ -46,7 +47,11 @@ import org.sopeco.service.configuration.ServiceConfiguration;
  * @author Peter Merkert
  */
 @Entity
-@NamedQuery(name = "getUserByToken", query = "SELECT u FROM Users u WHERE u.token = :token")
+@NamedQueries({
+	@NamedQuery(name = "getUserByToken", query = "SELECT u FROM Users u WHERE u.token = :token"),
+	@NamedQuery(name = "updateUserRequestTime",
+				query = "UPDATE Users u SET u.lastRequestTime = :time WHERE u.token = :token AND u.lastRequestTime < :time")
+})
 public class Users {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Users.class.getName());
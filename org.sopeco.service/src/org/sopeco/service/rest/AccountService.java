@@ -189,8 +189,7 @@ public class AccountService {
 		}
 		
 		// reset the timer for the token
-		u.setLastRequestTime(System.currentTimeMillis());
-		ServicePersistenceProvider.getInstance().storeUser(u);
+		ServicePersistenceProvider.getInstance().touchUser(u);
 
 		return Response.ok().build();
 	}
@@ -340,9 +339,8 @@ public class AccountService {
 			
 		}
 		
-		u.setLastRequestTime(System.currentTimeMillis());
-		
-		ServicePersistenceProvider.getInstance().storeUser(u);
+		// the new request time is written to the database with the next batch
+		ServicePersistenceProvider.getInstance().touchUser(u);
 
 		return u;
 	}
@@ -32,6 +32,7 @@ import java.util.regex.Pattern;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -39,11 +40,14 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sopeco.config.Configuration;
@@ -52,9 +56,13 @@ import org.sopeco.persistence.entities.definition.ExperimentSeriesDefinition;
 import org.sopeco.persistence.entities.definition.ScenarioDefinition;
 import org.sopeco.runner.SoPeCoRunner;
 import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.execute.CompiledScheduleExpression;
+import org.sopeco.service.execute.ExecutionQueueManager;
 import org.sopeco.service.execute.ExecutionScheduler;
+import org.sopeco.service.execute.ExperimentStatusBroadcaster;
+import org.sopeco.service.execute.MECLogEntry;
+import org.sopeco.service.execute.MECLogWriter;
 import org.sopeco.service.execute.QueuedExperiment;
-import org.sopeco.service.execute.ScheduleExpression;
 import org.sopeco.service.persistence.ServicePersistenceProvider;
 import org.sopeco.service.persistence.AccountPersistenceProvider;
 import org.sopeco.service.persistence.entities.ExecutedExperimentDetails;
@@ -62,6 +70,7 @@ import org.sopeco.service.persistence.entities.MECLog;
 import org.sopeco.service.persistence.entities.ScheduledExperiment;
 import org.sopeco.service.persistence.entities.Users;
 import org.sopeco.service.rest.exchange.ExperimentStatus;
+import org.sopeco.service.rest.json.MECLogStreamingOutput;
 
 /**
  * The <code>ExecutionService</code> class provides the service to {@link ScheduledExperiment}s,
@@ -135,10 +144,8 @@ public class ExecutionService {
 		long nextExecution = scheduledExperiment.getStartTime();
 		
 		if (scheduledExperiment.isRepeating()) {
-			nextExecution = ScheduleExpression.nextValidDate(scheduledExperiment.getStartTime(),
-															 scheduledExperiment.getRepeatDays(),
-															 scheduledExperiment.getRepeatHours(),
-															 scheduledExperiment.getRepeatMinutes());
+			CompiledScheduleExpression schedule = scheduledExperiment.getCompiledSchedule();
+			nextExecution = schedule == null ? -1 : schedule.nextValidDate(scheduledExperiment.getStartTime());
 		}
 
 		scheduledExperiment.setNextExecutionTime(nextExecution);
@@ -149,6 +156,8 @@ public class ExecutionService {
 			LOGGER.warn("No database connection found.");
 			return Response.status(Status.INTERNAL_SERVER_ERROR).build();
 		}
+		
+		dbCon.closeProvider();
 
 		ServicePersistenceProvider.getInstance().storeScheduledExperiment(scheduledExperiment);
 
@@ -160,6 +169,8 @@ public class ExecutionService {
 
 			if (se.equals(scheduledExperiment)) {
 				
+				ExecutionScheduler.getInstance().updateSchedule(se);
+				
 				if (se.isActive()) {
 					
 					LOGGER.info("Experiment successful dispatched in active mode (Experiment key: '{}')", se.getExperimentKey());
@@ -240,6 +251,7 @@ public class ExecutionService {
 		for (ScheduledExperiment exp : scheduledExperiments) {
 			
 			ServicePersistenceProvider.getInstance().removeScheduledExperiment(exp);
+			ExecutionScheduler.getInstance().removeSchedule(exp.getId());
 			
 		}
 
@@ -342,11 +354,12 @@ public class ExecutionService {
 															+ "Cannot start scenario.").build();
 		}	
 		
-		// this is the crutual line: A background thread analyses the scheduledexperiment in the database for
-		// active ones and they are added to the executionqueue
+		// this is the crutual line: the ExecutionScheduler adds active experiments to the executionqueue,
+		// when they are due
 		exp.setActive(true);
 		
 		ServicePersistenceProvider.getInstance().storeScheduledExperiment(exp);
+		ExecutionScheduler.getInstance().updateSchedule(exp);
 		
 		return Response.ok(exp.getExperimentKey()).build();
 	}
@@ -390,6 +403,7 @@ public class ExecutionService {
 		
 		exp.setActive(false);
 		ServicePersistenceProvider.getInstance().storeScheduledExperiment(exp);
+		ExecutionScheduler.getInstance().updateSchedule(exp);
 		
 		return Response.ok().build();
 	}
@@ -432,6 +446,7 @@ public class ExecutionService {
 		}
 		
 		ServicePersistenceProvider.getInstance().removeScheduledExperiment(exp);
+		ExecutionScheduler.getInstance().removeSchedule(exp.getId());
 		
 		return Response.ok().build();
 	}
@@ -439,9 +454,14 @@ public class ExecutionService {
 	/**
 	 * Returns the current status of the experiment with the given key. Both, the table for {@link ScheduledExperiment}s
 	 * and the one for {@link QueuedExperiment}s is searched for the given key. This implies, that this
-	 * method can be called for active and inactive {@link ScheduledExperiment}s.
+	 * method can be called for active and inactive {@link ScheduledExperiment}s.<br />
+	 * <br />
+	 * The event log of the status only contains the {@link MECLogEntry}s with a sequence number greater
+	 * than <code>since</code>. Pass the {@link ExperimentStatus#getLastSequence()} of the former status
+	 * to poll only the new entries.
 	 * 
 	 * @param experimentKey	the experiment key
+	 * @param since			the sequence number of the last known log entry, 0 for the whole log
 	 * @param usertoken		the user identification
 	 * @return				{@link Response} OK, CONFLICT or UNAUTHORIZED<br />
 	 * 						OK with the {@link ExperimentStatus} as entity
@@ -449,7 +469,8 @@ public class ExecutionService {
 	@GET
 	@Path(ServiceConfiguration.SVC_EXECUTE_STATUS)
 	@Produces(MediaType.APPLICATION_JSON)
-	public Response getScheduledExperimentStatus(@QueryParam(ServiceConfiguration.SVCP_EXECUTE_KEY) int experimentKey,
+	public Response getScheduledExperimentStatus(@QueryParam(ServiceConfiguration.SVCP_EXECUTE_KEY) long experimentKey,
+												 @QueryParam(ServiceConfiguration.SVCP_EXECUTE_SINCE) @DefaultValue("0") long since,
 									     		 @QueryParam(TOKEN) String usertoken) {
 		
 		if (usertoken == null) {
@@ -464,7 +485,7 @@ public class ExecutionService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
-		ExperimentStatus status = ExecutionScheduler.getInstance().getExperimentStatus(experimentKey);
+		ExperimentStatus status = ExecutionScheduler.getInstance().getExperimentStatus(experimentKey, since);
 		
 		// if the status is null, the key must be corrupt, because the table ScheduledExepriment
 		// and the QueuedExperiment is searched for the key.
@@ -476,6 +497,56 @@ public class ExecutionService {
 		return Response.ok(status).build();
 	}
 	
+	/**
+	 * Opens a stream of Server-Sent Events with the status of the experiment with the given key. The
+	 * current status is sent first, afterwards every new status message of the running experiment is
+	 * pushed as {@link ExperimentStatusBroadcaster#EVENT_STATUS} event, until the
+	 * {@link ExperimentStatusBroadcaster#EVENT_FINISHED} event closes the stream. The pushed
+	 * {@link ExperimentStatus}es only contain the new {@link MECLogEntry}. If the experiment is disabled
+	 * instead of being executed, the {@link ExperimentStatusBroadcaster#EVENT_CLOSED} event closes the
+	 * stream.
+	 * 
+	 * @param experimentKey	the experiment key
+	 * @param usertoken		the user identification
+	 * @return				{@link EventOutput} with the status events
+	 * @throws WebApplicationException	CONFLICT or UNAUTHORIZED
+	 */
+	@GET
+	@Path(ServiceConfiguration.SVC_EXECUTE_STATUS + "/" + ServiceConfiguration.SVC_EXECUTE_STREAM)
+	@Produces(SseFeature.SERVER_SENT_EVENTS)
+	public EventOutput streamScheduledExperimentStatus(@QueryParam(ServiceConfiguration.SVCP_EXECUTE_KEY) long experimentKey,
+													   @QueryParam(TOKEN) String usertoken) {
+		
+		if (usertoken == null) {
+			LOGGER.warn("Given usertoken is null.");
+			throw new WebApplicationException(Response.status(Status.CONFLICT).entity("Given usertoken is null.").build());
+		}
+		
+		Users u = ServicePersistenceProvider.getInstance().loadUser(usertoken);
+
+		if (u == null) {
+			LOGGER.info("Invalid token '{}'!", usertoken);
+			throw new WebApplicationException(Response.status(Status.UNAUTHORIZED).build());
+		}
+		
+		ExperimentStatus status = ExecutionScheduler.getInstance().getExperimentStatus(experimentKey);
+		
+		if (status == null) {
+			LOGGER.info("The experiment key is corrupt.");
+			throw new WebApplicationException(Response.status(Status.CONFLICT).entity("The experiment key is corrupt.").build());
+		}
+		
+		if (status.getAccountId() != u.getAccountID()) {
+			LOGGER.info("The experiment is not from the account, this user relates to. Perimission denied.");
+			throw new WebApplicationException(Response.status(Status.UNAUTHORIZED).build());
+		}
+		
+		EventOutput output = new EventOutput();
+		ExperimentStatusBroadcaster.getInstance().subscribe(experimentKey, output);
+		
+		return output;
+	}
+	
 	/**
 	 * Sets the status of the experiment with the given key to abort. The feature may take up a while,
 	 * as it's set via a configuration property, which is read in the {@link SoPeCoRunner}.
@@ -508,6 +579,52 @@ public class ExecutionService {
 		return Response.ok().build();
 	}
 	
+	/**
+	 * Sets the number of experiments, which are executed at the same time on the
+	 * MeasurementEnvironmentController with the given URL. The default is one experiment
+	 * at a time. Only increase the limit for controllers, which can handle several
+	 * experiment series in parallel.<br />
+	 * <br />
+	 * The controller is shared by all accounts scheduling experiments on it, so only a user
+	 * of the account owning all experiments scheduled on the controller can change the limit.
+	 * The limit is clamped to {@link ServiceConfiguration#EXECUTION_MAX_CONCURRENCY}.
+	 * 
+	 * @param url		the URL of the MeasurementEnvironmentController
+	 * @param slots		the number of concurrent executions, must be at least 1
+	 * @param usertoken	the user identification
+	 * @return			{@link Response} OK, CONFLICT or UNAUTHORIZED
+	 */
+	@PUT
+	@Path(ServiceConfiguration.SVC_EXECUTE_CONCURRENCY)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response setControllerConcurrency(@QueryParam(ServiceConfiguration.SVCP_EXECUTE_URL) String url,
+											 @QueryParam(ServiceConfiguration.SVCP_EXECUTE_SLOTS) int slots,
+									     	 @QueryParam(TOKEN) String usertoken) {
+		
+		if (url == null || usertoken == null || slots < 1) {
+			LOGGER.warn("One or more arguments are null/invalid.");
+			return Response.status(Status.CONFLICT).entity("One or more arguments are null/invalid.").build();
+		}
+		
+		Users u = ServicePersistenceProvider.getInstance().loadUser(usertoken);
+
+		if (u == null) {
+			LOGGER.info("Invalid token '{}'!", usertoken);
+			return Response.status(Status.UNAUTHORIZED).build();
+		}
+		
+		List<Long> accountIds = ServicePersistenceProvider.getInstance().loadAccountIdsByControllerUrl(url);
+		
+		if (accountIds.size() != 1 || accountIds.get(0).longValue() != u.getAccountID()) {
+			LOGGER.info("The controller '{}' is not owned by the account of the user.", url);
+			return Response.status(Status.UNAUTHORIZED).build();
+		}
+		
+		ExecutionQueueManager.setConcurrency(url, slots);
+
+		return Response.ok().build();
+	}
+	
 	/**
 	 * Removes the {@link ExperimentSeriesDefinition} with the given name from the list
 	 * of selected experiments in the {@link ScheduledExperiment} with the given ID.
@@ -683,10 +800,12 @@ public class ExecutionService {
 	}
 	
 	/**
-	 * Returns the <code>MECLog</code> for the given user and MECLog ID.
+	 * Returns the <code>MECLog</code> for the given user and MECLog ID. The log only contains
+	 * the {@link MECLogEntry}s with a sequence number greater than <code>since</code>.
 	 * 
 	 * @param usertoken the user identification
 	 * @param id 		the MECLog ID
+	 * @param since		the sequence number of the last known log entry, 0 for the whole log
 	 * @return 			{@link Response} OK or UNAUTHORIZED<br />
 	 * 					OK with {@link MECLog} entity (null possible)
 	 */
@@ -694,7 +813,8 @@ public class ExecutionService {
 	@Path(ServiceConfiguration.SVC_EXECUTE_MECLOG)
 	@Produces(MediaType.APPLICATION_JSON)
 	public Response getMECLog(@QueryParam(TOKEN) String usertoken,
-				    		  @QueryParam(ServiceConfiguration.SVCP_EXECUTE_ID) long id) {
+				    		  @QueryParam(ServiceConfiguration.SVCP_EXECUTE_ID) long id,
+				    		  @QueryParam(ServiceConfiguration.SVCP_EXECUTE_SINCE) @DefaultValue("0") long since) {
 		
 		if (usertoken == null) {
 			LOGGER.warn("One or more arguments are null/invalid.");
@@ -708,17 +828,90 @@ public class ExecutionService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
-		MECLog tmpMECLog = ServicePersistenceProvider.getInstance().loadMECLog(id);
+		if (!isOwnerOfExperiment(u, id)) {
+			LOGGER.info("The experiment with the key '{}' does not belong to the account of the user.", id);
+			return Response.status(Status.UNAUTHORIZED).build();
+		}
+		
+		MECLogWriter.getInstance().flush(id);
+		
+		MECLog tmpMECLog = ServicePersistenceProvider.getInstance().loadMECLog(id, since);
 
 		return Response.ok(tmpMECLog).build();
 	}
 	
+	/**
+	 * Returns the {@link MECLogEntry}s of the <code>MECLog</code> with the given ID as JSON array. The
+	 * entries are streamed from the database chunk by chunk, so even logs of long running experiments
+	 * are not held in memory as a whole.<br />
+	 * <br />
+	 * The entries can be restricted to the time window [<code>from</code>, <code>to</code>] and to errors
+	 * and exceptions. <code>offset</code> and <code>limit</code> page over the matching entries.
+	 * Only users of the account owning the experiment can read its log.
+	 * 
+	 * @param usertoken 	the user identification
+	 * @param id 			the MECLog ID
+	 * @param from			the earliest time of an entry, optional
+	 * @param to			the latest time of an entry, optional
+	 * @param errorsOnly	true, if only errors and exceptions are requested
+	 * @param offset		the number of matching entries to skip
+	 * @param limit			the maximum number of entries, negative for all
+	 * @return 				{@link Response} OK, CONFLICT or UNAUTHORIZED<br />
+	 * 						OK with the list of {@link MECLogEntry}s as entity
+	 */
+	@GET
+	@Path(ServiceConfiguration.SVC_EXECUTE_MECLOG + "/" + ServiceConfiguration.SVC_EXECUTE_ENTRIES)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getMECLogEntries(@QueryParam(TOKEN) String usertoken,
+									 @QueryParam(ServiceConfiguration.SVCP_EXECUTE_ID) long id,
+									 @QueryParam(ServiceConfiguration.SVCP_EXECUTE_FROM) Long from,
+									 @QueryParam(ServiceConfiguration.SVCP_EXECUTE_TO) Long to,
+									 @QueryParam(ServiceConfiguration.SVCP_EXECUTE_ERRORSONLY) @DefaultValue("false") boolean errorsOnly,
+									 @QueryParam(ServiceConfiguration.SVCP_EXECUTE_OFFSET) @DefaultValue("0") int offset,
+									 @QueryParam(ServiceConfiguration.SVCP_EXECUTE_LIMIT) @DefaultValue("-1") int limit) {
+		
+		if (usertoken == null) {
+			LOGGER.warn("One or more arguments are null/invalid.");
+			return Response.status(Status.CONFLICT).entity("One or more arguments are null/invalid.").build();
+		}
+		
+		Users u = ServicePersistenceProvider.getInstance().loadUser(usertoken);
+
+		if (u == null) {
+			LOGGER.info("Invalid token '{}'!", usertoken);
+			return Response.status(Status.UNAUTHORIZED).build();
+		}
+		
+		if (!isOwnerOfExperiment(u, id)) {
+			LOGGER.info("The experiment with the key '{}' does not belong to the account of the user.", id);
+			return Response.status(Status.UNAUTHORIZED).build();
+		}
+		
+		// the entries still buffered by the writer are streamed from the database, too
+		MECLogWriter.getInstance().flush(id);
+		
+		return Response.ok(new MECLogStreamingOutput(id, from, to, errorsOnly, offset, limit)).build();
+	}
+	
 	
 	
 	///////////////////////////////////////////////////////////////////////////////////////////////////////
 	//////////////////////////////////////////// HELPER ///////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	/**
+	 * Returns whether the experiment with the given key belongs to the account of the given user.
+	 * The key is the ID of the <code>MECLog</code> of the experiment.
+	 * 
+	 * @param user			the requesting user
+	 * @param experimentKey	the key of the experiment
+	 * @return				true, if the experiment exists and belongs to the account of the user
+	 */
+	private boolean isOwnerOfExperiment(Users user, long experimentKey) {
+		Long accountId = ExecutionScheduler.getInstance().getAccountIdOfExperiment(experimentKey);
+		return accountId != null && accountId.longValue() == user.getAccountID();
+	}
+	
 	/**
 	 * Returns whether the given {@link ScheduledExperiment} has a valid list of
 	 * scheduled experiments. The integrity test first tests if the list as such
@@ -26,8 +26,13 @@
  */
 package org.sopeco.service.rest;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -48,10 +53,14 @@ import org.sopeco.persistence.entities.definition.ParameterNamespace;
 import org.sopeco.persistence.entities.definition.ParameterRole;
 import org.sopeco.persistence.entities.definition.ScenarioDefinition;
 import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.helper.MeasurementEnvironmentIndex;
+import org.sopeco.service.helper.ScenarioDefinitionEdit;
 import org.sopeco.service.helper.ServiceStorageModul;
 import org.sopeco.service.helper.SimpleEntityFactory;
 import org.sopeco.service.persistence.ServicePersistenceProvider;
 import org.sopeco.service.persistence.entities.Users;
+import org.sopeco.service.rest.exchange.MEDOperation;
+import org.sopeco.service.rest.exchange.MEDOperationResult;
 
 /**
  * The <code>MeasurementEnvironmentDefinitionService</code> class provides RESTful services
@@ -216,7 +225,7 @@ public class MeasurementEnvironmentDefinitionService {
 	 * @param scenarioName	the name of the scenario
 	 * @param usertoken 	the user identification
 	 * @param path			the namespace path
-	 * @return				{@link Response} OK, UNAUTHORIZED or INTERNAL_SERVER_ERROR
+	 * @return				{@link Response} OK, CONFLICT or UNAUTHORIZED
 	 */
 	@PUT
 	@Path("{" + SCENARIONAME + "}" + "/"
@@ -239,24 +248,9 @@ public class MeasurementEnvironmentDefinitionService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
-		ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioName, usertoken);
-		
-		if (sd == null) {
-			LOGGER.info("No ScenarioDefinition with given name.", usertoken);
-			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name.").build();
-		}
+		MEDOperation operation = new MEDOperation(MEDOperation.Type.ADD_NAMESPACE, path);
 		
-		ParameterNamespace ns = addNamespaces(sd.getMeasurementEnvironmentDefinition().getRoot(), path);
-
-		if (ns == null) {
-			return Response.status(Status.INTERNAL_SERVER_ERROR).build();
-		}
-		
-		if (!ServiceStorageModul.storeScenarioDefition(usertoken, sd)) {
-			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot store results in database").build();
-		}
-
-		return Response.ok().build();
+		return applyOperation(scenarioName, usertoken, operation);
 	}
 	
 	/**
@@ -265,7 +259,7 @@ public class MeasurementEnvironmentDefinitionService {
 	 * @param scenarioName	the name of the scenario
 	 * @param usertoken 	the user identification
 	 * @param path			the namespace path
-	 * @return				{@link Response} OK, CONFLICT, UNAUTHORIZED or INTERNAL_SERVER_ERROR
+	 * @return				{@link Response} OK, CONFLICT or UNAUTHORIZED
 	 */
 	@DELETE
 	@Path("{" + SCENARIONAME + "}" + "/"
@@ -288,27 +282,9 @@ public class MeasurementEnvironmentDefinitionService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
-		ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioName, usertoken);
-		
-		if (sd == null) {
-			LOGGER.info("No ScenarioDefinition with given name.", usertoken);
-			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name.").build();
-		}
-		
-		ParameterNamespace ns = getNamespace(sd.getMeasurementEnvironmentDefinition().getRoot(), path);
-
-		if (ns == null) {
-			LOGGER.warn("Namespace with the path '{}' does not exist!", path);
-			return Response.status(Status.CONFLICT).entity("Namespace does not exist.").build();
-		}
-		
-		removeNamespace(ns);
+		MEDOperation operation = new MEDOperation(MEDOperation.Type.REMOVE_NAMESPACE, path);
 		
-		if (!ServiceStorageModul.storeScenarioDefition(usertoken, sd)) {
-			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot store results in database.").build();
-		}
-
-		return Response.ok().build();
+		return applyOperation(scenarioName, usertoken, operation);
 	}
 	
 	/**
@@ -318,7 +294,7 @@ public class MeasurementEnvironmentDefinitionService {
 	 * @param usertoken 	the user identification
 	 * @param path			the path to the namespace
 	 * @param newName		the new path to the namespace
-	 * @return				{@link Response} OK, CONFLICT, UNAUTHORIZED or INTERNAL_SERVER_ERROR
+	 * @return				{@link Response} OK, CONFLICT or UNAUTHORIZED
 	 */
 	@PUT
 	@Path("{" + SCENARIONAME + "}" + "/"
@@ -342,27 +318,10 @@ public class MeasurementEnvironmentDefinitionService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
-		ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioName, usertoken);
+		MEDOperation operation = new MEDOperation(MEDOperation.Type.RENAME_NAMESPACE, path);
+		operation.setNewName(newName);
 		
-		if (sd == null) {
-			LOGGER.info("No ScenarioDefinition with given name.", usertoken);
-			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name.").build();
-		}
-
-		ParameterNamespace ns = getNamespace(sd.getMeasurementEnvironmentDefinition().getRoot(), path);
-
-		if (ns == null) {
-			LOGGER.info("Namespace with the path '{}' does not exist!", path);
-			return Response.status(Status.CONFLICT).entity("Namespace does not exist.").build();
-		}
-		
-		renameNamespace(ns, newName);
-		
-		if (!ServiceStorageModul.storeScenarioDefition(usertoken, sd)) {
-			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot store results in database.").build();
-		}
-
-		return Response.ok().build();
+		return applyOperation(scenarioName, usertoken, operation);
 	}
 	
 	/**
@@ -375,7 +334,7 @@ public class MeasurementEnvironmentDefinitionService {
 	 * @param paramName	the parameter name
 	 * @param paramType	the parameter type
 	 * @param role		the {@link ParameterRole}
-	 * @return			{@link Response} OK, CONFLICT, UNAUTHORIZED or INTERNAL_SERVER_ERROR
+	 * @return			{@link Response} OK, CONFLICT or UNAUTHORIZED
 	 */
 	@PUT
 	@Path("{" + SCENARIONAME + "}" + "/"
@@ -403,29 +362,14 @@ public class MeasurementEnvironmentDefinitionService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
-		ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioName, usertoken);
+		LOGGER.debug("Try to add parameter with name '{}' to path '{}'", paramName, path);
 		
-		if (sd == null) {
-			LOGGER.info("No ScenarioDefinition with given name.", usertoken);
-			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name.").build();
-		}
+		MEDOperation operation = new MEDOperation(MEDOperation.Type.ADD_PARAMETER, path);
+		operation.setParamName(paramName);
+		operation.setParamType(paramType);
+		operation.setRole(role);
 		
-		LOGGER.debug("Try to add parameter with name '{}' to path '{}'", paramName, path);
-
-		ParameterNamespace ns = getNamespace(sd.getMeasurementEnvironmentDefinition().getRoot(), path);
-
-		if (ns == null) {
-			LOGGER.info("Namespace with the path '{}' does not exist!", path);
-			return Response.status(Status.CONFLICT).entity("Namespace does not exist.").build();
-		}
-
-		addParameter(paramName, paramType, role, ns);
-
-		if (!ServiceStorageModul.storeScenarioDefition(usertoken, sd)) {
-			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot store results in database.").build();
-		}
-
-		return Response.ok().build();
+		return applyOperation(scenarioName, usertoken, operation);
 	}
 	
 	/**
@@ -438,7 +382,7 @@ public class MeasurementEnvironmentDefinitionService {
 	 * @param paramNameNew	the new name of the parameter
 	 * @param paramType		the (new) parameter type
 	 * @param role			the (new) parameter role
-	 * @return				{@link Response} OK, CONFLICT, UNAUTHORIZED or INTERNAL_SERVER_ERROR
+	 * @return				{@link Response} OK, CONFLICT or UNAUTHORIZED
 	 */
 	@PUT
 	@Path("{" + SCENARIONAME + "}" + "/"
@@ -467,38 +411,15 @@ public class MeasurementEnvironmentDefinitionService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 
-		ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioName, usertoken);
-		
-		if (sd == null) {
-			LOGGER.info("No ScenarioDefinition with given name.", usertoken);
-			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name.").build();
-		}
-		
-		LOGGER.debug("Try to add parameter with name '{}' to path '{}'", paramName, path);
-
-		ParameterNamespace ns = getNamespace(sd.getMeasurementEnvironmentDefinition().getRoot(), path);
-
-		if (ns == null) {
-			LOGGER.info("Namespace with the path '{}' does not exist!", path);
-			return Response.status(Status.CONFLICT).entity("Namespace does not exist.").build();
-		}
-
-		ParameterDefinition parameter = getParameter(paramName, ns);
+		LOGGER.debug("Try to update parameter with name '{}' in path '{}'", paramName, path);
 		
-		if (parameter == null) {
-			LOGGER.info("Parameter '{}' does not exist in the namespace with path '{}'!", paramName, path);
-			return Response.status(Status.CONFLICT).entity("Parameter does not exist.").build();
-		}
+		MEDOperation operation = new MEDOperation(MEDOperation.Type.UPDATE_PARAMETER, path);
+		operation.setParamName(paramName);
+		operation.setNewParamName(paramNameNew);
+		operation.setParamType(paramType);
+		operation.setRole(role);
 		
-		parameter.setName(paramNameNew);
-		parameter.setRole(role);
-		parameter.setType(paramType);
-
-		if (!ServiceStorageModul.storeScenarioDefition(usertoken, sd)) {
-			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot store results in database.").build();
-		}
-
-		return Response.ok().build();
+		return applyOperation(scenarioName, usertoken, operation);
 	}
 	
 	/**
@@ -508,7 +429,7 @@ public class MeasurementEnvironmentDefinitionService {
 	 * @param usertoken the user identification
 	 * @param path		the path to the parameter
 	 * @param paramName	the name of the parameter
-	 * @return			{@link Response} OK, CONFLICT, UNAUTHORIZED or INTERNAL_SERVER_ERROR
+	 * @return			{@link Response} OK, CONFLICT or UNAUTHORIZED
 	 */
 	@DELETE
 	@Path("{" + SCENARIONAME + "}" + "/"
@@ -532,262 +453,228 @@ public class MeasurementEnvironmentDefinitionService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 
-		ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioName, usertoken);
+		LOGGER.debug("Try to remove parameter with name '{}' from path '{}'", paramName, path);
 		
-		if (sd == null) {
-			LOGGER.info("No ScenarioDefinition with given name.", usertoken);
-			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name.").build();
+		MEDOperation operation = new MEDOperation(MEDOperation.Type.REMOVE_PARAMETER, path);
+		operation.setParamName(paramName);
+		
+		return applyOperation(scenarioName, usertoken, operation);
+	}
+	
+	/**
+	 * Applies a batch of {@link MEDOperation}s to the {@link MeasurementEnvironmentDefinition} (MED)
+	 * of the given scenario. The scenario is loaded and stored only once for the whole batch.<br />
+	 * <br />
+	 * If the batch is atomic (default), nothing is stored when one operation fails and CONFLICT is
+	 * returned. Otherwise the successful operations are stored and the failed ones are skipped.
+	 * In both cases the result of each operation is returned.
+	 * 
+	 * @param scenarioName	the name of the scenario
+	 * @param usertoken 	the user identification
+	 * @param atomic		true, if all operations must succeed to store the MED
+	 * @param operations	the operations in the order they are applied
+	 * @return				{@link Response} OK, CONFLICT, UNAUTHORIZED or INTERNAL_SERVER_ERROR<br />
+	 * 						OK and CONFLICT with List<{@link MEDOperationResult}> as {@link Entity}
+	 */
+	@POST
+	@Path("{" + SCENARIONAME + "}" + "/"
+			+ ServiceConfiguration.SVC_MED_BATCH)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Consumes(MediaType.APPLICATION_JSON)
+	public Response applyOperations(@PathParam(SCENARIONAME) String scenarioName,
+									@QueryParam(TOKEN) String usertoken,
+									@QueryParam(ServiceConfiguration.SVCP_MED_ATOMIC) @DefaultValue("true") boolean atomic,
+									List<MEDOperation> operations) {
+		
+		if (scenarioName == null || usertoken == null || operations == null) {
+			LOGGER.warn("One or more parameters null.", usertoken);
+			return Response.status(Status.CONFLICT).entity("One or more parameters null.").build();
 		}
 		
-		LOGGER.debug("Try to add parameter with name '{}' to path '{}'", paramName, path);
+		Users u = ServicePersistenceProvider.getInstance().loadUser(usertoken);
 
-		ParameterNamespace ns = getNamespace(sd.getMeasurementEnvironmentDefinition().getRoot(), path);
+		if (u == null) {
+			LOGGER.info("Invalid token '{}'!", usertoken);
+			return Response.status(Status.UNAUTHORIZED).build();
+		}
 		
-		if (ns == null) {
-			LOGGER.info("Namespace with the path '{}' does not exist!", path);
-			return Response.status(Status.CONFLICT).entity("Namespace does not exist.").build();
+		BatchIndex batch = new BatchIndex();
+		List<ScenarioDefinitionEdit> edits = new ArrayList<ScenarioDefinitionEdit>(operations.size());
+		for (MEDOperation operation : operations) {
+			edits.add(createEdit(operation, batch));
 		}
-
-		if (!removeNamespace(ns)) {
-			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot remove namespace.").build();
+		
+		List<String> messages = ServiceStorageModul.editScenarioDefinition(scenarioName, usertoken, edits, atomic);
+		
+		if (messages == null) {
+			LOGGER.info("Cannot apply operations on ScenarioDefinition '{}'.", scenarioName);
+			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name or cannot store results in database.").build();
 		}
-
-		if (!ServiceStorageModul.storeScenarioDefition(usertoken, sd)) {
-			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot store results in database.").build();
+		
+		List<MEDOperationResult> results = new ArrayList<MEDOperationResult>(messages.size());
+		boolean failed = false;
+		
+		for (int i = 0; i < messages.size(); i++) {
+			results.add(new MEDOperationResult(i, messages.get(i)));
+			failed |= messages.get(i) != null;
 		}
-
-		return Response.ok().build();
+		
+		if (failed && atomic) {
+			return Response.status(Status.CONFLICT).entity(results).build();
+		}
+		
+		return Response.ok(results).build();
 	}
-	
 
 	//////////////////////////////////////////////////////////////////////////////////////////////////
 	///////////////////////////////////////// HELPER /////////////////////////////////////////////////
 	//////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	/**
-	 * Adds all namespaces of the given path if they aren't exist already. The
-	 * path will be seperated by the delimiter '/' and ARE be relative to the
-	 * root! So the root must be given in the path. E.g.: "/first/second/third"
-	 * will be afterwards "root/first/second/third".
+	 * Applies a single {@link MEDOperation} like an operation of a batch, so the namespaces and
+	 * parameters are looked up via the {@link MeasurementEnvironmentIndex}.
 	 * 
-	 * @param currentNamespace 	the current namespace
-	 * @param path 				nodes that will be added
-	 * @return 					the last namespace created with the path
+	 * @param scenarioName	the name of the scenario
+	 * @param usertoken 	the user identification
+	 * @param operation		the operation
+	 * @return				{@link Response} OK or CONFLICT
 	 */
-	private ParameterNamespace addNamespaces(ParameterNamespace currentNamespace, String path) {
-		LOGGER.info("adding new namespaces '" + path + "'");
-
-		String[] nodes = path.split(ServiceConfiguration.MEASUREMENTENVIRONMENT_DELIMITER);
-
-		if (nodes.length == 0) {
-			LOGGER.warn("no namespaces given");
-			return null;
+	private Response applyOperation(String scenarioName, String usertoken, MEDOperation operation) {
+		List<String> messages = ServiceStorageModul.editScenarioDefinition(scenarioName, usertoken,
+																		   Collections.singletonList(createEdit(operation, new BatchIndex())),
+																		   true);
+		
+		if (messages == null) {
+			LOGGER.info("Cannot apply operation on ScenarioDefinition '{}'.", scenarioName);
+			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name or cannot store results in database.").build();
 		}
-
-		for (int i = 1; i < nodes.length - 1; i++) {
-			
-			// check if a namespace in the current level with the same name already exists
-			boolean found = false;
-			
-			for (ParameterNamespace ns : currentNamespace.getChildren()) {
-				if (ns.getName().equals(nodes[i])) {
-					currentNamespace = ns;
-					found = true;
-					break;
-				}
-			}
-
-			if (found) {
-				continue;
-			}
-
-			currentNamespace = addNamespace(nodes[i], currentNamespace);
+		
+		if (messages.get(0) != null) {
+			LOGGER.info("Operation on ScenarioDefinition '{}' failed: {}", scenarioName, messages.get(0));
+			return Response.status(Status.CONFLICT).entity(messages.get(0)).build();
 		}
-
-		currentNamespace = addNamespace(nodes[nodes.length - 1], currentNamespace);
 		
-		return currentNamespace;
-	}
-
-	/**
-	 * Adds a new namespace to the target namespace.
-	 * 
-	 * @param namespaceName 	name of the new namespace
-	 * @param targetNamespace 	namespace which gets the new namespace
-	 * @return 					the new namespace
-	 */
-	private ParameterNamespace addNamespace(String namespaceName, ParameterNamespace targetNamespace) {
-		LOGGER.info("Adding new namespace '" + namespaceName + "' to parent '" + targetNamespace.getFullName() + "'.");
-
-		// the namespaces are stored in a tree 
-		ParameterNamespace newNamespace = SimpleEntityFactory.createNamespace(namespaceName);
-		newNamespace.setParent(targetNamespace);
-		targetNamespace.getChildren().add(newNamespace);
-
-		return newNamespace;
+		return Response.ok().build();
 	}
 	
 	/**
-	 * Returns the namespace specified by the path. The path will be seperated
-	 * by the global delimiter (normally '/') and every node representing a namespace.
-	 * <br />
-	 * <br />
-	 * The given path can start with name of the root namespace (default "root",
-	 * but don't need to.
+	 * Creates the {@link ScenarioDefinitionEdit} to apply the given {@link MEDOperation}. The edit
+	 * checks the operation before changing the MED, so a failed edit leaves the MED unchanged.
 	 * 
-	 * @param rootNamespace	the root of the {@link ParameterNamespace} of the {@link ScenarioDefinition}
-	 * @param path 			path to the namespace
-	 * @return 				searched namespace, null if namespace not found
+	 * @param operation	the operation
+	 * @param batch		the index shared by all operations of the batch
+	 * @return			the edit for the operation
 	 */
-	private ParameterNamespace getNamespace(ParameterNamespace rootNamespace, String path) {
-		String delimiter = ServiceConfiguration.MEASUREMENTENVIRONMENT_DELIMITER;
-		
-		LOGGER.info("Getting namespace by path '" + path + "'");
-
-		// shorten a beginning "/"
-		if (path.length() > 1 && path.substring(0, 1).equals(delimiter)) {
-			path = path.substring(1);
-		}
-
-		String[] nodes = path.split(delimiter);
-
-		if (nodes.length <= 0) {
-			LOGGER.warn("No nodes in path array.");
-			return null;
-		}
-
-		int startIndex;
-
-		if (nodes.length == 1 && nodes[0].equals(rootNamespace.getName())) {
-			LOGGER.debug("Namespace is the root namespace!");
-			return rootNamespace;
-		} else if (nodes[0].equals(rootNamespace.getName())) {
-			startIndex = 1;
-		} else {
-			startIndex = 0;
-		}
-
-		ParameterNamespace currentNamespace = rootNamespace;
-
-		// depth search for the given path in the namespace tree
-		for (int i = startIndex; i < nodes.length; i++) {
+	private ScenarioDefinitionEdit createEdit(final MEDOperation operation, final BatchIndex batch) {
+		return new ScenarioDefinitionEdit() {
 			
-			if (currentNamespace.getChildren().size() <= 0) {
-				return null;
-			}
-
-			boolean found = false;
-			for (ParameterNamespace ns : currentNamespace.getChildren()) {
-				if (ns.getName().equals(nodes[i])) {
-					currentNamespace = ns;
-					found = true;
-					break;
+			@Override
+			public String apply(ScenarioDefinition definition) {
+				
+				if (operation == null || operation.getType() == null || operation.getPath() == null) {
+					return "Operation type or path is missing.";
+				}
+				
+				if (definition.getMeasurementEnvironmentDefinition() == null
+						|| definition.getMeasurementEnvironmentDefinition().getRoot() == null) {
+					return "MED has no root namespace set.";
+				}
+				
+				MeasurementEnvironmentIndex index = batch.get(definition);
+				
+				if (operation.getType() == MEDOperation.Type.ADD_NAMESPACE) {
+					return index.addNamespaces(operation.getPath()) == null ? "Cannot add namespace." : null;
+				}
+				
+				ParameterNamespace ns = index.getNamespace(operation.getPath());
+				
+				if (ns == null) {
+					return "Namespace '" + operation.getPath() + "' does not exist.";
+				}
+				
+				switch (operation.getType()) {
+				
+				case REMOVE_NAMESPACE:
+					return index.removeNamespace(ns) ? null : "Cannot remove namespace.";
+					
+				case RENAME_NAMESPACE:
+					if (operation.getNewName() == null) {
+						return "New namespace name is missing.";
+					}
+					return index.renameNamespace(ns, operation.getNewName()) ? null : "Cannot rename namespace.";
+					
+				case ADD_PARAMETER:
+					if (operation.getParamName() == null || operation.getParamType() == null || operation.getRole() == null) {
+						return "Parameter name, type or role is missing.";
+					}
+					
+					if (index.getParameter(operation.getPath(), operation.getParamName()) != null) {
+						return "Parameter '" + operation.getParamName() + "' already exists.";
+					}
+					
+					index.addParameter(ns, operation.getParamName(), operation.getParamType(), operation.getRole());
+					return null;
+					
+				case UPDATE_PARAMETER:
+					if (operation.getParamName() == null || operation.getNewParamName() == null
+							|| operation.getParamType() == null || operation.getRole() == null) {
+						return "Parameter name, new name, type or role is missing.";
+					}
+					
+					ParameterDefinition parameter = index.getParameter(operation.getPath(), operation.getParamName());
+					
+					if (parameter == null) {
+						return "Parameter '" + operation.getParamName() + "' does not exist.";
+					}
+					
+					if (!operation.getNewParamName().equals(operation.getParamName())
+							&& index.getParameter(operation.getPath(), operation.getNewParamName()) != null) {
+						return "Parameter '" + operation.getNewParamName() + "' already exists.";
+					}
+					
+					index.updateParameter(parameter, operation.getNewParamName(), operation.getParamType(), operation.getRole());
+					return null;
+					
+				case REMOVE_PARAMETER:
+					if (operation.getParamName() == null) {
+						return "Parameter name is missing.";
+					}
+					
+					ParameterDefinition removed = index.getParameter(operation.getPath(), operation.getParamName());
+					
+					if (removed == null || !index.removeParameter(removed)) {
+						return "Parameter '" + operation.getParamName() + "' does not exist.";
+					}
+					
+					return null;
+					
+				default:
+					return "Unknown operation type.";
+					
 				}
-
-			}
-
-			if (found) {
-				continue;
 			}
-
-			return null;
-		}
-
-		LOGGER.info("Found namespace '" + currentNamespace.getFullName() + "'.");
-
-		return currentNamespace;
-	}
-	
-	/**
-	 * Removes a namespace and all children from the {@code MeasurementEnvironmentDefinition}.
-	 * 
-	 * @param namespace namespace which will be removed
-	 * @return 			true, if the removal was succesful
-	 */
-	private boolean removeNamespace(ParameterNamespace namespace) {
-		return removeNamespace(namespace, false);
+			
+		};
 	}
 	
 	/**
-	 * Removes a namespace from the {@code MeasurementEnvironmentDefinition}.
-	 * The appended children will be sticked to the parent {@code ParameterNamespace} for the given
-	 * namespace.
-	 * 
-	 * @param namespace namespace which will be removed
-	 * @param appendChildrenToParent true, if children namespaces are attached to the parent
-	 * @return true, if the removal was succesful
+	 * The {@link MeasurementEnvironmentIndex} of a batch. The index is built once for the
+	 * loaded definition and kept up to date by the operations of the batch.
 	 */
-	private boolean removeNamespace(ParameterNamespace namespace, boolean appendChildrenToParent) {
-		LOGGER.debug("removing namespace '" + namespace.getFullName() + "'"
-				     + "// appendChildrenToParent: " + appendChildrenToParent);
-
-		if (namespace.getName().equals(ServiceConfiguration.MEASUREMENTENVIRONMENT_ROOTNAME) || namespace.getParent() == null) {
-			LOGGER.warn("Operation forbidden: Root namespace can not be removed.");
-			return false;
-		}
-
-		if (appendChildrenToParent) {
-			for (ParameterNamespace child : namespace.getChildren()) {
-				child.setParent(namespace.getParent());
-				namespace.getParent().getChildren().add(child);
+	private static final class BatchIndex {
+		
+		private ScenarioDefinition definition;
+		
+		private MeasurementEnvironmentIndex index;
+		
+		private MeasurementEnvironmentIndex get(ScenarioDefinition scenarioDefinition) {
+			if (definition != scenarioDefinition) {
+				definition 	= scenarioDefinition;
+				index 		= new MeasurementEnvironmentIndex(scenarioDefinition.getMeasurementEnvironmentDefinition());
 			}
-			namespace.getChildren().clear();
-		}
-
-		namespace.getParent().getChildren().remove(namespace);
-
-		return true;
-	}
-	
-	/**
-	 * Renames the given namespace to the new passed name.
-	 * 
-	 * @param namespace the namespace to rename
-	 * @param newName the new name for the namespace
-	 */
-	private void renameNamespace(ParameterNamespace namespace, String newName) {
-		namespace.setName(newName);
-	}
-	
-	/**
-	 * Adding a new parameter to the given namespace.
-	 * 
-	 * @param name 		name of the new parameter
-	 * @param type 		type of the new parameter
-	 * @param role 		role of the new parameter
-	 * @param namespace namespace where the parameter will be added
-	 * @return 			the ParameterDefinition created with the given parameter
-	 */
-	private ParameterDefinition addParameter(String name, String type, ParameterRole role, ParameterNamespace namespace) {
-		if (namespace == null) {
-			LOGGER.warn("The given namespace is NULL.");
-			return null;
+			return index;
 		}
 		
-		LOGGER.info("Adding new parameter '" + name + "' to namespace '" + namespace.getFullName() + "'.");
-
-		ParameterDefinition newParameter = SimpleEntityFactory.createParameterDefinition(name, type, role);
-
-		newParameter.setNamespace(namespace);
-		namespace.getParameters().add(newParameter);
-
-		return newParameter;
 	}
 	
-	/**
-	 * Search and return the parameter with the given name. The return type is
-	 * the {@code ParameterDefinition}.
-	 * 
-	 * @param name the parameter name
-	 * @param namespace the namespace in which the parameter is searched
-	 * @return the {@code ParameterDefinition}, null if search failed
-	 */
-	public ParameterDefinition getParameter(String name, ParameterNamespace namespace) {
-		for (ParameterDefinition parameter : namespace.getParameters()) {
-			if (parameter.getName().equals(name)) {
-				return parameter;
-			}
-		}
-		return null;
-	}
 }
@@ -130,6 +130,8 @@ public class MeasurementSpecificationService {
 		} catch (DataNotFoundException e) {
 			LOGGER.warn("Cannot fetch ScenarioDefinition from account database.");
 			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot fetch ScenarioDefinition from account database.").build();
+		} finally {
+			dbCon.closeProvider();
 		}
 		
 	}
@@ -181,6 +183,8 @@ public class MeasurementSpecificationService {
 		} catch (DataNotFoundException e) {
 			LOGGER.warn("Cannot fetch ScenarioDefinition from account database.");
 			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot fetch ScenarioDefinition from account database.").build();
+		} finally {
+			dbCon.closeProvider();
 		}
 		
 	}
@@ -522,6 +526,10 @@ public class MeasurementSpecificationService {
 			
 			LOGGER.info("Cannot find a ScenarioDefition with the given name in the database.");
 			
+		} finally {
+			
+			dbCon.closeProvider();
+			
 		}
 		
 		if (sd != null) {
@@ -26,7 +26,13 @@
  */
 package org.sopeco.service.rest;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
@@ -37,6 +43,7 @@ import javax.ws.rs.core.Response.Status;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sopeco.persistence.IPersistenceProvider;
 import org.sopeco.persistence.dataset.DataSetAggregated;
 import org.sopeco.persistence.entities.ScenarioInstance;
 import org.sopeco.persistence.exceptions.DataNotFoundException;
@@ -45,6 +52,9 @@ import org.sopeco.service.persistence.ServicePersistenceProvider;
 import org.sopeco.service.persistence.AccountPersistenceProvider;
 import org.sopeco.service.persistence.entities.Account;
 import org.sopeco.service.rest.exchange.ExperimentSeriesRunDecorator;
+import org.sopeco.service.rest.json.Compressed;
+import org.sopeco.service.rest.json.DataSetAggregatedCodec;
+import org.sopeco.service.rest.json.DataSetAggregatedStreamingOutput;
 
 /**
  * The {@link ResultService} class provides RESTful services to access results in SoPeCo.
@@ -66,7 +76,10 @@ public class ResultService {
 	 * {@link ExperimentSeriesRunDecorator} would need more information about logging in etc. This is overhead
 	 * and therefor the log in check disabled here.<br />
 	 * But to get the correct {@link ServicePersistenceProvider}, we need at least an account ID. And that must
-	 * be valid, otherwise the call is going to fail (CONFLICT).
+	 * be valid, otherwise the call is going to fail (CONFLICT).<br />
+	 * <br />
+	 * The dataset is returned as JSON, or in the columnar binary format of the {@link DataSetAggregatedCodec},
+	 * if the client accepts {@link ServiceConfiguration#MEDIATYPE_DATASET_COLUMNAR}.
 	 * 
 	 * @param accountID	the account ID
 	 * @param dataSetID	the dataSet ID
@@ -75,7 +88,7 @@ public class ResultService {
 	 */
 	@GET
 	@Path(ServiceConfiguration.SVC_RESULT_DATASETAGGREGATED)
-	@Produces(MediaType.APPLICATION_JSON)
+	@Produces({ MediaType.APPLICATION_JSON, ServiceConfiguration.MEDIATYPE_DATASET_COLUMNAR + ";qs=0.5" })
 	public Response getDataSetAggregated(@QueryParam(ServiceConfiguration.SVCP_RESULT_ACCOUNTID) String accountID,
 										 @QueryParam(ServiceConfiguration.SVCP_RESULT_DATASETID) String dataSetID) {
 		
@@ -97,9 +110,15 @@ public class ResultService {
 			return Response.status(Status.CONFLICT).entity("The given account ID is invalid.").build();
 		}
 		
+		IPersistenceProvider provider = AccountPersistenceProvider.createPersistenceProvider(account);
+		
+		if (provider == null) {
+			return Response.status(Status.CONFLICT).entity("Cannot connect to the account database.").build();
+		}
+		
 		try {
 			
-			DataSetAggregated dsa = AccountPersistenceProvider.createPersistenceProvider(account).loadDataSet(dataSetID);
+			DataSetAggregated dsa = provider.loadDataSet(dataSetID);
 			return Response.ok(dsa).build();
 			
 		} catch (DataNotFoundException e) {
@@ -107,7 +126,64 @@ public class ResultService {
 			LOGGER.info("Cannot find a dataset with id '{}' for accountID '{}'.", dataSetID, accountID);
 			return Response.status(Status.CONFLICT).entity("Cannot find a dataset with id " + dataSetID + " for accountID " + accountID + ".").build();
 			
+		} finally {
+			
+			provider.closeProvider();
+			
+		}
+	}
+	
+	/**
+	 * Returns the {@link DataSetAggregated}s to all the given dataSetIDs for an Account (identified via the
+	 * given accountID). See {@link #getDataSetAggregated(String, String)} why no token is used.<br />
+	 * <br />
+	 * The account and its database connection are resolved once for all datasets. The datasets are streamed
+	 * as one JSON object with the dataSetIDs as keys, each one is loaded right before it's written. A dataset,
+	 * which cannot be found, has the value <code>null</code>. If the client accepts gzip, the response
+	 * is compressed.
+	 * 
+	 * @param accountID		the account ID
+	 * @param dataSetIDs	the dataSet IDs
+	 * @return				{@link Response} OK or CONFLICT<br />
+	 * 						OK with Map<String, {@link DataSetAggregated}> as {@link Entity}
+	 */
+	@POST
+	@Path(ServiceConfiguration.SVC_RESULT_DATASETAGGREGATED + "/"
+		  + ServiceConfiguration.SVC_RESULT_BATCH)
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Compressed
+	public Response getDataSetAggregatedBatch(@QueryParam(ServiceConfiguration.SVCP_RESULT_ACCOUNTID) String accountID,
+											  List<String> dataSetIDs) {
+		
+		if (accountID == null || dataSetIDs == null) {
+			return Response.status(Status.CONFLICT).entity("One or more arguments is null.").build();
 		}
+		
+		long accountIDlong = -1L;
+		
+		try {
+			accountIDlong = Long.parseLong(accountID);
+		} catch (NumberFormatException nfe) {
+			return Response.status(Status.CONFLICT).entity("Account ID not valid long value.").build();
+		}
+		
+		Account account = ServicePersistenceProvider.getInstance().loadAccount(accountIDlong);
+		
+		if (account == null) {
+			return Response.status(Status.CONFLICT).entity("The given account ID is invalid.").build();
+		}
+		
+		IPersistenceProvider provider = AccountPersistenceProvider.createPersistenceProvider(account);
+		
+		if (provider == null) {
+			return Response.status(Status.CONFLICT).entity("Cannot connect to the account database.").build();
+		}
+		
+		// every dataset is written once, even if requested several times
+		List<String> uniqueIDs = new ArrayList<String>(new LinkedHashSet<String>(dataSetIDs));
+		
+		return Response.ok(new DataSetAggregatedStreamingOutput(provider, uniqueIDs)).build();
 	}
 	
 }
@@ -31,6 +31,7 @@ import java.util.List;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
@@ -40,8 +41,12 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 
 import org.slf4j.Logger;
@@ -60,12 +65,14 @@ import org.sopeco.persistence.entities.definition.MeasurementSpecification;
 import org.sopeco.persistence.entities.definition.ScenarioDefinition;
 import org.sopeco.persistence.exceptions.DataNotFoundException;
 import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.helper.ScenarioInstanceQuery;
 import org.sopeco.service.helper.ServiceStorageModul;
 import org.sopeco.service.helper.SimpleEntityFactory;
 import org.sopeco.service.persistence.ServicePersistenceProvider;
 import org.sopeco.service.persistence.AccountPersistenceProvider;
 import org.sopeco.service.persistence.entities.Users;
-import org.sopeco.service.rest.exchange.ExperimentSeriesRunDecorator;
+import org.sopeco.service.rest.exchange.ScenarioInstanceSummary;
+import org.sopeco.service.rest.json.ScenarioInstanceStreamingOutput;
 
 /**
  * The {@link ScenarioService} class provides RESTful services to handle scenarios in SoPeCo.
@@ -265,6 +272,8 @@ public class ScenarioService {
 		} catch (DataNotFoundException e) {
 			LOGGER.info("Fetching scenario list from database failed.");
 			return Response.status(Status.INTERNAL_SERVER_ERROR).build();
+		} finally {
+			dbCon.closeProvider();
 		}
 		
 		String[] retValues = new String[scenarioList.size()];
@@ -273,8 +282,6 @@ public class ScenarioService {
 			ScenarioDefinition sd = scenarioList.get(i);
 			retValues[i] = sd.getScenarioName();
 		}
-		
-		dbCon.closeProvider();
 
 		return Response.ok(retValues).build();
 	}
@@ -340,6 +347,8 @@ public class ScenarioService {
 			}
 			
 			dbCon.remove(definition);
+			
+			ServiceStorageModul.invalidateScenarioDefinition(scenarioname, usertoken);
 
 			LOGGER.debug("Removal of ScenarioDefinition with name '{}' succeeded.", scenarioname);
 			
@@ -390,15 +399,15 @@ public class ScenarioService {
 			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot fetch database connection with given token.").build();
 		}
 		
-		ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioDefinitionName, usertoken);
-		
-		if (sd == null) {
-			LOGGER.info("ScenarioDefinition name does not match as ScenarioDefintiion.");
-			return Response.status(Status.CONFLICT).entity("ScenarioDefinition name does not match as ScenarioDefintiion.").build();
-		}
-		
 		try {
 			
+			ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioDefinitionName, usertoken);
+			
+			if (sd == null) {
+				LOGGER.info("ScenarioDefinition name does not match as ScenarioDefintiion.");
+				return Response.status(Status.CONFLICT).entity("ScenarioDefinition name does not match as ScenarioDefintiion.").build();
+			}
+			
 			for (ScenarioInstance instance : dbCon.loadScenarioInstances(sd.getScenarioName())) {
 					
 				String changeHandlingMode = Configuration.getSessionSingleton(usertoken).getPropertyAsStr(
@@ -415,10 +424,10 @@ public class ScenarioService {
 		} catch (DataNotFoundException e) {
 			LOGGER.warn("Problem loading available scenario instances!", usertoken);
 			return Response.status(Status.INTERNAL_SERVER_ERROR).build();
+		} finally {
+			dbCon.closeProvider();
 		}
 		
-		dbCon.closeProvider();
-		
 		return Response.ok().build();
 	}
 	
@@ -519,11 +528,15 @@ public class ScenarioService {
 	}
 	
 	/**
-	 * Returns the {@link ScenarioInstance} identified with the given name and url.
+	 * Returns the {@link ScenarioInstance} identified with the given name and url.<br />
+	 * The instance is streamed into the response. The offset and the limit page the
+	 * {@link ExperimentSeriesRun}s of each {@link ExperimentSeries}, by default all runs are returned.
 	 * 
 	 * @param usertoken the token to identify the user
 	 * @param name		the name of the {@link ScenarioInstance}
 	 * @param url		the URL of the MeasurementEnvironmentController
+	 * @param offset	the number of runs per series to skip
+	 * @param limit		the maximum number of runs per series, negative for all runs
 	 * @return			{@link Response} OK, UNAUTHORIZED or CONFLICT<br />
 	 * 					OK with {@link ScenarioInstance} as {@link Entity} (null possible)
 	 */
@@ -533,7 +546,9 @@ public class ScenarioService {
 	public Response getScenarioInstance(@HeaderParam("host") String host,
 										@QueryParam(TOKEN) String usertoken,
 										@QueryParam(ServiceConfiguration.SVCP_SCENARIO_NAME) String name,
-										@QueryParam(ServiceConfiguration.SVCP_SCENARIO_URL) String url) {
+										@QueryParam(ServiceConfiguration.SVCP_SCENARIO_URL) String url,
+										@QueryParam(ServiceConfiguration.SVCP_SCENARIO_OFFSET) @DefaultValue("0") int offset,
+										@QueryParam(ServiceConfiguration.SVCP_SCENARIO_LIMIT) @DefaultValue("-1") int limit) {
 			
 		if (host == null || usertoken == null || name == null || url == null) {
 			return Response.status(Status.CONFLICT).entity("One or more arguments are null.").build();
@@ -546,35 +561,66 @@ public class ScenarioService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
+		IPersistenceProvider dbCon = AccountPersistenceProvider.createPersistenceProvider(usertoken);
+		
+		if (dbCon == null) {
+			LOGGER.info("Cannot fetch database connection with given token.");
+			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot fetch database connection with given token.").build();
+		}
+		
 		try {
 			
-			ScenarioInstance tmpSI = AccountPersistenceProvider.createPersistenceProvider(usertoken).loadScenarioInstance(name, url);
-			decoratedExperimentSeriesRuns(tmpSI, u.getAccountID(), host);
-			return Response.ok(tmpSI).build();
+			ScenarioInstance tmpSI = dbCon.loadScenarioInstance(name, url);
+			return Response.ok(ScenarioInstanceStreamingOutput.forInstance(tmpSI, u.getAccountID(), host, offset, limit)).build();
 			
 		} catch (DataNotFoundException e) {
 			
 			LOGGER.info("Cannot find a scenario definition with name '{}' and URL '{}'.", name, url);
 			return Response.status(Status.CONFLICT).entity("Cannot find a scenario definition with given name and URL.").build();
 			
+		} finally {
+			
+			dbCon.closeProvider();
+			
 		}
 	}
 	
 	/**
 	 * Returns all the {@link ScenarioInstance}s to the scenario with the given name, related to the account
-	 * with the given token.
+	 * with the given token.<br />
+	 * The instances are streamed into the response. The offset and the limit page the list
+	 * of instances, by default all instances are returned. If more instances are left, the
+	 * cursor for the next page is returned in the header
+	 * {@link ServiceConfiguration#SVCH_SCENARIO_NEXTCURSOR}.<br />
+	 * <br />
+	 * With a time range, only the {@link ExperimentSeriesRun}s in the range are returned and
+	 * instances without such runs are skipped. If the summary is requested,
+	 * {@link ScenarioInstanceSummary}s are returned instead of the instances.
 	 * 
 	 * @param usertoken the token to identify the user
 	 * @param name		the name of the {@link ScenarioInstance}
+	 * @param cursor	the cursor of the previous page, optional
+	 * @param from		the earliest run timestamp, optional
+	 * @param to		the latest run timestamp, optional
+	 * @param summary	true, to only return {@link ScenarioInstanceSummary}s
+	 * @param offset	the number of instances to skip
+	 * @param limit		the maximum number of instances, negative for all instances
 	 * @return			{@link Response} OK, UNAUTHORIZED or CONFLICT<br />
-	 * 					OK with List<{@link ScenarioInstance}s> as {@link Entity}
+	 * 					OK with List<{@link ScenarioInstance}s> or List<{@link ScenarioInstanceSummary}>
+	 * 					as {@link Entity}
 	 */
 	@GET
 	@Path(ServiceConfiguration.SVC_SCENARIO_INSTANCES)
 	@Produces(MediaType.APPLICATION_JSON)
 	public Response getScenarioInstances(@HeaderParam("host") String host,
 										 @QueryParam(TOKEN) String usertoken,
-										 @QueryParam(ServiceConfiguration.SVCP_SCENARIO_NAME) String name) {
+										 @QueryParam(ServiceConfiguration.SVCP_SCENARIO_NAME) String name,
+										 @QueryParam(ServiceConfiguration.SVCP_SCENARIO_CURSOR) String cursor,
+										 @QueryParam(ServiceConfiguration.SVCP_SCENARIO_FROM) Long from,
+										 @QueryParam(ServiceConfiguration.SVCP_SCENARIO_TO) Long to,
+										 @QueryParam(ServiceConfiguration.SVCP_SCENARIO_SUMMARY) @DefaultValue("false") boolean summary,
+										 @QueryParam(ServiceConfiguration.SVCP_SCENARIO_OFFSET) @DefaultValue("0") int offset,
+										 @QueryParam(ServiceConfiguration.SVCP_SCENARIO_LIMIT) @DefaultValue("-1") int limit) {
 		
 		if (host == null || usertoken == null || name == null) {
 			return Response.status(Status.CONFLICT).entity("One or more arguments are null.").build();
@@ -587,38 +633,81 @@ public class ScenarioService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
+		ScenarioInstanceQuery query;
+		
+		try {
+			query = new ScenarioInstanceQuery(cursor, from, to, offset, limit);
+		} catch (IllegalArgumentException e) {
+			LOGGER.info("Invalid cursor '{}'.", cursor);
+			return Response.status(Status.CONFLICT).entity("Invalid cursor.").build();
+		}
+		
+		IPersistenceProvider dbCon = AccountPersistenceProvider.createPersistenceProvider(usertoken);
+		
+		if (dbCon == null) {
+			LOGGER.info("Cannot fetch database connection with given token.");
+			return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Cannot fetch database connection with given token.").build();
+		}
+		
 		try {
 			
-			List<ScenarioInstance> listSI = AccountPersistenceProvider.createPersistenceProvider(usertoken).loadScenarioInstances(name);
+			List<ScenarioInstance> listSI = dbCon.loadScenarioInstances(name);
+			List<ScenarioInstance> page   = query.apply(listSI);
 			
-			for (ScenarioInstance si : listSI) {
-				decoratedExperimentSeriesRuns(si, u.getAccountID(), host);
+			ResponseBuilder builder;
+			
+			if (summary) {
+				
+				List<ScenarioInstanceSummary> summaries = new ArrayList<ScenarioInstanceSummary>();
+				
+				for (ScenarioInstance si : page) {
+					summaries.add(new ScenarioInstanceSummary(si));
+				}
+				
+				builder = Response.ok(summaries);
+				
+			} else {
+				
+				builder = Response.ok(ScenarioInstanceStreamingOutput.forInstances(page, u.getAccountID(), host, 0, -1));
+				
+			}
+			
+			if (query.getNextCursor() != null) {
+				builder.header(ServiceConfiguration.SVCH_SCENARIO_NEXTCURSOR, query.getNextCursor());
 			}
 			
-			return Response.ok(listSI).build();
+			return builder.build();
 			
 		} catch (DataNotFoundException e) {
 			
 			LOGGER.info("Cannot find a scenario definition with name '{}'.", name);
 			return Response.status(Status.CONFLICT).entity("Cannot find a scenario definition with given name.").build();
 			
+		} finally {
+			
+			dbCon.closeProvider();
+			
 		}
 	}
 	
 	/**
-	 * Returns the {@link ScenarioDefinition} the current user has.
+	 * Returns the {@link ScenarioDefinition} the current user has.<br />
+	 * The response carries an ETag with the version of the definition. If the client passes
+	 * the current version in the <code>If-None-Match</code> header, NOT_MODIFIED is returned
+	 * without the definition.
 	 * 
 	 * @param usertoken the token to identify the user
 	 * @param name		the name of the {@link ScenarioInstance}
-	 * @param url		the URL of the MeasurementEnvironmentController
-	 * @return			{@link Response} OK or UNAUTHORIZED<br />
+	 * @param request	the request to evaluate the <code>If-None-Match</code> header
+	 * @return			{@link Response} OK, NOT_MODIFIED or UNAUTHORIZED<br />
 	 * 					OK with {@link ScenarioDefinition} as {@link Entity} (null possible)
 	 */
 	@GET
 	@Path("{" + NAME + "}/" + ServiceConfiguration.SVC_SCENARIO_DEFINITON)
 	@Produces(MediaType.APPLICATION_JSON)
 	public Response getScenarioDefinition(@QueryParam(TOKEN) String usertoken,
-										  @PathParam(NAME) String scenarioName) {
+										  @PathParam(NAME) String scenarioName,
+										  @Context Request request) {
 			
 		if (usertoken == null || scenarioName == null) {
 			return Response.status(Status.CONFLICT).entity("One or more arguments are null.").build();
@@ -631,6 +720,20 @@ public class ScenarioService {
 			return Response.status(Status.UNAUTHORIZED).build();
 		}
 		
+		EntityTag tag = null;
+		long version = ServiceStorageModul.getScenarioDefinitionVersion(scenarioName, usertoken);
+		
+		if (version >= 0) {
+			
+			tag = new EntityTag(Long.toString(version));
+			ResponseBuilder notModified = request.evaluatePreconditions(tag);
+			
+			if (notModified != null) {
+				return notModified.build();
+			}
+			
+		}
+		
 		ScenarioDefinition sd = ServiceStorageModul.loadScenarioDefinition(scenarioName, usertoken);
 		
 		if (sd == null) {
@@ -638,7 +741,7 @@ public class ScenarioService {
 			return Response.status(Status.CONFLICT).entity("No ScenarioDefinition with given name in database!").build();
 		}
 		
-		return Response.ok(sd).build();
+		return Response.ok(sd).tag(tag).build();
 	}
 	
 	//////////////////////////////////////////////////////////////////////////////////////////////////
@@ -660,58 +763,31 @@ public class ScenarioService {
 		
 		String scenarioDefinitionXML = writer.convertToXMLString(scenarioInstance.getScenarioDefinition());
 		
-		for (ExperimentSeries es : scenarioInstance.getExperimentSeriesList()) {
-			
-			for (ExperimentSeriesRun run : es.getExperimentSeriesRuns()) {
-				ArchiveEntry entry = new ArchiveEntry(dbCon,
-													  run.getTimestamp(),
-												  	  scenarioInstance.getName(),
-												  	  scenarioInstance.getMeasurementEnvironmentUrl(),
-												  	  es.getName(),
-												  	  run.getLabel(),
-												  	  scenarioDefinitionXML,
-												  	  run.getDatasetId());
+		try {
+			
+			for (ExperimentSeries es : scenarioInstance.getExperimentSeriesList()) {
+				
+				for (ExperimentSeriesRun run : es.getExperimentSeriesRuns()) {
+					ArchiveEntry entry = new ArchiveEntry(dbCon,
+														  run.getTimestamp(),
+													  	  scenarioInstance.getName(),
+													  	  scenarioInstance.getMeasurementEnvironmentUrl(),
+													  	  es.getName(),
+													  	  run.getLabel(),
+													  	  scenarioDefinitionXML,
+													  	  run.getDatasetId());
+					
+					dbCon.store(entry);
+				}
 				
-				dbCon.store(entry);
 			}
 			
+		} finally {
+			
+			dbCon.closeProvider();
+			
 		}
 		
 	}
 	
-	/**
-	 * Converts all the {@link ExperimentSeriesRun}s in the given {@link ScenarioInstance}
-	 * into {@link ExperimentSeriesRunDecorator}s.<br />
-	 * The account ID is required to pass them to the {@link ExperimentSeriesRunDecorator} to have
-	 * access to the Service Layer afterwards to fetch the results. See comments in the class for more
-	 * information.<br />
-	 * The passed hostURI is analysed, wheather it's "http://myserviceurl.de:8080" or <br />
-	 * "http://myserviceurl.de".
-	 * 
-	 * @param scenarioInstance	the {@link ScenarioInstance}
-	 * @param accountID			the account ID of the caller
-	 * @param host				the host of the service layer
-	 */
-	private void decoratedExperimentSeriesRuns(ScenarioInstance scenarioInstance, long accountID, String hostURI) {
-		if (scenarioInstance == null) return;
-			
-    	for(ExperimentSeries es : scenarioInstance.getExperimentSeriesList()) {
-    		
-    		// need these lists to avoid ConcurrentModificationException in the next for loop
-    		List<ExperimentSeriesRun> esrToRemove 	= new ArrayList<ExperimentSeriesRun>();
-    		List<ExperimentSeriesRun> esrToAdd 		= new ArrayList<ExperimentSeriesRun>();
-    		
-    		for(ExperimentSeriesRun esr : es.getExperimentSeriesRuns()) {
-    			
-    			ExperimentSeriesRunDecorator esrd = new ExperimentSeriesRunDecorator(esr, accountID, hostURI);
-    			
-    			esrToAdd.add(esrd);
-    			esrToRemove.add(esr);
-    		}
-    			
-    		es.getExperimentSeriesRuns().removeAll(esrToRemove);
-    		es.getExperimentSeriesRuns().addAll(esrToAdd);
-    	}
-		
-	}
 }
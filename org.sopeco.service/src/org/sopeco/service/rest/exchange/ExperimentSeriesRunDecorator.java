@@ -26,21 +26,35 @@
  */
 package org.sopeco.service.rest.exchange;
 
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sopeco.persistence.IPersistenceProvider;
 import org.sopeco.persistence.dataset.DataSetAggregated;
+import org.sopeco.persistence.entities.ExperimentSeries;
 import org.sopeco.persistence.entities.ExperimentSeriesRun;
 import org.sopeco.service.configuration.ServiceConfiguration;
 import org.sopeco.service.rest.json.CustomObjectMapper;
+import org.sopeco.service.rest.json.DataSetAggregatedBinaryProvider;
 
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
@@ -48,8 +62,16 @@ import com.fasterxml.jackson.jaxrs.json.JacksonJaxbJsonProvider;
 
 /**
  * The {@link ExperimentSeriesRunDecorator} decorates the {@link ExperimentSeriesRun} with overwriting
- * the method {@link #getSuccessfulResultDataSet()}. The overwritten method does call the SoPeCo Service Layer
- * on each method call.
+ * the method {@link #getSuccessfulResultDataSet()}. The overwritten method does call the SoPeCo Service Layer,
+ * when the {@link DataSetAggregated} is not cached yet.<br />
+ * <br />
+ * All decorators share one {@link Client}, so the connections to the Service Layer are kept alive and
+ * reused. The fetched {@link DataSetAggregated}s are cached by service URL, account and dataset ID. The
+ * cached {@link DataSetAggregated}s are shared by all decorators of the same run and must not be changed.<br />
+ * <br />
+ * When the result of a run is not cached, the results of the following runs of its series are fetched
+ * along with one call, as the runs of a series are usually iterated in order. With
+ * {@link #prefetch(Collection)} the results of any runs are fetched with one call.
  * 
  * @author Peter Merkert
  */
@@ -60,6 +82,30 @@ public class ExperimentSeriesRunDecorator extends ExperimentSeriesRun {
 
 	private static Logger logger = LoggerFactory.getLogger(ExperimentSeriesRunDecorator.class);
 
+	/**
+	 * Separates the parts of the keys in the {@link #DATASET_CACHE}.
+	 */
+	private static final String KEY_SEPARATOR = " ";
+	
+	private static final String GZIP = "gzip";
+	
+	/**
+	 * The least recently used {@link DataSetAggregated}s, by service URL, account ID and dataset ID.
+	 * The datasets are softly referenced, so the garbage collector can free them when the memory
+	 * runs short, however large they are.
+	 */
+	private static final Map<String, SoftReference<DataSetAggregated>> DATASET_CACHE = Collections.synchronizedMap(
+			new LinkedHashMap<String, SoftReference<DataSetAggregated>>(16, 0.75f, true) {
+				
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, SoftReference<DataSetAggregated>> eldest) {
+					return size() > ServiceConfiguration.DATASET_CACHE_SIZE;
+				}
+				
+			});
+
 	/**
 	 * The result of the experiment. As "lazy loading" is used in SoPeCo, this 
 	 * object is default <code>null</code>. It's filled once, the result is queried.
@@ -200,14 +246,94 @@ public class ExperimentSeriesRunDecorator extends ExperimentSeriesRun {
 	public DataSetAggregated getSuccessfulResultDataSet() {
 		if (successfulResultDataSet == null && getDatasetId() != null) {
 
-			// get dataset from service
-			successfulResultDataSet = getDataSetAggregatedFromService(getDatasetId());
+			successfulResultDataSet = getCachedDataSet(getCacheKey());
+			
+			if (successfulResultDataSet == null) {
+				
+				List<ExperimentSeriesRun> runs = getFollowingRuns();
+				
+				if (runs.size() > 1) {
+					
+					// the following runs of the series are fetched along
+					prefetch(runs);
+					
+				} else {
+					
+					// get dataset from service
+					successfulResultDataSet = getDataSetAggregatedFromService(getDatasetId());
+					
+					if (successfulResultDataSet != null) {
+						DATASET_CACHE.put(getCacheKey(), new SoftReference<DataSetAggregated>(successfulResultDataSet));
+					}
+					
+				}
+			}
 			
 		}
 		
 		return successfulResultDataSet;
 	}
 
+	/**
+	 * Fetches the {@link DataSetAggregated}s of all given runs, which are {@link ExperimentSeriesRunDecorator}s
+	 * and have not fetched their result yet. The runs are grouped by Service Layer and account, and the
+	 * results of each group are requested with one batch call. Afterwards {@link #getSuccessfulResultDataSet()} returns
+	 * without calling the Service Layer.
+	 * 
+	 * @param runs the {@link ExperimentSeriesRun}s, other runs than decorators are ignored
+	 */
+	public static void prefetch(Collection<? extends ExperimentSeriesRun> runs) {
+		Map<String, List<ExperimentSeriesRunDecorator>> groups = new HashMap<String, List<ExperimentSeriesRunDecorator>>();
+		
+		for (ExperimentSeriesRun run : runs) {
+			
+			if (!(run instanceof ExperimentSeriesRunDecorator)) {
+				continue;
+			}
+			
+			ExperimentSeriesRunDecorator esrd = (ExperimentSeriesRunDecorator) run;
+			
+			if (esrd.successfulResultDataSet != null || esrd.getDatasetId() == null) {
+				continue;
+			}
+			
+			esrd.successfulResultDataSet = getCachedDataSet(esrd.getCacheKey());
+			
+			if (esrd.successfulResultDataSet == null) {
+				
+				String groupKey = esrd.getFullServiceURL() + KEY_SEPARATOR + esrd.accountID;
+				List<ExperimentSeriesRunDecorator> group = groups.get(groupKey);
+				
+				if (group == null) {
+					group = new ArrayList<ExperimentSeriesRunDecorator>();
+					groups.put(groupKey, group);
+				}
+				
+				group.add(esrd);
+			}
+		}
+		
+		for (List<ExperimentSeriesRunDecorator> group : groups.values()) {
+			
+			List<String> datasetIDs = new ArrayList<String>();
+			
+			for (ExperimentSeriesRunDecorator esrd : group) {
+				datasetIDs.add(esrd.getDatasetId());
+			}
+			
+			Map<String, DataSetAggregated> datasets = group.get(0).getDataSetAggregatedFromService(datasetIDs);
+			
+			for (ExperimentSeriesRunDecorator esrd : group) {
+				
+				esrd.successfulResultDataSet = datasets.get(esrd.getDatasetId());
+				
+				if (esrd.successfulResultDataSet != null) {
+					DATASET_CACHE.put(esrd.getCacheKey(), new SoftReference<DataSetAggregated>(esrd.successfulResultDataSet));
+				}
+			}
+		}
+	}
+
 	/**
 	 * Does nothing.
 	 */
@@ -260,38 +386,155 @@ public class ExperimentSeriesRunDecorator extends ExperimentSeriesRun {
 		webTarget = webTarget.queryParam(ServiceConfiguration.SVCP_RESULT_ACCOUNTID, accountID);
 		webTarget = webTarget.queryParam(ServiceConfiguration.SVCP_RESULT_DATASETID, datasetID);
 		
-		// Null.class, cause Jersey expects an object passed with HTTP POST
-		Response r = webTarget.request(MediaType.APPLICATION_JSON).get();
+		// the binary format is preferred, JSON is the fallback
+		Response r = webTarget.request(ServiceConfiguration.MEDIATYPE_DATASET_COLUMNAR, MediaType.APPLICATION_JSON + ";q=0.5").get();
 		
-		if (r.getStatus() == Status.OK.getStatusCode()) {
-
-			logger.info("Service Layer call successful.");
-			return r.readEntity(DataSetAggregated.class);
+		try {
 			
-		} else if (r.getStatus() == Status.CONFLICT.getStatusCode()) {
-
-			// when conflict happens, there will be always a error message string in the response
-			logger.info("Service Layer call conflicted. Service Layer message: " + r.readEntity(String.class));
+			if (r.getStatus() == Status.OK.getStatusCode()) {
+	
+				logger.info("Service Layer call successful.");
+				return r.readEntity(DataSetAggregated.class);
+				
+			} else if (r.getStatus() == Status.CONFLICT.getStatusCode()) {
+	
+				// when conflict happens, there will be always a error message string in the response
+				logger.info("Service Layer call conflicted. Service Layer message: " + r.readEntity(String.class));
+				return null;
+			}
+	
+			logger.info("Service Layer call failed.");
 			return null;
+			
+		} finally {
+			// releases the connection to be reused by the next call
+			r.close();
 		}
-
-		logger.info("Service Layer call failed.");
-		return null;
 	}
 	
 	/**
-	 * Creates a Client with the Jersey Features.
+	 * Fetches the {@link DataSetAggregated}s to the given IDs with one call to the Service Layer of
+	 * this decorator. The response is requested gzip compressed.
+	 * 
+	 * @param datasetIDs	the IDs to identify the {@link DataSetAggregated}s
+	 * @return				the {@link DataSetAggregated}s by their ID, IDs which could not be fetched are
+	 * 						missing or mapped to <code>null</code>
+	 */
+	private Map<String, DataSetAggregated> getDataSetAggregatedFromService(List<String> datasetIDs) {
+		
+		logger.info("Setting up batch call to the Service Layer with " + datasetIDs.size() + " datasetIDs.");
+		
+		WebTarget webTarget = getClient().target(getFullServiceURL() + urlSplitSign
+										+ ServiceConfiguration.SVC_RESULT + urlSplitSign
+										+ ServiceConfiguration.SVC_RESULT_DATASETAGGREGATED + urlSplitSign
+										+ ServiceConfiguration.SVC_RESULT_BATCH);
+		
+		webTarget = webTarget.queryParam(ServiceConfiguration.SVCP_RESULT_ACCOUNTID, accountID);
+		
+		Response r = webTarget.request(MediaType.APPLICATION_JSON)
+							  .acceptEncoding(GZIP)
+							  .post(Entity.entity(datasetIDs, MediaType.APPLICATION_JSON));
+		
+		try {
+			
+			if (r.getStatus() == Status.OK.getStatusCode()) {
+				
+				logger.info("Service Layer batch call successful.");
+				return r.readEntity(new GenericType<Map<String, DataSetAggregated>>() { });
+				
+			} else if (r.getStatus() == Status.CONFLICT.getStatusCode()) {
+				
+				logger.info("Service Layer batch call conflicted. Service Layer message: " + r.readEntity(String.class));
+				return new HashMap<String, DataSetAggregated>();
+			}
+			
+			logger.info("Service Layer batch call failed.");
+			return new HashMap<String, DataSetAggregated>();
+			
+		} finally {
+			r.close();
+		}
+	}
+	
+	/**
+	 * Returns the Client shared by all decorators.
 	 * 
 	 * @return a Client configured to call the Service Layer
 	 */
-	private Client getClient() {
-		ClientConfig config = new ClientConfig();
-		JacksonJaxbJsonProvider provider = new JacksonJaxbJsonProvider();
-        provider.setMapper(new CustomObjectMapper());
-        config.register(provider);
-        
-		Client client = ClientBuilder.newClient(config);
-		return client;
+	private static Client getClient() {
+		return ClientHolder.CLIENT;
+	}
+	
+	/**
+	 * Returns this run and the following runs of its {@link ExperimentSeries}, up to
+	 * {@link ServiceConfiguration#DATASET_PREFETCH_SIZE} runs.
+	 * 
+	 * @return the runs, at least this run
+	 */
+	private List<ExperimentSeriesRun> getFollowingRuns() {
+		List<ExperimentSeriesRun> runs = new ArrayList<ExperimentSeriesRun>();
+		ExperimentSeries series = getExperimentSeries();
+		
+		if (series != null && series.getExperimentSeriesRuns() != null) {
+			
+			boolean found = false;
+			
+			for (ExperimentSeriesRun run : series.getExperimentSeriesRuns()) {
+				
+				found |= run == this;
+				
+				if (found) {
+					runs.add(run);
+				}
+				
+				if (runs.size() >= ServiceConfiguration.DATASET_PREFETCH_SIZE) {
+					break;
+				}
+			}
+		}
+		
+		if (runs.isEmpty()) {
+			runs.add(this);
+		}
+		
+		return runs;
+	}
+	
+	/**
+	 * Returns the cached {@link DataSetAggregated} with the given key. An entry, whose dataset
+	 * has been freed by the garbage collector, is removed.
+	 * 
+	 * @param cacheKey	the cache key
+	 * @return			the {@link DataSetAggregated}, <code>null</code> if not cached
+	 */
+	private static DataSetAggregated getCachedDataSet(String cacheKey) {
+		SoftReference<DataSetAggregated> reference = DATASET_CACHE.get(cacheKey);
+		
+		if (reference == null) {
+			return null;
+		}
+		
+		DataSetAggregated dataset = reference.get();
+		
+		if (dataset == null) {
+			synchronized (DATASET_CACHE) {
+				// the entry might have been replaced in the meantime
+				if (DATASET_CACHE.get(cacheKey) == reference) {
+					DATASET_CACHE.remove(cacheKey);
+				}
+			}
+		}
+		
+		return dataset;
+	}
+	
+	/**
+	 * The key of the result of this run in the {@link #DATASET_CACHE}.
+	 * 
+	 * @return the cache key
+	 */
+	private String getCacheKey() {
+		return getFullServiceURL() + KEY_SEPARATOR + accountID + KEY_SEPARATOR + getDatasetId();
 	}
 
 	/**
@@ -307,4 +550,32 @@ public class ExperimentSeriesRunDecorator extends ExperimentSeriesRun {
 	public String toString() {
 		return "ExperimentSeriesRunDecorator{" + "timestamp='" + getTimestamp()  + '\'' + '}';
 	}
+	
+	/**
+	 * Holds the shared Client, which is created with the first call to the Service Layer.
+	 * 
+	 * @author Peter Merkert
+	 */
+	private static final class ClientHolder {
+		
+		private static final Client CLIENT = createClient();
+		
+		/**
+		 * Creates a Client with the Jersey Features.
+		 * 
+		 * @return a Client configured to call the Service Layer
+		 */
+		private static Client createClient() {
+			ClientConfig config = new ClientConfig();
+			JacksonJaxbJsonProvider provider = new JacksonJaxbJsonProvider();
+	        provider.setMapper(new CustomObjectMapper());
+	        config.register(provider);
+	        // decodes gzip compressed responses
+	        config.register(GZipEncoder.class);
+	        config.register(DataSetAggregatedBinaryProvider.class);
+	        
+			return ClientBuilder.newClient(config);
+		}
+		
+	}
 }
@@ -46,6 +46,7 @@ public class ExperimentStatus {
 	private String scenarioName				= "";
 	private float progress					= 0.0f;
 	private List<MECLogEntry> eventLogList 	= new ArrayList<MECLogEntry>();
+	private long lastSequence				= 0l;
 	private boolean finished 				= false;
 
 	/**
@@ -66,6 +67,25 @@ public class ExperimentStatus {
 		this.eventLogList = eventLogList;
 	}
 
+	/**
+	 * Returns the sequence number of the latest {@link MECLogEntry} of the experiment. It
+	 * can be passed as <code>since</code> to fetch only newer entries with the next request.
+	 * 
+	 * @return the sequence number of the latest log entry, 0 if there is none
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Sets the sequence number of the latest {@link MECLogEntry} of the experiment.
+	 * 
+	 * @param lastSequence the sequence number of the latest log entry
+	 */
+	public void setLastSequence(long lastSequence) {
+		this.lastSequence = lastSequence;
+	}
+
 	/**
 	 * Returns true, if this experiment has finished.
 	 * 
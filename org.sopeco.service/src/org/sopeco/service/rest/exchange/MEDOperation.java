@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.rest.exchange;
+
+import org.sopeco.persistence.entities.definition.MeasurementEnvironmentDefinition;
+import org.sopeco.persistence.entities.definition.ParameterRole;
+
+/**
+ * This object is used to be shared between the RESTful service and the requester.
+ * One {@link MEDOperation} is a single change on a {@link MeasurementEnvironmentDefinition}.
+ * A list of operations is passed to the batch interface of the MED service.<br />
+ * <br />
+ * The used fields depend on the {@link Type} of the operation:
+ * <ul>
+ * <li>{@link Type#ADD_NAMESPACE}: path</li>
+ * <li>{@link Type#REMOVE_NAMESPACE}: path</li>
+ * <li>{@link Type#RENAME_NAMESPACE}: path, newName</li>
+ * <li>{@link Type#ADD_PARAMETER}: path, paramName, paramType, role</li>
+ * <li>{@link Type#UPDATE_PARAMETER}: path, paramName, newParamName, paramType, role</li>
+ * <li>{@link Type#REMOVE_PARAMETER}: path, paramName</li>
+ * </ul>
+ * 
+ * @author Peter Merkert
+ */
+public class MEDOperation {
+
+	/**
+	 * The kinds of operations on a {@link MeasurementEnvironmentDefinition}.
+	 */
+	public enum Type {
+		ADD_NAMESPACE,
+		REMOVE_NAMESPACE,
+		RENAME_NAMESPACE,
+		ADD_PARAMETER,
+		UPDATE_PARAMETER,
+		REMOVE_PARAMETER
+	}
+	
+	private Type type;
+	
+	private String path;
+	
+	private String newName;
+	
+	private String paramName;
+	
+	private String newParamName;
+	
+	private String paramType;
+	
+	private ParameterRole role;
+	
+	/**
+	 * Default constructor for JSON mapping.
+	 */
+	public MEDOperation() {
+	}
+	
+	/**
+	 * Constructor to set the namespace operation immediately.
+	 * 
+	 * @param type	the type of the operation
+	 * @param path	the namespace path
+	 */
+	public MEDOperation(Type type, String path) {
+		this.type = type;
+		this.path = path;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public String getNewName() {
+		return newName;
+	}
+
+	public void setNewName(String newName) {
+		this.newName = newName;
+	}
+
+	public String getParamName() {
+		return paramName;
+	}
+
+	public void setParamName(String paramName) {
+		this.paramName = paramName;
+	}
+
+	public String getNewParamName() {
+		return newParamName;
+	}
+
+	public void setNewParamName(String newParamName) {
+		this.newParamName = newParamName;
+	}
+
+	public String getParamType() {
+		return paramType;
+	}
+
+	public void setParamType(String paramType) {
+		this.paramType = paramType;
+	}
+
+	public ParameterRole getRole() {
+		return role;
+	}
+
+	public void setRole(ParameterRole role) {
+		this.role = role;
+	}
+	
+}
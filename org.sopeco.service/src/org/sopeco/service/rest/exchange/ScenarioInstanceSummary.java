@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.rest.exchange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sopeco.persistence.entities.ExperimentSeries;
+import org.sopeco.persistence.entities.ExperimentSeriesRun;
+import org.sopeco.persistence.entities.ScenarioInstance;
+
+/**
+ * This object is used to be shared between the RESTful service and the requester.
+ * It contains an overview of one {@link ScenarioInstance} without the {@link ExperimentSeriesRun}s
+ * and their result metadata.
+ * 
+ * @author Peter Merkert
+ */
+public class ScenarioInstanceSummary {
+
+	private String name;
+	
+	private String measurementEnvironmentUrl;
+	
+	private List<String> experimentSeriesNames = new ArrayList<String>();
+	
+	private int experimentSeriesRunCount;
+	
+	/**
+	 * The timestamp of the latest run, -1 if the instance has no runs.
+	 */
+	private long latestRunTimestamp = -1;
+	
+	/**
+	 * Default constructor for JSON mapping.
+	 */
+	public ScenarioInstanceSummary() {
+	}
+	
+	/**
+	 * Creates the summary of the given {@link ScenarioInstance}.
+	 * 
+	 * @param scenarioInstance the {@link ScenarioInstance}
+	 */
+	public ScenarioInstanceSummary(ScenarioInstance scenarioInstance) {
+		this.name 						= scenarioInstance.getName();
+		this.measurementEnvironmentUrl 	= scenarioInstance.getMeasurementEnvironmentUrl();
+		
+		for (ExperimentSeries es : scenarioInstance.getExperimentSeriesList()) {
+			
+			experimentSeriesNames.add(es.getName());
+			
+			for (ExperimentSeriesRun run : es.getExperimentSeriesRuns()) {
+				
+				experimentSeriesRunCount++;
+				
+				Long timestamp = run.getTimestamp();
+				
+				if (timestamp != null && timestamp > latestRunTimestamp) {
+					latestRunTimestamp = timestamp;
+				}
+			}
+		}
+	}
+	
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getMeasurementEnvironmentUrl() {
+		return measurementEnvironmentUrl;
+	}
+
+	public void setMeasurementEnvironmentUrl(String measurementEnvironmentUrl) {
+		this.measurementEnvironmentUrl = measurementEnvironmentUrl;
+	}
+
+	public List<String> getExperimentSeriesNames() {
+		return experimentSeriesNames;
+	}
+
+	public void setExperimentSeriesNames(List<String> experimentSeriesNames) {
+		this.experimentSeriesNames = experimentSeriesNames;
+	}
+
+	public int getExperimentSeriesRunCount() {
+		return experimentSeriesRunCount;
+	}
+
+	public void setExperimentSeriesRunCount(int experimentSeriesRunCount) {
+		this.experimentSeriesRunCount = experimentSeriesRunCount;
+	}
+
+	public long getLatestRunTimestamp() {
+		return latestRunTimestamp;
+	}
+
+	public void setLatestRunTimestamp(long latestRunTimestamp) {
+		this.latestRunTimestamp = latestRunTimestamp;
+	}
+	
+}
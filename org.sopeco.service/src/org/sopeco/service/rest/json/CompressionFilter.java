@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.rest.json;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.glassfish.jersey.message.GZipEncoder;
+
+/**
+ * The <code>CompressionFilter</code> sets the content encoding gzip for the responses of
+ * {@link Compressed} resource methods, if the client accepts gzip. The {@link GZipEncoder}
+ * compresses the responses with this content encoding, when they are written.
+ * 
+ * @author Peter Merkert
+ */
+@Compressed
+@Priority(Priorities.HEADER_DECORATOR)
+public final class CompressionFilter implements ContainerResponseFilter {
+
+	private static final String GZIP = "gzip";
+	
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+		if (!responseContext.hasEntity() || responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			return;
+		}
+		
+		responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		
+		if (acceptsGZip(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING))) {
+			responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+		}
+	}
+	
+	/**
+	 * Returns whether the given Accept-Encoding header contains gzip without a quality of 0.
+	 * 
+	 * @param acceptEncoding	the header value, may be <code>null</code>
+	 * @return					true, if gzip is accepted
+	 */
+	private static boolean acceptsGZip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		
+		for (String coding : acceptEncoding.toLowerCase(Locale.ENGLISH).split(",")) {
+			
+			String[] parts = coding.split(";");
+			
+			if (!parts[0].trim().equals(GZIP)) {
+				continue;
+			}
+			
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].replace(" ", "");
+				
+				if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.rest.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.sopeco.persistence.dataset.DataSetAggregated;
+import org.sopeco.service.configuration.ServiceConfiguration;
+
+/**
+ * The {@link DataSetAggregatedBinaryProvider} reads and writes {@link DataSetAggregated}s in the
+ * media type {@link ServiceConfiguration#MEDIATYPE_DATASET_COLUMNAR} with the {@link DataSetAggregatedCodec}.
+ * It has to be registered at the server and at the client.
+ * 
+ * @author Peter Merkert
+ */
+@Produces(ServiceConfiguration.MEDIATYPE_DATASET_COLUMNAR)
+@Consumes(ServiceConfiguration.MEDIATYPE_DATASET_COLUMNAR)
+public class DataSetAggregatedBinaryProvider implements MessageBodyReader<DataSetAggregated>, MessageBodyWriter<DataSetAggregated> {
+
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return DataSetAggregated.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public DataSetAggregated readFrom(Class<DataSetAggregated> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+		return DataSetAggregatedCodec.decode(entityStream);
+	}
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return DataSetAggregated.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public long getSize(DataSetAggregated t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		// the size is unknown until the dataset is encoded
+		return -1;
+	}
+
+	@Override
+	public void writeTo(DataSetAggregated t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+		DataSetAggregatedCodec.encode(t, entityStream);
+	}
+
+}
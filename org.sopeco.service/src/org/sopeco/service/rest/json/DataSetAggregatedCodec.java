@@ -0,0 +1,438 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.rest.json;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sopeco.persistence.dataset.DataSetAggregated;
+import org.sopeco.persistence.dataset.DataSetInputColumn;
+import org.sopeco.persistence.dataset.DataSetObservationColumn;
+import org.sopeco.persistence.dataset.ParameterValueList;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * The {@link DataSetAggregatedCodec} converts a {@link DataSetAggregated} into a compact binary format
+ * and back.<br />
+ * <br />
+ * The JSON of a dataset consists mainly of the value lists of the {@link DataSetInputColumn}s and the
+ * {@link ParameterValueList}s. These lists are read directly from the columns and written as primitive
+ * arrays with one type tag per column. The remaining structure (parameter definitions, IDs, etc.) is
+ * kept as JSON with empty value lists. The whole content is gzip compressed.<br />
+ * <br />
+ * The format is:
+ * <ul>
+ * <li>the magic number and the format version</li>
+ * <li>the length and the bytes of the JSON without values</li>
+ * <li>the number of value columns and every column with its key, type tag, length and values</li>
+ * </ul>
+ * The key of a column is the full name of its parameter, so the values are assigned to the same column
+ * of the decoded dataset, regardless of the order the columns are held in.
+ * 
+ * @author Peter Merkert
+ */
+public final class DataSetAggregatedCodec {
+
+	private static final int MAGIC = 0x53445341; // "SDSA"
+	
+	private static final byte VERSION = 2;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private static final byte TYPE_INT 		= 1;
+	private static final byte TYPE_LONG 	= 2;
+	private static final byte TYPE_DOUBLE 	= 3;
+	private static final byte TYPE_BOOLEAN 	= 4;
+	private static final byte TYPE_STRING 	= 5;
+	
+	/**
+	 * Columns with mixed, complex or <code>null</code> values are kept as JSON.
+	 */
+	private static final byte TYPE_JSON 	= 6;
+	
+	private static final Comparator<ValueColumn> KEY_ORDER = new Comparator<ValueColumn>() {
+		@Override
+		public int compare(ValueColumn o1, ValueColumn o2) {
+			return o1.key.compareTo(o2.key);
+		}
+	};
+	
+	/**
+	 * The {@link ObjectMapper} is thread safe after the configuration and therefore shared.
+	 */
+	private static final ObjectMapper MAPPER = new CustomObjectMapper();
+	
+	/**
+	 * Writes the JSON of a dataset with empty value lists.
+	 */
+	private static final ObjectMapper STRUCTURE_MAPPER = createStructureMapper();
+	
+	private DataSetAggregatedCodec() {
+	}
+	
+	/**
+	 * Writes the given {@link DataSetAggregated} to the stream. The stream is not closed.
+	 * 
+	 * @param dataset		the {@link DataSetAggregated}
+	 * @param output		the stream to write to
+	 * @throws IOException	if the stream cannot be written
+	 */
+	public static void encode(DataSetAggregated dataset, OutputStream output) throws IOException {
+		List<ValueColumn> columns = collectValueColumns(dataset);
+		
+		GZIPOutputStream gzip = new GZIPOutputStream(output);
+		DataOutputStream data = new DataOutputStream(gzip);
+		
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		writeBytes(data, STRUCTURE_MAPPER.writeValueAsBytes(dataset));
+		
+		data.writeInt(columns.size());
+		
+		for (ValueColumn column : columns) {
+			writeBytes(data, column.key.getBytes(UTF8));
+			writeColumn(data, column.values);
+		}
+		
+		data.flush();
+		gzip.finish();
+	}
+	
+	/**
+	 * Reads a {@link DataSetAggregated} written by {@link #encode(DataSetAggregated, OutputStream)}
+	 * from the stream. The stream is not closed.
+	 * 
+	 * @param input			the stream to read from
+	 * @return				the {@link DataSetAggregated}
+	 * @throws IOException	if the stream cannot be read or has not the expected format
+	 */
+	public static DataSetAggregated decode(InputStream input) throws IOException {
+		DataInputStream data = new DataInputStream(new GZIPInputStream(input));
+		
+		if (data.readInt() != MAGIC) {
+			throw new IOException("The stream does not contain an encoded DataSetAggregated.");
+		}
+		
+		byte version = data.readByte();
+		
+		if (version != VERSION) {
+			throw new IOException("Unsupported DataSetAggregated encoding version " + version + ".");
+		}
+		
+		DataSetAggregated dataset = MAPPER.readValue(readBytes(data), DataSetAggregated.class);
+		
+		List<ValueColumn> columns = collectValueColumns(dataset);
+		int columnCount = data.readInt();
+		
+		if (columnCount != columns.size()) {
+			throw new IOException("Expected " + columns.size() + " value columns, but found " + columnCount + ".");
+		}
+		
+		for (ValueColumn column : columns) {
+			String key = new String(readBytes(data), UTF8);
+			
+			if (!key.equals(column.key)) {
+				throw new IOException("Expected the values of column '" + column.key + "', but found '" + key + "'.");
+			}
+			
+			readColumn(data, column.values);
+		}
+		
+		return dataset;
+	}
+	
+	/**
+	 * Returns the value lists of all input and observation columns of the dataset, ordered
+	 * by their keys.
+	 * 
+	 * @param dataset	the dataset
+	 * @return			the value lists
+	 */
+	private static List<ValueColumn> collectValueColumns(DataSetAggregated dataset) {
+		List<ValueColumn> columns = new ArrayList<ValueColumn>();
+		
+		for (DataSetInputColumn<?> column : dataset.getInputColumns()) {
+			columns.add(new ValueColumn("input:" + column.getParameter().getFullName(), column.getValueList()));
+		}
+		
+		for (DataSetObservationColumn<?> column : dataset.getObservationColumns()) {
+			
+			int index = 0;
+			
+			for (ParameterValueList<?> valueList : column.getValueLists()) {
+				columns.add(new ValueColumn("observation:" + column.getParameter().getFullName() + "#" + index, valueList.getValues()));
+				index++;
+			}
+		}
+		
+		Collections.sort(columns, KEY_ORDER);
+		
+		return columns;
+	}
+	
+	private static void writeColumn(DataOutputStream data, List<?> values) throws IOException {
+		byte type = typeOf(values);
+		
+		data.writeByte(type);
+		
+		if (type == TYPE_JSON) {
+			writeBytes(data, MAPPER.writeValueAsBytes(values));
+			return;
+		}
+		
+		int size = values.size();
+		
+		data.writeInt(size);
+		
+		switch (type) {
+		case TYPE_INT:
+			int[] ints = new int[size];
+			for (int i = 0; i < size; i++) {
+				ints[i] = (Integer) values.get(i);
+			}
+			ByteBuffer intBuffer = ByteBuffer.allocate(size * 4);
+			intBuffer.asIntBuffer().put(ints);
+			data.write(intBuffer.array());
+			break;
+		case TYPE_LONG:
+			long[] longs = new long[size];
+			for (int i = 0; i < size; i++) {
+				longs[i] = (Long) values.get(i);
+			}
+			ByteBuffer longBuffer = ByteBuffer.allocate(size * 8);
+			longBuffer.asLongBuffer().put(longs);
+			data.write(longBuffer.array());
+			break;
+		case TYPE_DOUBLE:
+			double[] doubles = new double[size];
+			for (int i = 0; i < size; i++) {
+				doubles[i] = (Double) values.get(i);
+			}
+			ByteBuffer doubleBuffer = ByteBuffer.allocate(size * 8);
+			doubleBuffer.asDoubleBuffer().put(doubles);
+			data.write(doubleBuffer.array());
+			break;
+		case TYPE_BOOLEAN:
+			byte[] booleans = new byte[size];
+			for (int i = 0; i < size; i++) {
+				booleans[i] = (byte) ((Boolean) values.get(i) ? 1 : 0);
+			}
+			data.write(booleans);
+			break;
+		default:
+			for (Object value : values) {
+				writeBytes(data, ((String) value).getBytes(UTF8));
+			}
+			break;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static void readColumn(DataInputStream data, List<?> values) throws IOException {
+		List<Object> column = (List<Object>) values;
+		byte type = data.readByte();
+		
+		if (type == TYPE_JSON) {
+			column.addAll(MAPPER.readValue(readBytes(data), List.class));
+			return;
+		}
+		
+		int size = data.readInt();
+		
+		switch (type) {
+		case TYPE_INT:
+			int[] ints = new int[size];
+			ByteBuffer.wrap(readFully(data, size * 4)).asIntBuffer().get(ints);
+			for (int value : ints) {
+				column.add(value);
+			}
+			break;
+		case TYPE_LONG:
+			long[] longs = new long[size];
+			ByteBuffer.wrap(readFully(data, size * 8)).asLongBuffer().get(longs);
+			for (long value : longs) {
+				column.add(value);
+			}
+			break;
+		case TYPE_DOUBLE:
+			double[] doubles = new double[size];
+			ByteBuffer.wrap(readFully(data, size * 8)).asDoubleBuffer().get(doubles);
+			for (double value : doubles) {
+				column.add(value);
+			}
+			break;
+		case TYPE_BOOLEAN:
+			for (byte value : readFully(data, size)) {
+				column.add(value != 0);
+			}
+			break;
+		case TYPE_STRING:
+			for (int i = 0; i < size; i++) {
+				column.add(new String(readBytes(data), UTF8));
+			}
+			break;
+		default:
+			throw new IOException("Unknown column type " + type + ".");
+		}
+	}
+	
+	/**
+	 * Returns the type tag all values of the column fit into. The tag preserves the Java types
+	 * of the values, so the decoded values have the same types.
+	 * 
+	 * @param values	the values
+	 * @return			the type tag
+	 */
+	private static byte typeOf(List<?> values) {
+		boolean ints 	 = true;
+		boolean longs 	 = true;
+		boolean doubles  = true;
+		boolean booleans = true;
+		boolean strings  = true;
+		
+		for (Object value : values) {
+			ints 	 &= value instanceof Integer;
+			longs 	 &= value instanceof Long;
+			doubles  &= value instanceof Double;
+			booleans &= value instanceof Boolean;
+			strings  &= value instanceof String;
+		}
+		
+		if (ints) {
+			return TYPE_INT;
+		} else if (longs) {
+			return TYPE_LONG;
+		} else if (doubles) {
+			return TYPE_DOUBLE;
+		} else if (booleans) {
+			return TYPE_BOOLEAN;
+		} else if (strings) {
+			return TYPE_STRING;
+		}
+		
+		return TYPE_JSON;
+	}
+	
+	private static void writeBytes(DataOutputStream data, byte[] bytes) throws IOException {
+		data.writeInt(bytes.length);
+		data.write(bytes);
+	}
+	
+	private static byte[] readBytes(DataInputStream data) throws IOException {
+		return readFully(data, data.readInt());
+	}
+	
+	private static byte[] readFully(DataInputStream data, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		data.readFully(bytes);
+		return bytes;
+	}
+	
+	private static ObjectMapper createStructureMapper() {
+		ObjectMapper mapper = new CustomObjectMapper();
+		mapper.addMixInAnnotations(DataSetInputColumn.class, ValuelessDataSetInputColumnMixIn.class);
+		mapper.addMixInAnnotations(ParameterValueList.class, ValuelessParameterValueListMixIn.class);
+		return mapper;
+	}
+	
+	/**
+	 * The values of a column together with the key of the column.
+	 */
+	private static final class ValueColumn {
+		
+		private final String key;
+		
+		private final List<?> values;
+		
+		private ValueColumn(String key, List<?> values) {
+			this.key 	= key;
+			this.values = values;
+		}
+		
+	}
+	
+	/**
+	 * Writes an empty JSON array instead of the values.
+	 */
+	private static final class EmptyListSerializer extends JsonSerializer<List<?>> {
+		
+		@Override
+		public void serialize(List<?> value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+			generator.writeStartArray();
+			generator.writeEndArray();
+		}
+		
+	}
+	
+	/**
+	 * {@link DataSetInputColumnMixIn}, which omits the values.
+	 */
+	private abstract static class ValuelessDataSetInputColumnMixIn<T> extends DataSetInputColumnMixIn<T> {
+		
+		@JsonProperty("valueList")
+		@JsonSerialize(using = EmptyListSerializer.class)
+		private List<T> valueList;
+		
+		private ValuelessDataSetInputColumnMixIn() {
+			super(null, null);
+		}
+		
+	}
+	
+	/**
+	 * {@link ParameterValueListMixIn}, which omits the values.
+	 */
+	private abstract static class ValuelessParameterValueListMixIn<T> extends ParameterValueListMixIn<T> {
+		
+		@JsonProperty("values")
+		@JsonSerialize(using = EmptyListSerializer.class)
+		private List<T> values;
+		
+		private ValuelessParameterValueListMixIn() {
+			super(null, null);
+		}
+		
+	}
+	
+}
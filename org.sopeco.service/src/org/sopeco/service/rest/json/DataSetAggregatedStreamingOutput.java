@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.rest.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sopeco.persistence.IPersistenceProvider;
+import org.sopeco.persistence.dataset.DataSetAggregated;
+import org.sopeco.persistence.exceptions.DataNotFoundException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The {@link DataSetAggregatedStreamingOutput} writes several {@link DataSetAggregated}s as one JSON object,
+ * with the dataset IDs as keys. Each {@link DataSetAggregated} is loaded from the database right before
+ * it's written, so only the dataset currently written has to be held in memory.<br />
+ * <br />
+ * A dataset, which cannot be found, is written as <code>null</code>.
+ * 
+ * @author Peter Merkert
+ */
+public final class DataSetAggregatedStreamingOutput implements StreamingOutput {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DataSetAggregatedStreamingOutput.class.getName());
+	
+	/**
+	 * The {@link ObjectMapper} is thread safe after the configuration and therefore shared.
+	 */
+	private static final ObjectMapper MAPPER = new CustomObjectMapper();
+	
+	private final IPersistenceProvider provider;
+	
+	private final List<String> datasetIDs;
+	
+	/**
+	 * The provider is closed, when all datasets are written.
+	 * 
+	 * @param provider		the provider of the account, the datasets are loaded with
+	 * @param datasetIDs	the IDs of the {@link DataSetAggregated}s to write
+	 */
+	public DataSetAggregatedStreamingOutput(IPersistenceProvider provider, List<String> datasetIDs) {
+		this.provider 	= provider;
+		this.datasetIDs = datasetIDs;
+	}
+	
+	@Override
+	public void write(OutputStream output) throws IOException {
+		JsonGenerator generator = MAPPER.getFactory().createGenerator(output);
+		// the stream belongs to the container
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		
+		try {
+			// one call for all datasets, otherwise the object IDs of the datasets would clash
+			MAPPER.writeValue(generator, new LoadingMap());
+		} finally {
+			try {
+				generator.close();
+			} finally {
+				provider.closeProvider();
+			}
+		}
+	}
+	
+	/**
+	 * Loads the {@link DataSetAggregated} with the given ID.
+	 * 
+	 * @param datasetID the dataset ID
+	 * @return			the {@link DataSetAggregated}, <code>null</code> if not found
+	 */
+	private DataSetAggregated load(String datasetID) {
+		try {
+			return provider.loadDataSet(datasetID);
+		} catch (DataNotFoundException e) {
+			LOGGER.info("Cannot find a dataset with id '{}'.", datasetID);
+			return null;
+		}
+	}
+	
+	/**
+	 * The map loads the {@link DataSetAggregated}s, when Jackson iterates over the entries.
+	 * 
+	 * @author Peter Merkert
+	 */
+	private final class LoadingMap extends AbstractMap<String, DataSetAggregated> {
+		
+		@Override
+		public Set<Map.Entry<String, DataSetAggregated>> entrySet() {
+			return new AbstractSet<Map.Entry<String, DataSetAggregated>>() {
+				
+				@Override
+				public Iterator<Map.Entry<String, DataSetAggregated>> iterator() {
+					final Iterator<String> ids = datasetIDs.iterator();
+					
+					return new Iterator<Map.Entry<String, DataSetAggregated>>() {
+						
+						@Override
+						public boolean hasNext() {
+							return ids.hasNext();
+						}
+
+						@Override
+						public Map.Entry<String, DataSetAggregated> next() {
+							String datasetID = ids.next();
+							return new SimpleImmutableEntry<String, DataSetAggregated>(datasetID, load(datasetID));
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+						
+					};
+				}
+
+				@Override
+				public int size() {
+					return datasetIDs.size();
+				}
+				
+			};
+		}
+		
+	}
+	
+}
@@ -42,7 +42,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * 
  * @author Peter Merkert
  */
-public final class DataSetInputColumnMixIn<T> {
+public class DataSetInputColumnMixIn<T> {
 
 	@JsonProperty("valueList")
 	private List<T> valueList;
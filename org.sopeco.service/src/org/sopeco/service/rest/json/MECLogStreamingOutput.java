@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.rest.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.sopeco.service.execute.MECLogEntry;
+import org.sopeco.service.persistence.ServicePersistenceProvider;
+import org.sopeco.service.persistence.entities.MECLog;
+import org.sopeco.service.persistence.entities.MECLogChunk;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The {@link MECLogStreamingOutput} writes the {@link MECLogEntry}s of an experiment log as one JSON
+ * array. The {@link MECLogChunk}s of the log are loaded one after another while writing, so only
+ * the chunk currently written has to be held in memory.<br />
+ * <br />
+ * The entries can be restricted to a time window and to errors and exceptions. <code>offset</code>
+ * and <code>limit</code> page over the entries, which match these restrictions.
+ * 
+ * @author Peter Merkert
+ */
+public final class MECLogStreamingOutput implements StreamingOutput {
+
+	/**
+	 * The {@link ObjectMapper} is thread safe after the configuration and therefore shared.
+	 */
+	private static final ObjectMapper MAPPER = new CustomObjectMapper();
+	
+	private final long experimentKey;
+	
+	private final long from;
+	
+	private final long to;
+	
+	private final boolean errorsOnly;
+	
+	private final int offset;
+	
+	private final int limit;
+	
+	/**
+	 * @param experimentKey	the experiment key of the log
+	 * @param from			the earliest time of an entry, <code>null</code> for no restriction
+	 * @param to			the latest time of an entry, <code>null</code> for no restriction
+	 * @param errorsOnly	true, if only errors and exceptions are written
+	 * @param offset		the number of matching entries to skip
+	 * @param limit			the maximum number of entries to write, negative for all
+	 */
+	public MECLogStreamingOutput(long experimentKey, Long from, Long to, boolean errorsOnly, int offset, int limit) {
+		this.experimentKey 	= experimentKey;
+		this.from 			= from == null ? Long.MIN_VALUE : from;
+		this.to 			= to == null ? Long.MAX_VALUE : to;
+		this.errorsOnly 	= errorsOnly;
+		this.offset 		= Math.max(offset, 0);
+		this.limit 			= limit;
+	}
+	
+	@Override
+	public void write(OutputStream output) throws IOException {
+		JsonGenerator generator = MAPPER.getFactory().createGenerator(output);
+		// the stream belongs to the container
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		
+		try {
+			generator.writeStartArray();
+			
+			if (limit != 0) {
+				writeEntries(generator);
+			}
+			
+			generator.writeEndArray();
+		} finally {
+			generator.close();
+		}
+	}
+	
+	/**
+	 * Writes the matching entries of the log chunk by chunk.
+	 * 
+	 * @param generator		the generator to write with
+	 * @throws IOException	if the entries cannot be written
+	 */
+	private void writeEntries(JsonGenerator generator) throws IOException {
+		ServicePersistenceProvider persistence = ServicePersistenceProvider.getInstance();
+		
+		// without filter the offset is a position in the log and whole chunks can be skipped
+		boolean unfiltered = !errorsOnly && from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+		int skipPositions = unfiltered ? offset : 0;
+		
+		List<Long> chunkIDs = persistence.loadMECLogChunkIDs(experimentKey, skipPositions, from, to);
+		
+		Writer writer = new Writer(generator, skipPositions, unfiltered ? 0 : offset);
+		
+		if (chunkIDs.isEmpty()) {
+			
+			MECLog legacyLog = persistence.loadWholeMECLog(experimentKey);
+			
+			if (legacyLog != null && legacyLog.getEntries() != null) {
+				writer.write(legacyLog.getEntries(), 0);
+			}
+			
+			return;
+		}
+		
+		for (Long chunkID : chunkIDs) {
+			
+			MECLogChunk chunk = persistence.loadMECLogChunk(chunkID);
+			
+			if (chunk != null && !writer.write(chunk.getEntries(), chunk.getFirstEntry())) {
+				return;
+			}
+			
+			// the client receives the entries of every chunk as soon as possible
+			generator.flush();
+		}
+	}
+	
+	/**
+	 * Returns whether the given entry matches the time window and the error restriction.
+	 * 
+	 * @param entry	the log entry
+	 * @return		true, if the entry is written
+	 */
+	private boolean matches(MECLogEntry entry) {
+		if (entry.getTime() < from || entry.getTime() > to) {
+			return false;
+		}
+		
+		return !errorsOnly || entry.isError() || entry.isException();
+	}
+	
+	/**
+	 * Writes the matching entries and keeps track of the paging.
+	 * 
+	 * @author Peter Merkert
+	 */
+	private final class Writer {
+		
+		private final JsonGenerator generator;
+		
+		private final int skipPositions;
+		
+		private int toSkip;
+		
+		private int written = 0;
+		
+		private Writer(JsonGenerator generator, int skipPositions, int toSkip) {
+			this.generator 		= generator;
+			this.skipPositions 	= skipPositions;
+			this.toSkip 		= toSkip;
+		}
+		
+		/**
+		 * Writes the matching entries of the given log segment.
+		 * 
+		 * @param entries		the entries of the segment
+		 * @param firstEntry	the position of the first entry of the segment in the whole log
+		 * @return				false, if the limit has been reached
+		 * @throws IOException	if the entries cannot be written
+		 */
+		private boolean write(List<MECLogEntry> entries, int firstEntry) throws IOException {
+			if (entries == null) {
+				return true;
+			}
+			
+			for (int i = 0; i < entries.size(); i++) {
+				
+				MECLogEntry entry = entries.get(i);
+				
+				if (firstEntry + i < skipPositions || !matches(entry)) {
+					continue;
+				}
+				
+				if (toSkip > 0) {
+					toSkip--;
+					continue;
+				}
+				
+				if (entry.getSequence() == 0) {
+					// stored before sequence numbers existed
+					entry.setSequence(firstEntry + i + 1);
+				}
+				
+				MAPPER.writeValue(generator, entry);
+				written++;
+				
+				if (limit > 0 && written >= limit) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+	}
+	
+}
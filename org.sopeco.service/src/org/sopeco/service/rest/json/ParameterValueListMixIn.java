@@ -42,7 +42,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * 
  * @author Peter Merkert
  */
-public final class ParameterValueListMixIn<T> {
+public class ParameterValueListMixIn<T> {
 
 	@JsonProperty("parameter")
 	private ParameterDefinition parameter;
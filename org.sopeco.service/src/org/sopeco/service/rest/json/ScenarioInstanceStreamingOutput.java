@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.rest.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.sopeco.persistence.entities.ExperimentSeries;
+import org.sopeco.persistence.entities.ExperimentSeriesRun;
+import org.sopeco.persistence.entities.ScenarioInstance;
+import org.sopeco.service.helper.ScenarioInstanceQuery;
+import org.sopeco.service.rest.exchange.ExperimentSeriesRunDecorator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The {@link ScenarioInstanceStreamingOutput} writes {@link ScenarioInstance}s directly into the
+ * response stream with the {@link CustomObjectMapper}. The JSON is equal to the one the registered
+ * Jackson provider would create, but it's written while the instances are walked through.<br />
+ * <br />
+ * The {@link ExperimentSeriesRun}s of an instance are converted into {@link ExperimentSeriesRunDecorator}s
+ * just before the instance is written, and not all at once when the request is handled. Both the
+ * instances and the runs per {@link ExperimentSeries} can be paged with an offset and a limit.
+ * 
+ * @author Peter Merkert
+ */
+public final class ScenarioInstanceStreamingOutput implements StreamingOutput {
+
+	/**
+	 * The {@link ObjectMapper} is thread safe after the configuration and therefore shared.
+	 */
+	private static final ObjectMapper MAPPER = new CustomObjectMapper();
+	
+	private final DecoratingList instances;
+	
+	/**
+	 * True, if only the first instance is written, and not a JSON array.
+	 */
+	private final boolean single;
+	
+	private ScenarioInstanceStreamingOutput(DecoratingList instances, boolean single) {
+		this.instances 	= instances;
+		this.single 	= single;
+	}
+	
+	/**
+	 * Creates the output for a single {@link ScenarioInstance}. The offset and the limit are
+	 * applied to the {@link ExperimentSeriesRun}s of each {@link ExperimentSeries}.
+	 * 
+	 * @param scenarioInstance	the {@link ScenarioInstance} to write
+	 * @param accountID			the account ID of the caller
+	 * @param host				the host of the service layer
+	 * @param runOffset			the number of runs per series to skip
+	 * @param runLimit			the maximum number of runs per series, negative for all runs
+	 * @return					the {@link StreamingOutput}
+	 */
+	public static StreamingOutput forInstance(ScenarioInstance scenarioInstance, long accountID, String host, int runOffset, int runLimit) {
+		List<ScenarioInstance> list = Collections.singletonList(scenarioInstance);
+		return new ScenarioInstanceStreamingOutput(new DecoratingList(list, accountID, host, runOffset, runLimit), true);
+	}
+
+	/**
+	 * Creates the output for a list of {@link ScenarioInstance}s. The offset and the limit
+	 * are applied to the list. The runs of the instances are not paged.
+	 * 
+	 * @param scenarioInstances	the {@link ScenarioInstance}s to write
+	 * @param accountID			the account ID of the caller
+	 * @param host				the host of the service layer
+	 * @param offset			the number of instances to skip
+	 * @param limit				the maximum number of instances, negative for all instances
+	 * @return					the {@link StreamingOutput}
+	 */
+	public static StreamingOutput forInstances(List<ScenarioInstance> scenarioInstances, long accountID, String host, int offset, int limit) {
+		return new ScenarioInstanceStreamingOutput(new DecoratingList(ScenarioInstanceQuery.page(scenarioInstances, offset, limit), accountID, host, 0, -1), false);
+	}
+	
+	@Override
+	public void write(OutputStream output) throws IOException {
+		JsonGenerator generator = MAPPER.getFactory().createGenerator(output);
+		// the stream belongs to the container
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		
+		try {
+			// one call for the whole entity, otherwise the object IDs of the instances would clash
+			MAPPER.writeValue(generator, single ? instances.get(0) : instances);
+		} finally {
+			generator.close();
+		}
+	}
+
+	/**
+	 * The list converts the {@link ExperimentSeriesRun}s of an instance when Jackson requests
+	 * the instance, so the decorators are created while the JSON is written.
+	 * 
+	 * @author Peter Merkert
+	 */
+	private static final class DecoratingList extends AbstractList<ScenarioInstance> implements RandomAccess {
+		
+		private final List<ScenarioInstance> instances;
+		private final boolean[] decorated;
+		private final long accountID;
+		private final String host;
+		private final int runOffset;
+		private final int runLimit;
+		
+		DecoratingList(List<ScenarioInstance> instances, long accountID, String host, int runOffset, int runLimit) {
+			this.instances 	= instances;
+			this.decorated	= new boolean[instances.size()];
+			this.accountID	= accountID;
+			this.host		= host;
+			this.runOffset	= runOffset;
+			this.runLimit	= runLimit;
+		}
+		
+		@Override
+		public ScenarioInstance get(int index) {
+			ScenarioInstance scenarioInstance = instances.get(index);
+			
+			if (!decorated[index]) {
+				decorate(scenarioInstance);
+				decorated[index] = true;
+			}
+			
+			return scenarioInstance;
+		}
+
+		@Override
+		public int size() {
+			return instances.size();
+		}
+		
+		/**
+		 * Converts the {@link ExperimentSeriesRun}s of the instance in the requested range into
+		 * {@link ExperimentSeriesRunDecorator}s. Runs outside the range are removed.
+		 * 
+		 * @param scenarioInstance the {@link ScenarioInstance}
+		 */
+		private void decorate(ScenarioInstance scenarioInstance) {
+			if (scenarioInstance == null) {
+				return;
+			}
+			
+			for (ExperimentSeries es : scenarioInstance.getExperimentSeriesList()) {
+				
+				List<ExperimentSeriesRun> runs 		= es.getExperimentSeriesRuns();
+				List<ExperimentSeriesRun> esrToAdd 	= new ArrayList<ExperimentSeriesRun>();
+				
+				for (ExperimentSeriesRun esr : ScenarioInstanceQuery.page(runs, runOffset, runLimit)) {
+					esrToAdd.add(new ExperimentSeriesRunDecorator(esr, accountID, host));
+				}
+				
+				runs.clear();
+				runs.addAll(esrToAdd);
+			}
+		}
+		
+	}
+	
+}
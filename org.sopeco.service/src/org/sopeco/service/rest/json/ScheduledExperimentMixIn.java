@@ -27,6 +27,8 @@
 package org.sopeco.service.rest.json;
 
 import org.sopeco.config.IConfiguration;
+import org.sopeco.service.execute.CompiledScheduleExpression;
+import org.sopeco.service.execute.DurationStatistics;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -70,4 +72,26 @@ public final class ScheduledExperimentMixIn {
 		return 0;
 	}
 	
+	/**
+	 * The compiled schedule is derived from the repeat settings and must not
+	 * be (de-)serialized.
+	 * 
+	 * @return the compiled schedule
+	 */
+	@JsonIgnore
+	public CompiledScheduleExpression getCompiledSchedule() {
+		return null;
+	}
+	
+	/**
+	 * The duration statistics are only maintained by the service. Clients get the
+	 * durations of the latest executions.
+	 * 
+	 * @return the duration statistics
+	 */
+	@JsonIgnore
+	public DurationStatistics getDurationStatistics() {
+		return null;
+	}
+	
 }
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.test.execute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.execute.DurationStatistics;
+
+/**
+ * Tests the moving average, the percentile estimation and the migration of duration
+ * lists of the {@link DurationStatistics}.
+ * 
+ * @author Marius Oehler
+ */
+public class DurationStatisticsTest {
+
+	private static final long SECOND = 1000;
+	
+	/**
+	 * The first duration is the average, every further duration moves the average by its weight.
+	 */
+	@Test
+	public void testMovingAverage() {
+		DurationStatistics statistics = new DurationStatistics();
+		
+		statistics.add(10 * SECOND);
+		assertEquals(10 * SECOND, statistics.getAverage());
+		
+		statistics.add(20 * SECOND);
+		double expected = 10 * SECOND + ServiceConfiguration.DURATION_AVERAGE_WEIGHT * 10 * SECOND;
+		assertEquals(Math.round(expected), statistics.getAverage());
+		
+		statistics.add(20 * SECOND);
+		expected += ServiceConfiguration.DURATION_AVERAGE_WEIGHT * (20 * SECOND - expected);
+		assertEquals(Math.round(expected), statistics.getAverage());
+		
+		assertEquals(3, statistics.getCount());
+		assertEquals(10 * SECOND, statistics.getMinimum());
+		assertEquals(20 * SECOND, statistics.getMaximum());
+	}
+	
+	/**
+	 * Negative durations are not counted.
+	 */
+	@Test
+	public void testNegativeDurationIgnored() {
+		DurationStatistics statistics = new DurationStatistics();
+		statistics.add(-1);
+		
+		assertEquals(0, statistics.getCount());
+		assertEquals(-1, statistics.getPercentile(0.5));
+	}
+	
+	/**
+	 * The percentiles are estimated within the precision of the buckets and never leave
+	 * the range of the added durations.
+	 */
+	@Test
+	public void testPercentileBuckets() {
+		DurationStatistics statistics = new DurationStatistics();
+		
+		for (int i = 0; i < 9; i++) {
+			statistics.add(10 * SECOND);
+		}
+		statistics.add(100 * SECOND);
+		
+		assertWithinBucket(10 * SECOND, statistics.getPercentile(0.5));
+		assertWithinBucket(10 * SECOND, statistics.getPercentile(0.9));
+		assertWithinBucket(100 * SECOND, statistics.getPercentile(0.95));
+		assertWithinBucket(100 * SECOND, statistics.getPercentile(1));
+		assertWithinBucket(10 * SECOND, statistics.getPercentile(0));
+		assertTrue(statistics.getPercentile(1) <= statistics.getMaximum());
+	}
+	
+	/**
+	 * Durations below one second share the first bucket and are limited by the minimum and maximum.
+	 */
+	@Test
+	public void testSubSecondBucket() {
+		DurationStatistics statistics = new DurationStatistics();
+		statistics.add(200);
+		statistics.add(300);
+		
+		long median = statistics.getPercentile(0.5);
+		assertTrue(median >= 200 && median <= 300);
+	}
+	
+	/**
+	 * The statistics created out of a duration list equal the ones with the durations
+	 * added one after another.
+	 */
+	@Test
+	public void testCreatedOutOfList() {
+		DurationStatistics expected = new DurationStatistics();
+		expected.add(5 * SECOND);
+		expected.add(7 * SECOND);
+		expected.add(60 * SECOND);
+		
+		DurationStatistics migrated = DurationStatistics.of(Arrays.asList(5 * SECOND, 7 * SECOND, 60 * SECOND));
+		
+		assertEquals(expected.getCount(), migrated.getCount());
+		assertEquals(expected.getAverage(), migrated.getAverage());
+		assertEquals(expected.getMinimum(), migrated.getMinimum());
+		assertEquals(expected.getMaximum(), migrated.getMaximum());
+		assertEquals(expected.getPercentile(0.5), migrated.getPercentile(0.5));
+		
+		assertEquals(0, DurationStatistics.of(null).getCount());
+	}
+	
+	/**
+	 * Asserts, that the estimation is in the bucket of the expected duration. A bucket spans
+	 * a factor of 2^(1/4), so the estimation differs less than 20 percent.
+	 * 
+	 * @param expected		the expected duration
+	 * @param estimation	the estimated duration
+	 */
+	private void assertWithinBucket(long expected, long estimation) {
+		assertTrue("Estimation " + estimation + " for " + expected, Math.abs(estimation - expected) < expected / 5);
+	}
+	
+}
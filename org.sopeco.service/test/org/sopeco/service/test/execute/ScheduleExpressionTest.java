@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.test.execute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Calendar;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sopeco.service.execute.CompiledScheduleExpression;
+import org.sopeco.service.execute.ScheduleExpression;
+
+/**
+ * Tests the {@link CompiledScheduleExpression} against the former minute by minute
+ * search and compares the speed of both.
+ * 
+ * @author Peter Merkert
+ */
+public class ScheduleExpressionTest {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ScheduleExpressionTest.class);
+	
+	private static final long MINUTE = 60 * 1000;
+	
+	private static final String[][] EXPRESSIONS = {
+		{ "1,2,3,4,5,6,7", "*", "*" },
+		{ "2", "8", "30" },
+		{ "1,7", "0-3", "0/15" },
+		{ "5", "23", "59" },
+		{ "3,5", "12,18", "0,45" },
+		{ "1", "0", "0" }
+	};
+	
+	/**
+	 * Compares the compiled calculation with the iterative search for different start
+	 * times over one week.
+	 */
+	@Test
+	public void testNextMatchesIterativeSearch() {
+		long base = createBaseTime();
+		
+		for (String[] expression : EXPRESSIONS) {
+			
+			CompiledScheduleExpression compiled = ScheduleExpression.compile(expression[0], expression[1], expression[2]);
+			
+			// step through the week with an odd interval to hit many different minutes
+			for (long start = base; start < base + 7 * 24 * 60 * MINUTE; start += 97 * MINUTE + 1234) {
+				assertEquals(iterativeNextValidDate(start, expression[0], expression[1], expression[2]), compiled.next(start));
+			}
+			
+		}
+	}
+	
+	/**
+	 * An expression without any weekday never matches.
+	 */
+	@Test
+	public void testNeverMatchingExpression() {
+		CompiledScheduleExpression compiled = ScheduleExpression.compile("", "*", "*");
+		assertEquals(-1, compiled.next(createBaseTime()));
+	}
+	
+	/**
+	 * The same expression is only compiled once.
+	 */
+	@Test
+	public void testCompiledExpressionsAreCached() {
+		assertSame(ScheduleExpression.compile("2", "8", "30"), ScheduleExpression.compile("2", "8", "30"));
+	}
+	
+	/**
+	 * Compares the speed of the iterative search with the compiled calculation for a
+	 * weekly schedule, which has just been missed. The iterative search has to test
+	 * about 10,000 minutes for every call.<br />
+	 * <br />
+	 * The timings depend on the machine and its load, so the benchmark only logs them and
+	 * is run manually.
+	 */
+	@Test
+	@Ignore("Benchmark")
+	public void benchmarkNextValidDate() {
+		String days 	= "2";
+		String hours 	= "8";
+		String minutes 	= "0";
+		
+		Calendar c = Calendar.getInstance();
+		c.setTimeInMillis(createBaseTime());
+		c.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
+		c.set(Calendar.HOUR_OF_DAY, 8);
+		c.set(Calendar.MINUTE, 1);
+		long start = c.getTimeInMillis();
+		
+		final int iterativeRuns = 20;
+		final int compiledRuns 	= 20000;
+		
+		// warm up
+		iterativeNextValidDate(start, days, hours, minutes);
+		ScheduleExpression.compile(days, hours, minutes).next(start);
+		
+		long iterativeTime = System.nanoTime();
+		for (int i = 0; i < iterativeRuns; i++) {
+			iterativeNextValidDate(start, days, hours, minutes);
+		}
+		iterativeTime = (System.nanoTime() - iterativeTime) / iterativeRuns;
+		
+		long compiledTime = System.nanoTime();
+		for (int i = 0; i < compiledRuns; i++) {
+			ScheduleExpression.compile(days, hours, minutes).next(start);
+		}
+		compiledTime = (System.nanoTime() - compiledTime) / compiledRuns;
+		
+		LOGGER.info("nextValidDate: iterative {} ns/call, compiled {} ns/call", iterativeTime, compiledTime);
+	}
+	
+	/**
+	 * Returns a fixed time in the middle of a minute, so the seconds and milliseconds
+	 * are kept by the calculations.
+	 * 
+	 * @return the time
+	 */
+	private static long createBaseTime() {
+		Calendar c = Calendar.getInstance();
+		c.clear();
+		c.set(2014, Calendar.MARCH, 10, 13, 37, 21);
+		c.set(Calendar.MILLISECOND, 500);
+		return c.getTimeInMillis();
+	}
+	
+	/**
+	 * The former calculation of the next valid date: The expression is parsed and tested
+	 * for every minute, starting at the given time.
+	 * 
+	 * @param startTime	the time to start
+	 * @param weekdays	the weekdays
+	 * @param hours		the hours
+	 * @param minutes	the minutes
+	 * @return			the next valid date, -1 if there is none within eight days
+	 */
+	private static long iterativeNextValidDate(long startTime, String weekdays, String hours, String minutes) {
+		for (long time = startTime; time < startTime + 8 * 24 * 60 * MINUTE; time += MINUTE) {
+			
+			Set<Integer> setDays = new TreeSet<Integer>();
+			for (String s : weekdays.split(",")) {
+				if (!s.trim().isEmpty()) {
+					setDays.add(Integer.parseInt(s.trim()));
+				}
+			}
+			
+			Calendar c = Calendar.getInstance();
+			c.setTimeInMillis(time);
+			
+			if (setDays.contains(c.get(Calendar.DAY_OF_WEEK))
+					&& ScheduleExpression.expandHour(hours).contains(c.get(Calendar.HOUR_OF_DAY))
+					&& ScheduleExpression.expandMinutes(minutes).contains(c.get(Calendar.MINUTE))) {
+				return time;
+			}
+			
+		}
+		
+		return -1;
+	}
+	
+}
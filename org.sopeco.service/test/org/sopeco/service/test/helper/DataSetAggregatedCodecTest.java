@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.test.helper;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sopeco.persistence.dataset.DataSetAggregated;
+import org.sopeco.persistence.dataset.DataSetInputColumn;
+import org.sopeco.persistence.dataset.DataSetObservationColumn;
+import org.sopeco.persistence.dataset.DataSetRowBuilder;
+import org.sopeco.persistence.dataset.ParameterValueList;
+import org.sopeco.persistence.entities.definition.MeasurementEnvironmentDefinition;
+import org.sopeco.persistence.entities.definition.ParameterDefinition;
+import org.sopeco.persistence.entities.definition.ParameterRole;
+import org.sopeco.service.helper.MeasurementEnvironmentIndex;
+import org.sopeco.service.helper.SimpleEntityFactory;
+import org.sopeco.service.rest.json.DataSetAggregatedCodec;
+
+/**
+ * Tests that a {@link DataSetAggregated} is encoded and decoded by the {@link DataSetAggregatedCodec}
+ * without changing the values or their types.
+ * 
+ * @author Peter Merkert
+ */
+public class DataSetAggregatedCodecTest {
+
+	private static final int ROWS = 3;
+	
+	@Test
+	public void testRoundTrip() throws IOException {
+		MeasurementEnvironmentDefinition med = SimpleEntityFactory.createDefaultMeasurementEnvironmentDefinition();
+		MeasurementEnvironmentIndex index = new MeasurementEnvironmentIndex(med);
+		
+		ParameterDefinition intParam 	 = index.addParameter(med.getRoot(), "int", "INTEGER", ParameterRole.INPUT);
+		ParameterDefinition longParam 	 = index.addParameter(med.getRoot(), "long", "INTEGER", ParameterRole.INPUT);
+		ParameterDefinition booleanParam = index.addParameter(med.getRoot(), "boolean", "BOOLEAN", ParameterRole.INPUT);
+		ParameterDefinition stringParam  = index.addParameter(med.getRoot(), "string", "STRING", ParameterRole.INPUT);
+		ParameterDefinition mixedParam 	 = index.addParameter(med.getRoot(), "mixed", "STRING", ParameterRole.INPUT);
+		ParameterDefinition doubleParam  = index.addParameter(med.getRoot(), "double", "DOUBLE", ParameterRole.OBSERVATION);
+		
+		DataSetRowBuilder builder = new DataSetRowBuilder();
+		
+		for (int i = 0; i < ROWS; i++) {
+			builder.startRow();
+			builder.addInputParameter(intParam, i);
+			builder.addInputParameter(longParam, 10000000000L + i);
+			builder.addInputParameter(booleanParam, i % 2 == 0);
+			builder.addInputParameter(stringParam, "value " + i);
+			// the column holds integers and strings and falls back to JSON
+			builder.addInputParameter(mixedParam, i == 1 ? "n/a" : (Object) i);
+			builder.addObservationParameter(doubleParam, i * 0.5);
+			builder.finishRow();
+		}
+		
+		DataSetAggregated dataset = builder.createDataSet();
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		DataSetAggregatedCodec.encode(dataset, output);
+		
+		DataSetAggregated decoded = DataSetAggregatedCodec.decode(new ByteArrayInputStream(output.toByteArray()));
+		
+		Map<String, List<?>> inputValues = getInputValues(decoded);
+		
+		// list equality compares the boxed values, so the types have to match, too
+		assertEquals(getInputValues(dataset), inputValues);
+		assertEquals(getObservationValues(dataset), getObservationValues(decoded));
+		
+		assertEquals(Integer.valueOf(2), inputValues.get(intParam.getFullName()).get(2));
+		assertEquals(Long.valueOf(10000000002L), inputValues.get(longParam.getFullName()).get(2));
+		assertEquals(Boolean.TRUE, inputValues.get(booleanParam.getFullName()).get(2));
+		assertEquals("value 2", inputValues.get(stringParam.getFullName()).get(2));
+		assertEquals("n/a", inputValues.get(mixedParam.getFullName()).get(1));
+		assertEquals(ROWS, getObservationValues(decoded).get(doubleParam.getFullName()).size());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testDecodeInvalidStream() throws IOException {
+		DataSetAggregatedCodec.decode(new ByteArrayInputStream("{\"id\":\"1\"}".getBytes("UTF-8")));
+	}
+	
+	private Map<String, List<?>> getInputValues(DataSetAggregated dataset) {
+		Map<String, List<?>> values = new HashMap<String, List<?>>();
+		
+		for (DataSetInputColumn<?> column : dataset.getInputColumns()) {
+			values.put(column.getParameter().getFullName(), column.getValueList());
+		}
+		
+		return values;
+	}
+	
+	private Map<String, List<List<?>>> getObservationValues(DataSetAggregated dataset) {
+		Map<String, List<List<?>>> values = new HashMap<String, List<List<?>>>();
+		
+		for (DataSetObservationColumn<?> column : dataset.getObservationColumns()) {
+			
+			List<List<?>> valueLists = new ArrayList<List<?>>();
+			
+			for (ParameterValueList<?> valueList : column.getValueLists()) {
+				valueLists.add(valueList.getValues());
+			}
+			
+			values.put(column.getParameter().getFullName(), valueLists);
+		}
+		
+		return values;
+	}
+	
+}
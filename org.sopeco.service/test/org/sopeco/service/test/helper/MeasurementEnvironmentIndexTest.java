@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.test.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.sopeco.persistence.entities.definition.MeasurementEnvironmentDefinition;
+import org.sopeco.persistence.entities.definition.ParameterDefinition;
+import org.sopeco.persistence.entities.definition.ParameterNamespace;
+import org.sopeco.persistence.entities.definition.ParameterRole;
+import org.sopeco.service.helper.MeasurementEnvironmentIndex;
+import org.sopeco.service.helper.SimpleEntityFactory;
+
+/**
+ * Tests the lookups and changes via the {@link MeasurementEnvironmentIndex}.
+ * 
+ * @author Peter Merkert
+ */
+public class MeasurementEnvironmentIndexTest {
+
+	@Test
+	public void testNamespaceLookup() {
+		MeasurementEnvironmentDefinition med = SimpleEntityFactory.createDefaultMeasurementEnvironmentDefinition();
+		MeasurementEnvironmentIndex index = new MeasurementEnvironmentIndex(med);
+		
+		ParameterNamespace ns = index.addNamespaces("root/first/second");
+		
+		assertEquals("second", ns.getName());
+		assertSame(ns, index.getNamespace("root/first/second"));
+		assertSame(ns, index.getNamespace("/first/second"));
+		assertSame(ns, index.getNamespace("root/first/second/"));
+		assertSame(med.getRoot(), index.getNamespace("root"));
+		assertSame(med.getRoot(), index.getNamespace("/"));
+		
+		// a path must start with the root name or the delimiter
+		assertNull(index.getNamespace("first/second"));
+		assertNull(index.addNamespaces("first/second"));
+		
+		// existing namespaces are reused
+		assertSame(ns, index.addNamespaces("root/first/second"));
+		assertEquals(1, med.getRoot().getChildren().size());
+		
+		// an index built on the changed tree finds the same namespace
+		assertSame(ns, new MeasurementEnvironmentIndex(med).getNamespace("/first/second"));
+	}
+	
+	@Test
+	public void testChildNamedLikeRoot() {
+		MeasurementEnvironmentDefinition med = SimpleEntityFactory.createDefaultMeasurementEnvironmentDefinition();
+		MeasurementEnvironmentIndex index = new MeasurementEnvironmentIndex(med);
+		
+		ParameterNamespace child = index.addNamespaces("root/root");
+		ParameterNamespace grandchild = index.addNamespaces("root/root/first");
+		
+		assertEquals("root", child.getName());
+		assertSame(med.getRoot(), child.getParent());
+		assertSame(child, grandchild.getParent());
+		
+		assertSame(med.getRoot(), index.getNamespace("root"));
+		assertSame(child, index.getNamespace("root/root"));
+		assertSame(child, index.getNamespace("/root"));
+		assertSame(grandchild, index.getNamespace("root/root/first"));
+		assertSame(grandchild, index.getNamespace("/root/first"));
+		assertNull(index.getNamespace("root/first"));
+		
+		ParameterDefinition parameter = index.addParameter(child, "param", "INTEGER", ParameterRole.INPUT);
+		
+		assertSame(parameter, index.getParameter("root/root", "param"));
+		assertNull(index.getParameter("root", "param"));
+	}
+	
+	@Test
+	public void testRenameAndRemove() {
+		MeasurementEnvironmentDefinition med = SimpleEntityFactory.createDefaultMeasurementEnvironmentDefinition();
+		MeasurementEnvironmentIndex index = new MeasurementEnvironmentIndex(med);
+		
+		ParameterNamespace first = index.addNamespaces("root/first");
+		index.addNamespaces("root/first/second");
+		ParameterDefinition parameter = index.addParameter(index.getNamespace("root/first/second"), "param", "INTEGER", ParameterRole.INPUT);
+		
+		assertTrue(index.renameNamespace(first, "renamed"));
+		assertNull(index.getNamespace("root/first/second"));
+		assertSame(parameter, index.getParameter("root/renamed/second", "param"));
+		
+		index.updateParameter(parameter, "newparam", "DOUBLE", ParameterRole.OBSERVATION);
+		assertNull(index.getParameter("root/renamed/second", "param"));
+		assertSame(parameter, index.getParameter("root/renamed/second", "newparam"));
+		
+		assertTrue(index.removeParameter(parameter));
+		assertNull(index.getParameter("root/renamed/second", "newparam"));
+		
+		assertFalse(index.removeNamespace(med.getRoot()));
+		assertTrue(index.removeNamespace(first));
+		assertNull(index.getNamespace("root/renamed/second"));
+		assertTrue(med.getRoot().getChildren().isEmpty());
+	}
+	
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2014 SAP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the SAP nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL SAP BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.sopeco.service.test.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.sopeco.persistence.entities.ExperimentSeries;
+import org.sopeco.persistence.entities.ExperimentSeriesRun;
+import org.sopeco.persistence.entities.ScenarioInstance;
+import org.sopeco.service.helper.ScenarioInstanceQuery;
+import org.sopeco.service.rest.exchange.ScenarioInstanceSummary;
+
+/**
+ * Tests the cursor paging, the time range filter and the summaries of the
+ * {@link ScenarioInstanceQuery}.
+ * 
+ * @author Peter Merkert
+ */
+public class ScenarioInstanceQueryTest {
+
+	private static final String SCENARIO_NAME = "scenario";
+	
+	/**
+	 * The cursor of a page leads to the following page, the last page has no cursor.
+	 */
+	@Test
+	public void testCursorPaging() {
+		List<ScenarioInstance> instances = Arrays.asList(createInstance("socket://c", 1L),
+														 createInstance("socket://a", 1L),
+														 createInstance("socket://b", 1L));
+		
+		ScenarioInstanceQuery query = new ScenarioInstanceQuery(null, null, null, 0, 2);
+		List<ScenarioInstance> page = query.apply(instances);
+		
+		// the instances are ordered by their URL
+		assertEquals(2, page.size());
+		assertEquals("socket://a", page.get(0).getMeasurementEnvironmentUrl());
+		assertEquals("socket://b", page.get(1).getMeasurementEnvironmentUrl());
+		assertNotNull(query.getNextCursor());
+		
+		query = new ScenarioInstanceQuery(query.getNextCursor(), null, null, 0, 2);
+		page  = query.apply(instances);
+		
+		assertEquals(1, page.size());
+		assertEquals("socket://c", page.get(0).getMeasurementEnvironmentUrl());
+		assertNull(query.getNextCursor());
+	}
+	
+	/**
+	 * A page, which ends with the last instance, has no cursor. The offset skips instances
+	 * behind the cursor.
+	 */
+	@Test
+	public void testLastPageAndOffset() {
+		List<ScenarioInstance> instances = Arrays.asList(createInstance("socket://a", 1L),
+														 createInstance("socket://b", 1L));
+		
+		ScenarioInstanceQuery query = new ScenarioInstanceQuery(null, null, null, 0, 2);
+		assertEquals(2, query.apply(instances).size());
+		assertNull(query.getNextCursor());
+		
+		query = new ScenarioInstanceQuery(null, null, null, 1, -1);
+		List<ScenarioInstance> page = query.apply(instances);
+		
+		assertEquals(1, page.size());
+		assertEquals("socket://b", page.get(0).getMeasurementEnvironmentUrl());
+		assertNull(query.getNextCursor());
+	}
+	
+	/**
+	 * The cursor encodes the URL, so URLs with special characters are paged, too.
+	 */
+	@Test
+	public void testCursorEncoding() {
+		List<ScenarioInstance> instances = Arrays.asList(createInstance("socket://host:1099/a b?x=1&y=2", 1L),
+														 createInstance("socket://host:1099/z", 1L));
+		
+		ScenarioInstanceQuery query = new ScenarioInstanceQuery(null, null, null, 0, 1);
+		query.apply(instances);
+		
+		String cursor = query.getNextCursor();
+		
+		// the cursor can be passed as query parameter without escaping
+		assertEquals(true, cursor.matches("[0-9a-f]+"));
+		
+		query = new ScenarioInstanceQuery(cursor, null, null, 0, 1);
+		List<ScenarioInstance> page = query.apply(instances);
+		
+		assertEquals(1, page.size());
+		assertEquals("socket://host:1099/z", page.get(0).getMeasurementEnvironmentUrl());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCursorLength() {
+		new ScenarioInstanceQuery("abc", null, null, 0, -1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCursorCharacters() {
+		new ScenarioInstanceQuery("zz", null, null, 0, -1);
+	}
+	
+	/**
+	 * Only the runs in the time range are kept, instances without such runs are skipped.
+	 */
+	@Test
+	public void testTimeRange() {
+		List<ScenarioInstance> instances = Arrays.asList(createInstance("socket://a", 10L, 20L, 30L),
+														 createInstance("socket://b", 50L),
+														 createInstance("socket://c", 25L, null));
+		
+		ScenarioInstanceQuery query = new ScenarioInstanceQuery(null, 15L, 30L, 0, -1);
+		List<ScenarioInstance> page = query.apply(instances);
+		
+		assertEquals(2, page.size());
+		assertEquals("socket://a", page.get(0).getMeasurementEnvironmentUrl());
+		assertEquals(2, getRuns(page.get(0)).size());
+		assertEquals(Long.valueOf(20L), getRuns(page.get(0)).get(0).getTimestamp());
+		assertEquals(Long.valueOf(30L), getRuns(page.get(0)).get(1).getTimestamp());
+		
+		// runs without timestamp are outside every range
+		assertEquals("socket://c", page.get(1).getMeasurementEnvironmentUrl());
+		assertEquals(1, getRuns(page.get(1)).size());
+		
+		assertNull(query.getNextCursor());
+	}
+	
+	/**
+	 * The summary counts the runs and returns the latest timestamp.
+	 */
+	@Test
+	public void testSummary() {
+		ScenarioInstanceSummary summary = new ScenarioInstanceSummary(createInstance("socket://a", 30L, 10L, null));
+		
+		assertEquals(SCENARIO_NAME, summary.getName());
+		assertEquals("socket://a", summary.getMeasurementEnvironmentUrl());
+		assertEquals(Arrays.asList("series"), summary.getExperimentSeriesNames());
+		assertEquals(3, summary.getExperimentSeriesRunCount());
+		assertEquals(30L, summary.getLatestRunTimestamp());
+		
+		summary = new ScenarioInstanceSummary(createInstance("socket://b"));
+		
+		assertEquals(0, summary.getExperimentSeriesRunCount());
+		assertEquals(-1L, summary.getLatestRunTimestamp());
+	}
+	
+	private ScenarioInstance createInstance(String url, Long... timestamps) {
+		ScenarioInstance scenarioInstance = new ScenarioInstance();
+		scenarioInstance.setName(SCENARIO_NAME);
+		scenarioInstance.setMeasurementEnvironmentUrl(url);
+		
+		ExperimentSeries series = new ExperimentSeries();
+		series.setName("series");
+		
+		for (Long timestamp : timestamps) {
+			ExperimentSeriesRun run = new ExperimentSeriesRun();
+			run.setTimestamp(timestamp);
+			series.getExperimentSeriesRuns().add(run);
+		}
+		
+		scenarioInstance.getExperimentSeriesList().add(series);
+		
+		return scenarioInstance;
+	}
+	
+	private List<ExperimentSeriesRun> getRuns(ScenarioInstance scenarioInstance) {
+		List<ExperimentSeriesRun> runs = new ArrayList<ExperimentSeriesRun>();
+		
+		for (ExperimentSeries series : scenarioInstance.getExperimentSeriesList()) {
+			runs.addAll(series.getExperimentSeriesRuns());
+		}
+		
+		return runs;
+	}
+	
+}
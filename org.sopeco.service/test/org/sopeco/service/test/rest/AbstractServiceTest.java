@@ -36,6 +36,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.test.JerseyTest;
 import org.junit.After;
@@ -91,6 +92,9 @@ public abstract class AbstractServiceTest extends JerseyTest {
         provider.setMapper(new CustomObjectMapper());
 		rc.register(provider);
 		
+		// needed for the experiment status stream
+		rc.register(SseFeature.class);
+		
 		return rc;
     }
 
@@ -103,6 +107,7 @@ public abstract class AbstractServiceTest extends JerseyTest {
 		JacksonJaxbJsonProvider provider = new JacksonJaxbJsonProvider();
         provider.setMapper(new CustomObjectMapper());
         config.register(provider);
+        config.register(SseFeature.class);
 	}
 	
 	/**
@@ -27,6 +27,7 @@
 package org.sopeco.service.test.rest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import javax.validation.constraints.Null;
 import javax.ws.rs.client.Entity;
@@ -34,10 +35,14 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
+import org.glassfish.jersey.media.sse.EventInput;
+import org.glassfish.jersey.media.sse.InboundEvent;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.junit.Test;
 import org.sopeco.persistence.entities.definition.ExperimentSeriesDefinition;
 import org.sopeco.persistence.entities.definition.ScenarioDefinition;
 import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.execute.ExperimentStatusBroadcaster;
 import org.sopeco.service.persistence.entities.Account;
 import org.sopeco.service.persistence.entities.ScheduledExperiment;
 import org.sopeco.service.rest.exchange.ExperimentStatus;
@@ -65,6 +70,8 @@ public class ExecutionTest extends AbstractServiceTest {
 	 * 8. add a ScheduledExperiment with controller information to service
 	 * 9. get ID of ScheduledExperiment from step 8
 	 * 10. execute the ScheduledeExperiment with ID from step 9
+	 * 11. get the status of the experiment
+	 * 12. watch the status stream of the experiment
 	 */
 	@Test
 	public void testExecution() {
@@ -195,6 +202,27 @@ public class ExecutionTest extends AbstractServiceTest {
 		
 		assertEquals(TestConfiguration.TEST_SCENARIO_NAME, es.getScenarioName());
 		
+		EventInput events = target().path(ServiceConfiguration.SVC_EXECUTE)
+						    	   	.path(ServiceConfiguration.SVC_EXECUTE_STATUS)
+						    	   	.path(ServiceConfiguration.SVC_EXECUTE_STREAM)
+						    	   	.queryParam(ServiceConfiguration.SVCP_EXECUTE_KEY, experimentKey)
+						    	   	.queryParam(ServiceConfiguration.SVCP_SCENARIO_TOKEN, token)
+						    	   	.request(SseFeature.SERVER_SENT_EVENTS)
+						    	   	.get(EventInput.class);
+		
+		try {
+			
+			// the current status is sent first
+			InboundEvent event = events.read();
+			
+			assertTrue(ExperimentStatusBroadcaster.EVENT_STATUS.equals(event.getName())
+					   || ExperimentStatusBroadcaster.EVENT_FINISHED.equals(event.getName()));
+			assertEquals(TestConfiguration.TEST_SCENARIO_NAME, event.readData(ExperimentStatus.class, MediaType.APPLICATION_JSON_TYPE).getScenarioName());
+			
+		} finally {
+			events.close();
+		}
+		
 		logout(token);
 	}
 	
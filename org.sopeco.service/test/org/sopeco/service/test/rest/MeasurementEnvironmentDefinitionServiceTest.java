@@ -27,9 +27,16 @@
 package org.sopeco.service.test.rest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.validation.constraints.Null;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -37,9 +44,12 @@ import javax.ws.rs.core.Response.Status;
 import org.junit.Test;
 import org.sopeco.persistence.entities.definition.ExperimentSeriesDefinition;
 import org.sopeco.persistence.entities.definition.MeasurementEnvironmentDefinition;
+import org.sopeco.persistence.entities.definition.ParameterNamespace;
 import org.sopeco.persistence.entities.definition.ParameterRole;
 import org.sopeco.service.configuration.ServiceConfiguration;
 import org.sopeco.service.rest.MeasurementEnvironmentDefinitionService;
+import org.sopeco.service.rest.exchange.MEDOperation;
+import org.sopeco.service.rest.exchange.MEDOperationResult;
 import org.sopeco.service.test.configuration.TestConfiguration;
 
 /**
@@ -582,4 +592,121 @@ public class MeasurementEnvironmentDefinitionServiceTest extends AbstractService
 		
 		logout(token);
 	}
+	
+	/**
+	 * Tests the batch of MED operations. An atomic batch with a failing operation must not
+	 * change anything, a valid batch must be applied completely.
+	 * 
+	 * 1. log in
+	 * 2. add scenario
+	 * 3. apply a batch with an invalid namespace
+	 * 4. apply a valid batch
+	 */
+	@Test
+	public void testMEDBatch() {
+		if (skipTests) return;
+		
+		String accountname 			= TestConfiguration.TESTACCOUNTNAME;
+		String password 			= TestConfiguration.TESTPASSWORD;
+		String mynamespaceFullPath 	= "root/mybatchnamespace";
+		
+		String token = login(accountname, password);
+		
+		// create a scenario
+		ExperimentSeriesDefinition esd = new ExperimentSeriesDefinition();
+		target().path(ServiceConfiguration.SVC_SCENARIO)
+			    .path(ServiceConfiguration.SVC_SCENARIO_ADD)
+			    .path(TEST_SCENARIO_NAME)
+			    .queryParam(ServiceConfiguration.SVCP_SCENARIO_SPECNAME, TEST_MEASUREMENT_SPECIFICATION_NAME)
+			    .queryParam(ServiceConfiguration.SVCP_SCENARIO_TOKEN, token)
+			    .request(MediaType.APPLICATION_JSON)
+			    .post(Entity.entity(esd, MediaType.APPLICATION_JSON));
+		
+		MEDOperation addParameter = new MEDOperation(MEDOperation.Type.ADD_PARAMETER, mynamespaceFullPath);
+		addParameter.setParamName("myparam");
+		addParameter.setParamType("myparamtype");
+		addParameter.setRole(ParameterRole.INPUT);
+		
+		// the namespace does not exist yet, so the whole batch must fail
+		List<MEDOperation> operations = new ArrayList<MEDOperation>();
+		operations.add(addParameter);
+		
+		Response r = target().path(ServiceConfiguration.SVC_MED)
+							 .path(TEST_SCENARIO_NAME)
+							 .path(ServiceConfiguration.SVC_MED_BATCH)
+							 .queryParam(ServiceConfiguration.SVCP_MED_TOKEN, token)
+							 .request(MediaType.APPLICATION_JSON)
+							 .post(Entity.entity(operations, MediaType.APPLICATION_JSON));
+		
+		assertEquals(Status.CONFLICT.getStatusCode(), r.getStatus());
+		
+		List<MEDOperationResult> results = r.readEntity(new GenericType<List<MEDOperationResult>>() { });
+		assertEquals(1, results.size());
+		assertFalse(results.get(0).isSuccess());
+		
+		// now create the namespace first
+		operations.add(0, new MEDOperation(MEDOperation.Type.ADD_NAMESPACE, mynamespaceFullPath));
+		
+		r = target().path(ServiceConfiguration.SVC_MED)
+					.path(TEST_SCENARIO_NAME)
+					.path(ServiceConfiguration.SVC_MED_BATCH)
+					.queryParam(ServiceConfiguration.SVCP_MED_TOKEN, token)
+					.request(MediaType.APPLICATION_JSON)
+					.post(Entity.entity(operations, MediaType.APPLICATION_JSON));
+		
+		assertEquals(Status.OK.getStatusCode(), r.getStatus());
+		
+		results = r.readEntity(new GenericType<List<MEDOperationResult>>() { });
+		assertEquals(2, results.size());
+		assertTrue(results.get(0).isSuccess());
+		assertTrue(results.get(1).isSuccess());
+		
+		// a parameter cannot be added twice, so the batch fails and the other parameter is not stored
+		MEDOperation addOtherParameter = new MEDOperation(MEDOperation.Type.ADD_PARAMETER, mynamespaceFullPath);
+		addOtherParameter.setParamName("myotherparam");
+		addOtherParameter.setParamType("myparamtype");
+		addOtherParameter.setRole(ParameterRole.INPUT);
+		
+		operations.clear();
+		operations.add(addOtherParameter);
+		operations.add(addParameter);
+		
+		r = target().path(ServiceConfiguration.SVC_MED)
+					.path(TEST_SCENARIO_NAME)
+					.path(ServiceConfiguration.SVC_MED_BATCH)
+					.queryParam(ServiceConfiguration.SVCP_MED_TOKEN, token)
+					.request(MediaType.APPLICATION_JSON)
+					.post(Entity.entity(operations, MediaType.APPLICATION_JSON));
+		
+		assertEquals(Status.CONFLICT.getStatusCode(), r.getStatus());
+		
+		results = r.readEntity(new GenericType<List<MEDOperationResult>>() { });
+		assertEquals(2, results.size());
+		assertFalse(results.get(1).isSuccess());
+		
+		r = target().path(ServiceConfiguration.SVC_MED)
+					.path(TEST_SCENARIO_NAME)
+					.queryParam(ServiceConfiguration.SVCP_MED_TOKEN, token)
+					.request(MediaType.APPLICATION_JSON)
+					.get();
+		
+		assertEquals(Status.OK.getStatusCode(), r.getStatus());
+		
+		MeasurementEnvironmentDefinition med = r.readEntity(MeasurementEnvironmentDefinition.class);
+		
+		ParameterNamespace mynamespace = null;
+		
+		for (ParameterNamespace ns : med.getRoot().getChildren()) {
+			if (ns.getName().equals("mybatchnamespace")) {
+				mynamespace = ns;
+			}
+		}
+		
+		// only the parameter of the successful batch is stored
+		assertNotNull(mynamespace);
+		assertEquals(1, mynamespace.getParameters().size());
+		assertEquals("myparam", mynamespace.getParameters().get(0).getName());
+		
+		logout(token);
+	}
 }
@@ -27,19 +27,28 @@
 package org.sopeco.service.test.rest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
 
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import org.junit.Test;
 import org.sopeco.engine.model.ScenarioDefinitionReader;
+import org.sopeco.persistence.IPersistenceProvider;
+import org.sopeco.persistence.entities.ScenarioInstance;
 import org.sopeco.persistence.entities.definition.ExperimentSeriesDefinition;
 import org.sopeco.persistence.entities.definition.MeasurementEnvironmentDefinition;
 import org.sopeco.persistence.entities.definition.ScenarioDefinition;
 import org.sopeco.service.configuration.ServiceConfiguration;
+import org.sopeco.service.persistence.AccountPersistenceProvider;
 import org.sopeco.service.rest.ScenarioService;
+import org.sopeco.service.rest.exchange.ScenarioInstanceSummary;
 import org.sopeco.service.test.configuration.TestConfiguration;
 
 /**
@@ -267,4 +276,104 @@ public class ScenarioServiceTest extends AbstractServiceTest {
 		
 		logout(token);
 	}
+	
+	/**
+	 * Fetches the summaries of the scenario instances page by page.
+	 * 
+	 * 1. log in
+	 * 2. add scenario with three instances
+	 * 3. get the first page of summaries with the cursor of the next page
+	 * 4. get the next page with the cursor, which is the last one
+	 */
+	@Test
+	public void testScenarioInstanceSummaryPaging() {
+		if (skipTests) return;
+		
+		// connect to test users account
+		String accountname = TestConfiguration.TESTACCOUNTNAME;
+		String password = TestConfiguration.TESTPASSWORD;
+		
+		String token = login(accountname, password);
+		
+		// add a default scenario
+		ExperimentSeriesDefinition esd = new ExperimentSeriesDefinition();
+		target().path(ServiceConfiguration.SVC_SCENARIO)
+			  	.path(ServiceConfiguration.SVC_SCENARIO_ADD)
+			  	.path(TEST_SCENARIO_NAME)
+			  	.queryParam(ServiceConfiguration.SVCP_SCENARIO_SPECNAME, TEST_MEASUREMENT_SPECIFICATION_NAME)
+			  	.queryParam(ServiceConfiguration.SVCP_SCENARIO_TOKEN, token)
+			  	.request(MediaType.APPLICATION_JSON)
+			  	.post(Entity.entity(esd, MediaType.APPLICATION_JSON));
+		
+		ScenarioDefinition sd = target().path(ServiceConfiguration.SVC_SCENARIO)
+								  		.path(TEST_SCENARIO_NAME)
+								  		.path(ServiceConfiguration.SVC_SCENARIO_DEFINITON)
+								  		.queryParam(ServiceConfiguration.SVCP_SCENARIO_TOKEN, token)
+								  		.request(MediaType.APPLICATION_JSON)
+								  		.get(ScenarioDefinition.class);
+		
+		// instances are created by experiment executions, so they are stored directly
+		IPersistenceProvider dbCon = AccountPersistenceProvider.createPersistenceProvider(token);
+		
+		for (String url : new String[] { "socket://c", "socket://a", "socket://b" }) {
+			ScenarioInstance si = new ScenarioInstance();
+			si.setName(TEST_SCENARIO_NAME);
+			si.setMeasurementEnvironmentUrl(url);
+			si.setScenarioDefinition(sd);
+			dbCon.store(si);
+		}
+		
+		dbCon.closeProvider();
+		
+		Response r = target().path(ServiceConfiguration.SVC_SCENARIO)
+							 .path(ServiceConfiguration.SVC_SCENARIO_INSTANCES)
+							 .queryParam(ServiceConfiguration.SVCP_SCENARIO_NAME, TEST_SCENARIO_NAME)
+							 .queryParam(ServiceConfiguration.SVCP_SCENARIO_SUMMARY, true)
+							 .queryParam(ServiceConfiguration.SVCP_SCENARIO_LIMIT, 2)
+							 .queryParam(ServiceConfiguration.SVCP_SCENARIO_TOKEN, token)
+							 .request(MediaType.APPLICATION_JSON)
+							 .get();
+		
+		assertEquals(Status.OK.getStatusCode(), r.getStatus());
+		
+		List<ScenarioInstanceSummary> summaries = r.readEntity(new GenericType<List<ScenarioInstanceSummary>>() { });
+		String cursor = r.getHeaderString(ServiceConfiguration.SVCH_SCENARIO_NEXTCURSOR);
+		
+		assertEquals(2, summaries.size());
+		assertEquals("socket://a", summaries.get(0).getMeasurementEnvironmentUrl());
+		assertEquals("socket://b", summaries.get(1).getMeasurementEnvironmentUrl());
+		assertEquals(0, summaries.get(0).getExperimentSeriesRunCount());
+		assertNotNull(cursor);
+		
+		r = target().path(ServiceConfiguration.SVC_SCENARIO)
+					.path(ServiceConfiguration.SVC_SCENARIO_INSTANCES)
+					.queryParam(ServiceConfiguration.SVCP_SCENARIO_NAME, TEST_SCENARIO_NAME)
+					.queryParam(ServiceConfiguration.SVCP_SCENARIO_SUMMARY, true)
+					.queryParam(ServiceConfiguration.SVCP_SCENARIO_LIMIT, 2)
+					.queryParam(ServiceConfiguration.SVCP_SCENARIO_CURSOR, cursor)
+					.queryParam(ServiceConfiguration.SVCP_SCENARIO_TOKEN, token)
+					.request(MediaType.APPLICATION_JSON)
+					.get();
+		
+		assertEquals(Status.OK.getStatusCode(), r.getStatus());
+		
+		summaries = r.readEntity(new GenericType<List<ScenarioInstanceSummary>>() { });
+		
+		assertEquals(1, summaries.size());
+		assertEquals("socket://c", summaries.get(0).getMeasurementEnvironmentUrl());
+		assertNull(r.getHeaderString(ServiceConfiguration.SVCH_SCENARIO_NEXTCURSOR));
+		
+		// an invalid cursor is rejected
+		r = target().path(ServiceConfiguration.SVC_SCENARIO)
+					.path(ServiceConfiguration.SVC_SCENARIO_INSTANCES)
+					.queryParam(ServiceConfiguration.SVCP_SCENARIO_NAME, TEST_SCENARIO_NAME)
+					.queryParam(ServiceConfiguration.SVCP_SCENARIO_CURSOR, "zz")
+					.queryParam(ServiceConfiguration.SVCP_SCENARIO_TOKEN, token)
+					.request(MediaType.APPLICATION_JSON)
+					.get();
+		
+		assertEquals(Status.CONFLICT.getStatusCode(), r.getStatus());
+		
+		logout(token);
+	}
 }